@@ -1,6 +1,6 @@
 import request from '@/utils/request'
 import type { BaseResponse, PageResult } from '@/types/common'
-import type { ChatHistoryCursorQueryRequest, CursorPageVo, ChatHistoryVo } from '@/types/common'
+import type { ChatHistoryCursorQueryRequest, CursorPageVo, ChatHistoryVo, CursorInfo } from '@/types/common'
 
 /**
  * 分页查询指定应用的对话历史（游标分页）
@@ -11,6 +11,13 @@ export function listChatHistoryByPage(
     return request.post('/chatHistory/list/page', data).then(res => res.data)
 }
 
+/**
+ * 获取一条消息的完整内容（列表中 messageLength 不为空的消息只返回了摘要）
+ */
+export function getFullMessage(id: number): Promise<BaseResponse<string>> {
+    return request.get('/chatHistory/message', { params: { id } }).then(res => res.data)
+}
+
 // ============ 管理员接口 ============
 
 export interface ChatHistoryAdminQueryRequest {
@@ -33,3 +40,23 @@ export function adminListChatHistory(
 ): Promise<BaseResponse<PageResult<ChatHistoryVo>>> {
     return request.post('/chatHistory/admin/list/page', data).then(res => res.data)
 }
+
+export interface ChatHistoryAdminCursorQueryRequest {
+    pageSize?: number
+    id?: number
+    appId?: number
+    userId?: number
+    messageType?: string
+    message?: string
+    lastTime?: CursorInfo['lastTime']
+    lastId?: CursorInfo['lastId']
+}
+
+/**
+ * 【管理员】游标查询所有对话历史（不统计总数，消息内容走全文索引检索）
+ */
+export function adminListChatHistoryByCursor(
+    data: ChatHistoryAdminCursorQueryRequest
+): Promise<BaseResponse<CursorPageVo<ChatHistoryVo>>> {
+    return request.post('/chatHistory/admin/list/cursor', data).then(res => res.data)
+}
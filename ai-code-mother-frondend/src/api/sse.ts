@@ -4,10 +4,25 @@ export interface SSECallbacks {
     onMessage: (content: string) => void
     onComplete: () => void
     onError: (error: Error) => void
+    // 排队等待时的位置（从 1 开始），开始生成前可能多次回调
+    onQueue?: (position: number) => void
+    // 服务端回放缓冲区已不包含断点之后的全部内容，随后连接结束，需要从对话历史重新加载已保存的内容
+    onReset?: () => void
 }
 
+/**
+ * 断线重连的最大次数
+ */
+const MAX_RECONNECT_ATTEMPTS = 3
+
+/**
+ * 断线重连前的等待时间（毫秒）
+ */
+const RECONNECT_DELAY_MS = 1000
+
 /**
  * 创建 SSE 连接进行代码生成对话
+ * 连接在收到完成事件前中断时，携带 Last-Event-ID 重连，服务端从断点继续推送而不是重新生成
  * @param appId 应用 ID
  * @param userMessage 用户消息
  * @param callbacks 回调函数
@@ -25,70 +40,123 @@ export function chatToGenCode(
 
     // 使用 fetch + ReadableStream 处理 SSE（因为 EventSource 不支持自定义 headers）
     const controller = new AbortController()
+    // 最后收到的事件 id，重连时作为 Last-Event-ID 发送
+    let lastEventId = ''
 
-    fetch(url.toString(), {
-        method: 'GET',
-        headers: {
+    /**
+     * 读取一次连接的数据
+     * @returns 是否收到了完成事件
+     */
+    const readStream = async (): Promise<boolean> => {
+        const headers: Record<string, string> = {
             'access-token': token || '',
             'Accept': 'text/event-stream',
-        },
-        signal: controller.signal,
-    })
-        .then(async (response) => {
-            if (!response.ok) {
-                throw new Error(`HTTP error! status: ${response.status}`)
-            }
+        }
+        if (lastEventId) {
+            headers['Last-Event-ID'] = lastEventId
+        }
+        const response = await fetch(url.toString(), {
+            method: 'GET',
+            headers,
+            signal: controller.signal,
+        })
+        if (!response.ok) {
+            throw new Error(`HTTP error! status: ${response.status}`)
+        }
+
+        const reader = response.body?.getReader()
+        if (!reader) {
+            throw new Error('No response body')
+        }
+
+        const decoder = new TextDecoder()
+        let buffer = ''
+        // 当前事件的事件名，空行表示事件结束
+        let eventName = ''
+
+        while (true) {
+            const { done, value } = await reader.read()
 
-            const reader = response.body?.getReader()
-            if (!reader) {
-                throw new Error('No response body')
+            if (done) {
+                return false
             }
 
-            const decoder = new TextDecoder()
-            let buffer = ''
+            buffer += decoder.decode(value, { stream: true })
 
-            while (true) {
-                const { done, value } = await reader.read()
+            // 按行分割处理 SSE 数据
+            const lines = buffer.split('\n')
+            buffer = lines.pop() || '' // 保留最后一行（可能不完整）
 
-                if (done) {
-                    callbacks.onComplete()
-                    break
+            for (const line of lines) {
+                if (line.startsWith('event:done')) {
+                    // 收到完成事件
+                    return true
                 }
 
-                buffer += decoder.decode(value, { stream: true })
+                if (line.trim() === '') {
+                    eventName = ''
+                    continue
+                }
 
-                // 按行分割处理 SSE 数据
-                const lines = buffer.split('\n')
-                buffer = lines.pop() || '' // 保留最后一行（可能不完整）
+                if (line.startsWith('event:')) {
+                    eventName = line.slice(6).trim()
+                    continue
+                }
 
-                for (const line of lines) {
-                    if (line.startsWith('event:done')) {
-                        // 收到完成事件
-                        callbacks.onComplete()
-                        return
-                    }
+                if (line.startsWith('id:')) {
+                    lastEventId = line.slice(3).trim()
+                    continue
+                }
 
-                    if (line.startsWith('data:')) {
-                        const jsonStr = line.slice(5).trim()
-                        if (jsonStr) {
-                            try {
-                                const data = JSON.parse(jsonStr)
-                                if (data.d) {
-                                    callbacks.onMessage(data.d)
-                                }
-                            } catch (e) {
-                                // 忽略解析错误
+                if (line.startsWith('data:')) {
+                    const jsonStr = line.slice(5).trim()
+                    if (jsonStr) {
+                        try {
+                            const data = JSON.parse(jsonStr)
+                            if (eventName === 'queue') {
+                                callbacks.onQueue?.(data.position)
+                            } else if (eventName === 'reset') {
+                                callbacks.onReset?.()
+                            } else if (data.d) {
+                                callbacks.onMessage(data.d)
                             }
+                        } catch (e) {
+                            // 忽略解析错误
                         }
                     }
                 }
             }
-        })
-        .catch((error) => {
-            if (error.name !== 'AbortError') {
-                callbacks.onError(error)
+        }
+    }
+
+    const connect = async () => {
+        let attempts = 0
+        while (true) {
+            try {
+                const completed = await readStream()
+                // 正常结束，或者还没收到任何事件（无法续传）
+                if (completed || !lastEventId || attempts >= MAX_RECONNECT_ATTEMPTS) {
+                    callbacks.onComplete()
+                    return
+                }
+            } catch (error) {
+                if ((error as Error).name === 'AbortError') {
+                    return
+                }
+                if (!lastEventId || attempts >= MAX_RECONNECT_ATTEMPTS) {
+                    callbacks.onError(error as Error)
+                    return
+                }
             }
-        })
+            attempts++
+            await new Promise((resolve) => setTimeout(resolve, RECONNECT_DELAY_MS))
+            if (controller.signal.aborted) {
+                return
+            }
+        }
+    }
+
+    connect()
 
     // 返回取消函数
     return () => {
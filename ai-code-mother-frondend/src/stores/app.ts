@@ -4,7 +4,7 @@ import type { AppVo } from '@/types/app'
 import type { ChatMessage, CursorInfo, ChatHistoryCursorQueryRequest } from '@/types/common'
 import * as appApi from '@/api/app'
 import { chatToGenCode, getPreviewUrl } from '@/api/sse'
-import { listChatHistoryByPage } from '@/api/chatHistory'
+import { getFullMessage, listChatHistoryByPage } from '@/api/chatHistory'
 
 export const useAppStore = defineStore('app', () => {
     // 当前应用
@@ -103,6 +103,9 @@ export const useAppStore = defineStore('app', () => {
 
         console.log('[AppStore] 调用 SSE chatToGenCode, appId:', currentApp.value.id)
 
+        // 续传时断点已超出服务端回放范围，结束后从对话历史重新加载
+        let needsHistoryReload = false
+
         return new Promise((resolve, reject) => {
             cancelSSE = chatToGenCode(
                 currentApp.value!.id,
@@ -116,10 +119,28 @@ export const useAppStore = defineStore('app', () => {
                             aiMsg.content = currentResponse.value
                         }
                     },
+                    onQueue: (position) => {
+                        // 开始输出前显示排队位置，收到第一段内容后被覆盖
+                        const aiMsg = chatMessages.value.find(m => m.id === aiMessageId)
+                        if (aiMsg && !currentResponse.value) {
+                            aiMsg.content = position > 1
+                                ? `排队中，前面还有 ${position - 1} 个生成任务...`
+                                : '排队中，马上开始生成...'
+                        }
+                    },
+                    onReset: () => {
+                        needsHistoryReload = true
+                    },
                     onComplete: () => {
                         isGenerating.value = false
                         currentResponse.value = ''
                         cancelSSE = null
+                        if (needsHistoryReload) {
+                            // 用已保存的消息（包括生成中写入的草稿）替换缺了一段的回复
+                            loadChatHistory(false).catch(error => {
+                                console.error('[AppStore] 重新加载历史消息失败:', error)
+                            })
+                        }
                         console.log('[AppStore] SSE onComplete, codeGenType:', currentApp.value?.codeGenType)
                         // VUE_PROJECT 需要等待异步构建完成后再刷新预览
                         if (currentApp.value?.codeGenType === 'vue_project') {
@@ -240,7 +261,9 @@ export const useAppStore = defineStore('app', () => {
                 id: `history-${record.id}`,
                 role: record.messageType === 'user' ? 'user' : 'assistant',
                 content: record.message,
-                timestamp: new Date(record.createTime).getTime()
+                timestamp: new Date(record.createTime).getTime(),
+                historyId: record.id,
+                fullLength: record.messageLength
             }))
 
             // 如果是加载更多，将更旧的消息插入到列表开头
@@ -262,6 +285,16 @@ export const useAppStore = defineStore('app', () => {
         }
     }
 
+    // 展开只返回了摘要的大消息
+    async function expandMessage(messageId: string): Promise<void> {
+        const target = chatMessages.value.find(msg => msg.id === messageId)
+        if (!target?.historyId || target.fullLength == null) return
+
+        const res = await getFullMessage(target.historyId)
+        target.content = res.data
+        target.fullLength = null
+    }
+
     return {
         // 状态
         currentApp,
@@ -282,5 +315,6 @@ export const useAppStore = defineStore('app', () => {
         reset,
         refreshPreview,
         loadChatHistory,
+        expandMessage,
     }
 })
@@ -28,6 +28,10 @@ export interface ChatMessage {
     role: 'user' | 'assistant'
     content: string
     timestamp: number
+    // 对话历史消息 ID（历史消息才有）
+    historyId?: number
+    // 完整消息长度：不为空时 content 只是摘要，展开时再获取完整消息
+    fullLength?: number | null
 }
 
 // 游标信息
@@ -55,9 +59,11 @@ export interface ChatHistoryCursorQueryRequest {
 export interface ChatHistoryVo {
     id: number
     message: string
-    messageType: 'user' | 'ai' | 'error'
+    messageType: 'user' | 'ai' | 'ai_draft' | 'error'
     appId: number
     userId: number
     createTime: string
     updateTime: string
+    // 完整消息长度：不为空时 message 只是摘要（大消息压缩存储）
+    messageLength?: number | null
 }
@@ -55,6 +55,9 @@ create table app
 
 
 -- 对话历史表
+-- ft_message 索引的停用词设置在创建索引时确定：默认停用词表（含 a、i 等）会让 ngram 丢弃所有包含停用词的分词，
+-- 英文、代码关键词（如 "vue"、"main"）无法可靠命中，创建索引前在当前会话关闭停用词
+set session innodb_ft_enable_stopword = OFF;
 create table chat_history
 (
     id          bigint auto_increment comment 'id' primary key,
@@ -65,11 +68,36 @@ create table chat_history
     createTime  datetime default CURRENT_TIMESTAMP not null comment '创建时间',
     updateTime  datetime default CURRENT_TIMESTAMP not null on update CURRENT_TIMESTAMP comment '更新时间',
     isDelete    tinyint  default 0                 not null comment '是否删除',
+    messageLength int                              null comment '完整消息长度（大消息压缩存储到 chat_history_blob 时设置，message 中只保存摘要）',
     INDEX idx_appId (appId),                       -- 提升基于应用的查询性能
     INDEX idx_createTime (createTime),             -- 提升基于时间的查询性能
-    INDEX idx_appId_createTime (appId, createTime) -- 游标查询核心索引
+    INDEX idx_appId_createTime (appId, createTime), -- 游标查询核心索引
+    FULLTEXT INDEX ft_message (message) WITH PARSER ngram -- 管理员消息内容检索（ngram 分词，支持中文）
 ) comment '对话历史' collate = utf8mb4_unicode_ci;
 
+-- 已有库升级：
+-- alter table chat_history add column messageLength int null comment '完整消息长度（大消息压缩存储到 chat_history_blob 时设置，message 中只保存摘要）';
+-- 全文索引在关闭停用词的会话中创建；已在默认停用词表下创建过 ft_message 的库先删除再重建，
+-- 或把 chat-history.search.stopword-disabled 设为 false（含英文字母的关键词按 LIKE 查询）
+-- set session innodb_ft_enable_stopword = OFF;
+-- alter table chat_history drop index ft_message;
+-- alter table chat_history add fulltext index ft_message (message) with parser ngram;
+
+-- 对话历史大消息压缩存储表（主表只保存摘要，展开消息时才读取并解压）
+create table if not exists chat_history_blob
+(
+    chatHistoryId bigint                             not null comment '对话历史id' primary key,
+    content       mediumblob                         not null comment '压缩后的完整消息（zlib）',
+    searchText    mediumtext                         null comment '完整消息原文（不压缩，管理员按消息内容检索时匹配摘要之后的内容）',
+    createTime    datetime default CURRENT_TIMESTAMP not null comment '创建时间',
+    FULLTEXT INDEX ft_searchText (searchText) WITH PARSER ngram -- 大消息全文检索（与 ft_message 一样在关闭停用词的会话中创建）
+) comment '对话历史大消息压缩存储';
+
+-- 已有库升级（已有行的 searchText 由应用启动后按批补齐）：
+-- alter table chat_history_blob add column searchText mediumtext null comment '完整消息原文（不压缩，管理员按消息内容检索时匹配摘要之后的内容）';
+-- set session innodb_ft_enable_stopword = OFF;
+-- alter table chat_history_blob add fulltext index ft_searchText (searchText) with parser ngram;
+
 
 -- 部署历史表（Docker 容器化部署版本管理）
 CREATE TABLE IF NOT EXISTS `deploy_history`
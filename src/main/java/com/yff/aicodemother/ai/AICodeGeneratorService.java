@@ -20,40 +20,44 @@ public interface AICodeGeneratorService {
     /**
      * 生成HTML代码
      *
+     * @param appId       应用ID
      * @param userMessage 用户输入的信息
      * @return 生成的HTML代码
      */
     @SystemMessage(fromResource = "prompt/codegen-html-system-prompt.txt")
-    HtmlCodeResult generateHtmlCode(String userMessage);
+    HtmlCodeResult generateHtmlCode(@MemoryId long appId, @UserMessage String userMessage);
 
     /**
      * 生成多文件代码
      *
+     * @param appId       应用ID
      * @param userMessage 用户输入的信息
      * @return 生成的多文件代码，使用特定格式进行分隔
      */
     @SystemMessage(fromResource = "prompt/codegen-multi-file-system-prompt.txt")
-    MultiFileCodeResult generateMultiFileCode(String userMessage);
+    MultiFileCodeResult generateMultiFileCode(@MemoryId long appId, @UserMessage String userMessage);
 
     // 以下是新增的流式方法
 
     /**
      * 流式生成HTML代码
      *
+     * @param appId       应用ID
      * @param userMessage 用户输入的信息
      * @return 生成的HTML代码流
      */
     @SystemMessage(fromResource = "prompt/codegen-html-system-prompt.txt")
-    Flux<String> generateHtmlCodeStream(String userMessage);
+    Flux<String> generateHtmlCodeStream(@MemoryId long appId, @UserMessage String userMessage);
 
     /**
      * 流式生成多文件代码
      *
+     * @param appId       应用ID
      * @param userMessage 用户输入的信息
      * @return 生成的多文件代码流，使用特定格式进行分隔
      */
     @SystemMessage(fromResource = "prompt/codegen-multi-file-system-prompt.txt")
-    Flux<String> generateMultiFileCodeStream(String userMessage);
+    Flux<String> generateMultiFileCodeStream(@MemoryId long appId, @UserMessage String userMessage);
 
     /**
      * 流式生成Vue项目代码 (TokenStream版本,用于工具调用场景)
@@ -1,28 +1,48 @@
 package com.yff.aicodemother.ai;
 
-import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.yff.aicodemother.ai.memory.FileReferenceCompactor;
+import com.yff.aicodemother.ai.memory.TokenBudgetChatMemory;
 import com.yff.aicodemother.ai.model.enums.CodeGenTypeEnum;
 import com.yff.aicodemother.ai.tools.FileWriteTool;
 import com.yff.aicodemother.exception.BusinessException;
+import com.yff.aicodemother.config.ChatMemoryConfig;
 import com.yff.aicodemother.exception.ErrorCode;
+import com.yff.aicodemother.mapper.AppMapper;
 import com.yff.aicodemother.service.ChatHistoryService;
 import dev.langchain4j.community.store.memory.chat.redis.RedisChatMemoryStore;
 import dev.langchain4j.data.message.ToolExecutionResultMessage;
 import dev.langchain4j.memory.ChatMemory;
-import dev.langchain4j.memory.chat.ChatMemoryProvider;
 import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.model.TokenCountEstimator;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.service.AiServices;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
 
 import java.time.Duration;
-import java.util.function.Function;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
 
 /**
  * @author yff
@@ -46,21 +66,80 @@ public class AiCodeGeneratorServiceFactory {
 
     @Autowired
     private FileWriteTool fileWriteTool;
+
+    @Autowired
+    private AppMapper appMapper;
+
+    @Autowired
+    private ChatMemoryConfig chatMemoryConfig;
+
+    @Autowired
+    private TokenCountEstimator tokenCountEstimator;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private FileReferenceCompactor fileReferenceCompactor;
+
+    @Value("${ai.memory-cache.max-size:10000}")
+    private long memoryCacheMaxSize;
+
+    @Value("${ai.memory-cache.warmup.enabled:true}")
+    private boolean warmupEnabled;
+
+    @Value("${ai.memory-cache.warmup.active-within-hours:24}")
+    private long warmupActiveWithinHours;
+
+    @Value("${ai.memory-cache.warmup.max-apps:100}")
+    private int warmupMaxApps;
+
     /**
-     * AI服务实例缓存
+     * 每种代码生成类型一个AI服务代理，通过 ChatMemoryProvider 按 @MemoryId（appId）取该类型的对话记忆
+     */
+    private final Map<CodeGenTypeEnum, AICodeGeneratorService> typedServices = new EnumMap<>(CodeGenTypeEnum.class);
+
+    /**
+     * 对话记忆缓存（异步加载，appId + 代码生成类型 -> 对话记忆，窗口按该类型的 token 预算限制）
      * 缓存策略:
-     * - 最大容量:1000
-     * - 写入后30分钟过期
-     * - 访问后10分钟过期
+     * - 最大容量:ai.memory-cache.max-size（默认10000，记忆内容在 Redis 中，缓存的只是很轻的记忆对象）
+     * - 访问后2小时过期，闲置 10 分钟后不必再冷启动
+     * - 写入20分钟后再次访问时在后台重新加载（refresh-ahead），加载期间继续使用旧记忆
+     * 加载（从 MySQL 恢复历史）在虚拟线程上执行，不占用请求线程和 Caffeine 的哈希桶锁；同一个应用的并发请求共享同一次加载
      */
-    private final Cache<String, AICodeGeneratorService> serviceCache = Caffeine.newBuilder()
-            .maximumSize(1000)
-            .expireAfterWrite(Duration.ofMinutes(30))
-            .expireAfterAccess(Duration.ofMinutes(10))
-            .removalListener(((key, value, cause) -> {
-                log.debug("AI服务实例被移除,appId:{},原因:{}", key, cause);
-            }))
-            .build();
+    private AsyncLoadingCache<ChatMemoryKey, ChatMemory> chatMemoryCache;
+
+    /**
+     * 对话记忆加载线程（每个任务一个虚拟线程），容器关闭时关闭
+     */
+    private final ExecutorService memoryLoadExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @PostConstruct
+    public void init() {
+        chatMemoryCache = Caffeine.newBuilder()
+                .maximumSize(memoryCacheMaxSize)
+                .expireAfterAccess(Duration.ofHours(2))
+                .refreshAfterWrite(Duration.ofMinutes(20))
+                .executor(memoryLoadExecutor)
+                .removalListener(((key, value, cause) -> {
+                    log.debug("对话记忆被移除,key:{},原因:{}", key, cause);
+                }))
+                .buildAsync(key -> createChatMemory(key.appId(), key.codeGenType()));
+        for (CodeGenTypeEnum codeGenTypeEnum : CodeGenTypeEnum.values()) {
+            typedServices.put(codeGenTypeEnum, createAiCodeGeneratorService(codeGenTypeEnum));
+        }
+    }
+
+    /**
+     * 关闭对话记忆加载线程，正在进行的加载最多等待 5 秒
+     */
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        memoryLoadExecutor.shutdown();
+        if (!memoryLoadExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+            memoryLoadExecutor.shutdownNow();
+        }
+    }
 
     // region 根据appId获取不同的AI服务实例(不带缓存)
     // 为了保证和之前的代码兼容，仍然默认提供一个AICodeGeneratorService实例
@@ -85,7 +164,7 @@ public class AiCodeGeneratorServiceFactory {
         return AiServices.builder(AICodeGeneratorService.class)
                 .chatModel(chatModel)
                 .streamingChatModel(streamingChatModel)
-                .chatMemory(chatMemory)
+                .chatMemoryProvider(memoryId -> chatMemory) // 方法声明了 @MemoryId，必须通过 provider 提供记忆
                 .build();
     }
     // endregion
@@ -100,56 +179,129 @@ public class AiCodeGeneratorServiceFactory {
 
     /*
      * 根据appId和代码生成类型获取服务 (带缓存)
+     * 代理按类型共享；这里同时确保该应用的对话记忆已经加载，调用代理时 ChatMemoryProvider 直接命中缓存
      */
     public AICodeGeneratorService getAiCodeGeneratorService(long appId, CodeGenTypeEnum codeGenTypeEnum) {
-        String cacheKey = buildCacheKey(appId, codeGenTypeEnum);
-        return serviceCache.get(cacheKey, key -> createAiCodeGeneratorService(appId, codeGenTypeEnum));// Caffeine 的
-                                                                                                       // Load-Through
-                                                                                                       // 模式，开发者无需手动判断缓存是否存在。
+        getChatMemory(appId, codeGenTypeEnum);
+        return typedServices.get(codeGenTypeEnum);
     }
 
     /**
-     * 构建缓存键
+     * 获取应用的对话记忆，未加载时从数据库恢复
+     *
+     * @param appId           应用ID
+     * @param codeGenTypeEnum 代码生成类型
+     * @return 对话记忆
      */
-    private String buildCacheKey(long appId, CodeGenTypeEnum codeGenTypeEnum) {
-        return appId + "_" + codeGenTypeEnum.getValue();
+    public ChatMemory getChatMemory(long appId, CodeGenTypeEnum codeGenTypeEnum) {
+        try {
+            return chatMemoryCache.get(new ChatMemoryKey(appId, codeGenTypeEnum)).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "加载对话记忆失败：" + e.getMessage());
+        }
     }
 
     /**
-     * 创建新的AI服务实例
-     *
+     * 启动后预热最近活跃应用的对话记忆，避免这些应用的第一条消息冷启动
      */
-    private AICodeGeneratorService createAiCodeGeneratorService(long appId, CodeGenTypeEnum codeGenTypeEnum) {
-
-        log.info("创建新的AI服务实例,appId:{}", appId);
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpActiveApps() {
+        if (!warmupEnabled) {
+            return;
+        }
+        try {
+            LocalDateTime since = LocalDateTime.now().minusHours(warmupActiveWithinHours);
+            List<Long> appIds = chatHistoryService.listRecentActiveAppIds(since, warmupMaxApps);
+            if (appIds.isEmpty()) {
+                return;
+            }
+            // 记忆按代码生成类型区分预算，只预热已确定类型的应用
+            List<ChatMemoryKey> keys = appMapper.selectByIds(appIds).stream()
+                    .filter(app -> CodeGenTypeEnum.getEnumByValue(app.getCodeGenType()) != null)
+                    .map(app -> new ChatMemoryKey(app.getId(), CodeGenTypeEnum.getEnumByValue(app.getCodeGenType())))
+                    .toList();
+            // 异步批量加载，不阻塞启动
+            chatMemoryCache.getAll(keys).whenComplete((memories, error) -> {
+                if (error != null) {
+                    log.warn("预热对话记忆失败：{}", error.getMessage());
+                } else {
+                    log.info("已预热 {} 个活跃应用的对话记忆", memories.size());
+                }
+            });
+        } catch (Exception e) {
+            log.warn("预热对话记忆失败：{}", e.getMessage());
+        }
+    }
 
-        // 根据appId构建独立的对话记忆
-        MessageWindowChatMemory chatMemory = MessageWindowChatMemory
-                .builder()
-                .id(appId)
-                .chatMemoryStore(redisChatMemoryStore)
-                .maxMessages(100)
-                .build();
+    /**
+     * 创建对话记忆并从数据库加载历史对话
+     */
+    private ChatMemory createChatMemory(long appId, CodeGenTypeEnum codeGenTypeEnum) {
+        log.info("加载对话记忆,appId:{},codeGenType:{}", appId, codeGenTypeEnum.getValue());
+        // 根据appId构建独立的对话记忆，窗口按代码生成类型的 token 预算限制
+        String codeGenType = codeGenTypeEnum.getValue();
+        ChatMemory chatMemory = new TokenBudgetChatMemory(appId, redisChatMemoryStore,
+                chatMemoryConfig.getTokenBudget(codeGenTypeEnum), tokenCountEstimator,
+                DistributionSummary.builder("ai.memory.window.tokens")
+                        .description("每次调用大模型时对话记忆窗口的 token 数")
+                        .baseUnit("tokens")
+                        .tag("codeGenType", codeGenType)
+                        .register(meterRegistry),
+                Counter.builder("ai.memory.evicted.messages")
+                        .description("超出 token 预算被淘汰的对话记忆消息数")
+                        .tag("codeGenType", codeGenType)
+                        .register(meterRegistry),
+                // VUE_PROJECT 的历史轮次只保留文件引用，当前文件内容由本轮 prompt 注入
+                codeGenTypeEnum == CodeGenTypeEnum.VUE_PROJECT ? fileReferenceCompactor::compact : UnaryOperator.identity());
         // 从数据库加载历史对话到记忆中
-        chatHistoryService.loadChatHistoryToMemory(appId, chatMemory, 50);
+        chatHistoryService.loadChatHistoryToMemory(appId, chatMemory, chatMemoryConfig.getHistoryLoadCount());
+        return chatMemory;
+    }
+
+    /**
+     * ChatMemoryProvider：按 @MemoryId（appId）从记忆缓存取指定类型的对话记忆
+     */
+    private ChatMemory provideChatMemory(Object memoryId, CodeGenTypeEnum codeGenTypeEnum) {
+        if (!(memoryId instanceof Number appId)) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "对话记忆ID必须为应用ID：" + memoryId);
+        }
+        return getChatMemory(appId.longValue(), codeGenTypeEnum);
+    }
+
+    /**
+     * 创建指定类型的AI服务代理（无状态，所有应用共享）
+     *
+     */
+    private AICodeGeneratorService createAiCodeGeneratorService(CodeGenTypeEnum codeGenTypeEnum) {
+
+        log.info("创建AI服务代理,codeGenType:{}", codeGenTypeEnum.getValue());
 
         // 修改代码实现根据codeGenTypeEnum选择不同的配置
         return switch (codeGenTypeEnum) {
             case VUE_PROJECT -> AiServices.builder(AICodeGeneratorService.class)
                     .chatModel(chatModel)
                     .streamingChatModel(streamingChatModel)
-                    .chatMemoryProvider(memoryId -> chatMemory) // 这里必须要指定chatMemoryProvider的配置，为每个memoryId绑定会话记忆
-                    .tools(new FileWriteTool())
+                    .chatMemoryProvider(memoryId -> provideChatMemory(memoryId, codeGenTypeEnum)) // 为每个memoryId绑定会话记忆
+                    .tools(fileWriteTool)
                     .hallucinatedToolNameStrategy(toolExecutionRequest -> ToolExecutionResultMessage
                             .from(toolExecutionRequest, "Error:there is no tool called " + toolExecutionRequest.name()))
                     .build();
             case HTML, MULTI_FILE -> AiServices.builder(AICodeGeneratorService.class)
                     .chatModel(chatModel)
                     .streamingChatModel(streamingChatModel)
-                    .chatMemory(chatMemory)
+                    .chatMemoryProvider(memoryId -> provideChatMemory(memoryId, codeGenTypeEnum))
                     .build();
             default -> throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型：" + codeGenTypeEnum.getValue());
         };
     }
 
+    /**
+     * 对话记忆缓存键
+     */
+    private record ChatMemoryKey(long appId, CodeGenTypeEnum codeGenType) {
+    }
+
 }
@@ -1,15 +1,16 @@
 package com.yff.aicodemother.ai.core;
 
-import cn.hutool.json.JSON;
-import cn.hutool.json.JSONUtil;
 import com.yff.aicodemother.ai.AICodeGeneratorService;
 import com.yff.aicodemother.ai.AiCodeGeneratorServiceFactory;
 import com.yff.aicodemother.ai.core.parser.CodeParserExecutor;
+import com.yff.aicodemother.ai.core.parser.StreamingCodeParser;
 import com.yff.aicodemother.ai.core.saver.CodeFileSaverExecutor;
+import com.yff.aicodemother.ai.core.saver.StreamingCodeFileSaver;
 import com.yff.aicodemother.ai.model.HtmlCodeResult;
 import com.yff.aicodemother.ai.model.MultiFileCodeResult;
 import com.yff.aicodemother.ai.model.enums.CodeGenTypeEnum;
 import com.yff.aicodemother.ai.model.message.AiResponseMessage;
+import com.yff.aicodemother.ai.model.message.StreamMessage;
 import com.yff.aicodemother.ai.model.message.ToolExecutedMessage;
 import com.yff.aicodemother.ai.model.message.ToolRequestMessage;
 import com.yff.aicodemother.exception.BusinessException;
@@ -19,6 +20,7 @@ import dev.langchain4j.service.TokenStream;
 import dev.langchain4j.service.tool.ToolExecution;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 
@@ -40,6 +42,12 @@ public class AiCodeGeneratorFacade {
     @Autowired
     private AiCodeGeneratorServiceFactory aiCodeGeneratorServiceFactory;
 
+    /**
+     * 是否边生成边写入代码文件（false 时退回到流结束后统一解析保存）
+     */
+    @Value("${code-gen.stream-save.enabled:true}")
+    private boolean streamSaveEnabled;
+
     /**
      * 统一入口：根据类型生成并保存代码文件
      *
@@ -57,12 +65,12 @@ public class AiCodeGeneratorFacade {
 
         return switch (codeGenTypeEnum) {
             case HTML -> {
-                HtmlCodeResult htmlCodeResult = aiCodeGeneratorService.generateHtmlCode(userMessage);
+                HtmlCodeResult htmlCodeResult = aiCodeGeneratorService.generateHtmlCode(appId, userMessage);
                 yield CodeFileSaverExecutor.executeSaver(htmlCodeResult, CodeGenTypeEnum.HTML, appId); // yield关键字用于返回值
 
             }
             case MULTI_FILE -> {
-                MultiFileCodeResult multiFileCodeResult = aiCodeGeneratorService.generateMultiFileCode(userMessage);
+                MultiFileCodeResult multiFileCodeResult = aiCodeGeneratorService.generateMultiFileCode(appId, userMessage);
                 yield CodeFileSaverExecutor.executeSaver(multiFileCodeResult, CodeGenTypeEnum.MULTI_FILE, appId);
             }
             default -> {
@@ -75,12 +83,13 @@ public class AiCodeGeneratorFacade {
 
     /**
      * 统一入口：根据类型生成并保存代码文件(流式)
+     * HTML/MULTI_FILE 的文本片段包装为 AiResponseMessage，VUE_PROJECT 额外包含工具调用消息
      *
      * @param userMessage     用户提示词
      * @param codeGenTypeEnum 代码生成类型枚举
-     * @return 生成的代码流
+     * @return 生成的消息流
      */
-    public Flux<String> generateAndSaveCodeStream(String userMessage, CodeGenTypeEnum codeGenTypeEnum, Long appId) {
+    public Flux<StreamMessage> generateAndSaveCodeStream(String userMessage, CodeGenTypeEnum codeGenTypeEnum, Long appId) {
         AICodeGeneratorService aiCodeGeneratorService = aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(appId,
                 codeGenTypeEnum);
 
@@ -90,21 +99,18 @@ public class AiCodeGeneratorFacade {
 
         return switch (codeGenTypeEnum) {
             case HTML -> {
-                Flux<String> codeStream = aiCodeGeneratorService.generateHtmlCodeStream(userMessage);
-                yield processCodeStream(codeStream, CodeGenTypeEnum.HTML, appId);
+                Flux<String> codeStream = aiCodeGeneratorService.generateHtmlCodeStream(appId, userMessage);
+                yield processCodeStream(codeStream, CodeGenTypeEnum.HTML, appId).map(AiResponseMessage::new);
             }
 
             case MULTI_FILE -> {
-                Flux<String> codeStream = aiCodeGeneratorService.generateMultiFileCodeStream(userMessage);
-                yield processCodeStream(codeStream, CodeGenTypeEnum.MULTI_FILE, appId);
+                Flux<String> codeStream = aiCodeGeneratorService.generateMultiFileCodeStream(appId, userMessage);
+                yield processCodeStream(codeStream, CodeGenTypeEnum.MULTI_FILE, appId).map(AiResponseMessage::new);
             }
             case VUE_PROJECT -> {
-                // VUE_PROJECT 使用 TokenStream 获取工具调用信息
-                // 通过 processCodeStream 保持流的订阅，避免 HTTP 连接提前关闭
-                // 注意：虽然传入 MULTI_FILE，但实际文件保存由 FileWriteTool 完成
+                // VUE_PROJECT 使用 TokenStream 获取工具调用信息，文件保存由 FileWriteTool 在工具调用时完成
                 TokenStream tokenStream = aiCodeGeneratorService.generateVueProjectTokenStream(appId, userMessage);
-                Flux<String> jsonStream = processTokenStream(tokenStream);
-                yield processCodeStream(jsonStream, CodeGenTypeEnum.MULTI_FILE, appId);
+                yield processTokenStream(tokenStream);
             }
             default -> {
                 String errorMsg = String.format("不支持的生成类型：%s", codeGenTypeEnum.getValue());
@@ -123,24 +129,18 @@ public class AiCodeGeneratorFacade {
      */
     private Flux<String> processCodeStream(Flux<String> codeStream, CodeGenTypeEnum codeGenTypeEnum, Long appId) {
 
-        StringBuilder codeBuilder = new StringBuilder();
+        if (streamSaveEnabled) {
+            return processCodeStreamWithStreamingSave(codeStream, codeGenTypeEnum, appId);
+        }
+        // 流式解析器在 chunk 到达时识别代码块边界，不再缓存完整输出后统一正则解析
+        StreamingCodeParser<?> streamingCodeParser = CodeParserExecutor.createStreamingParser(codeGenTypeEnum);
         return codeStream
-                .doOnNext(
-                        chunk -> {
-                            // 在这里可以处理每个代码块的逻辑，例如拼接完整内容
-                            codeBuilder.append(chunk);
-                        })
+                .doOnNext(streamingCodeParser::append)
                 .doOnComplete(
                         // 在流式传输完成后执行保存操作
                         () -> {
                             try {
-                                String completeCode = codeBuilder.toString();
-                                log.info("完整多文件代码内容：\n{}", completeCode);
-                                // MultiFileCodeResult multiFileCodeResult =
-                                // CodeParser.parseMultiFileCode(completeCode); //通过解析器获取完整代码结果对象
-                                Object parseResult = CodeParserExecutor.executeParse(completeCode, codeGenTypeEnum);// 使用解析器解析代码
-                                // File savedDir =
-                                // CodeFileSaver.saveMultiFileCodeResult(multiFileCodeResult);//保存文件
+                                Object parseResult = streamingCodeParser.complete();// 获取解析结果
                                 File savedDir = CodeFileSaverExecutor.executeSaver(parseResult, codeGenTypeEnum, appId);// 使用保存器保存代码文件
                                 log.info("保存到目录：{}", savedDir.getAbsolutePath());
                             } catch (Exception e) {
@@ -149,24 +149,50 @@ public class AiCodeGeneratorFacade {
                         });
     }
 
+    /**
+     * 边生成边写入的流式代码处理方法
+     * 代码块打开即开始写文件，闭合时原子替换，流结束时只需做收尾校验
+     *
+     * @param codeStream      代码流
+     * @param codeGenTypeEnum 代码生成类型枚举
+     * @return 处理后的代码流
+     */
+    private Flux<String> processCodeStreamWithStreamingSave(Flux<String> codeStream, CodeGenTypeEnum codeGenTypeEnum,
+            Long appId) {
+
+        return Flux.defer(() -> {
+            StreamingCodeFileSaver streamingSaver = CodeFileSaverExecutor.createStreamingSaver(codeGenTypeEnum, appId);
+            return codeStream
+                    .doOnNext(streamingSaver::append)
+                    .doOnComplete(() -> {
+                        try {
+                            File savedDir = streamingSaver.complete();
+                            log.info("保存到目录：{}", savedDir.getAbsolutePath());
+                        } catch (Exception e) {
+                            log.error("保存失败：{}", e.getMessage());
+                        }
+                    })
+                    .doOnError(error -> streamingSaver.abort())
+                    .doOnCancel(streamingSaver::abort);
+        });
+    }
+
     /**
      * 处理TokenStream流 转换为Flux 并传递工具调用信息
+     * 直接发送消息对象，由下游处理器按类型处理，不做中间的 JSON 序列化
      *
      * @param tokenStream TokenStream流
-     * @return 处理后的字符串流
+     * @return 消息流
      */
-    private Flux<String> processTokenStream(TokenStream tokenStream) {
+    private Flux<StreamMessage> processTokenStream(TokenStream tokenStream) {
 
         return Flux.create(sink -> {
             tokenStream.onPartialResponse((String partialResponse) -> {
-                AiResponseMessage aiResponseMessage = new AiResponseMessage(partialResponse);
-                sink.next(JSONUtil.toJsonStr(aiResponseMessage));
+                sink.next(new AiResponseMessage(partialResponse));
             }).onPartialToolCall((toolExecution) -> {
-                ToolRequestMessage toolRequestMessage = new ToolRequestMessage(toolExecution);
-                sink.next(JSONUtil.toJsonStr(toolRequestMessage));
+                sink.next(new ToolRequestMessage(toolExecution));
             }).onToolExecuted((ToolExecution toolExecution) -> {
-                ToolExecutedMessage toolExecutedMessage = new ToolExecutedMessage(toolExecution);
-                sink.next(JSONUtil.toJsonStr(toolExecutedMessage));
+                sink.next(new ToolExecutedMessage(toolExecution));
             }).onCompleteResponse((ChatResponse response) -> {
                 sink.complete();
             }).onError((Throwable error) -> {
@@ -0,0 +1,253 @@
+package com.yff.aicodemother.ai.core;
+
+import cn.hutool.core.util.StrUtil;
+import com.yff.aicodemother.ai.AiCodeGeneratorServiceFactory;
+import com.yff.aicodemother.ai.core.context.VueSourceContextBuilder;
+import com.yff.aicodemother.ai.model.enums.CodeGenTypeEnum;
+import com.yff.aicodemother.ai.routing.CachedCodeGenTypeRouter;
+import com.yff.aicodemother.exception.BusinessException;
+import com.yff.aicodemother.exception.ErrorCode;
+import com.yff.aicodemother.mapper.AppMapper;
+import com.yff.aicodemother.model.dto.chathistory.ChatHistoryAddRequest;
+import com.yff.aicodemother.model.entity.App;
+import com.yff.aicodemother.model.entity.User;
+import com.yff.aicodemother.model.enums.MessageTypeEnum;
+import com.yff.aicodemother.service.ChatHistoryService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ *
+ * 代码生成准备阶段
+ * 调用大模型前的准备步骤在虚拟线程上并行执行，互不依赖的 IO 相互重叠：
+ * - route：确定代码生成类型（auto 时走路由并回写应用）
+ * - save_history：保存用户消息到对话历史
+ * - vue_context：VUE_PROJECT 从源文件索引构建上下文注入 prompt（依赖 route）
+ * - ai_service：取出 AI 服务代理并预先加载对话记忆，未命中缓存时会从 MySQL 加载（依赖 route 和 save_history，
+ *   与原先串行执行时一样，加载到的历史包含本次用户消息）
+ * route 等阶段失败时用户消息可能已经保存，此时补写一条错误消息，与生成失败时一样，对话历史中不会留下没有回复的用户消息
+ * 每个阶段的耗时记录到 ai.generation.prepare{stage}，总耗时 stage=total，并输出一行耗时明细日志
+ *
+ * @author yff
+ * @date 2026-10-18 17:12:54
+ */
+@Slf4j
+@Component
+public class GenerationContextPreparer {
+
+    /**
+     * 注入到 prompt 的源文件上下文的开始和结束标记，对话记忆据此去掉历史消息中已过时的源文件内容
+     */
+    public static final String SOURCE_CONTEXT_HEADER = "[当前项目源文件，请根据以下源码定位需要修改的文件]";
+
+    public static final String SOURCE_CONTEXT_FOOTER = "[当前项目源文件结束]";
+
+    @Autowired
+    private CachedCodeGenTypeRouter cachedCodeGenTypeRouter;
+
+    @Autowired
+    private AppMapper appMapper;
+
+    @Autowired
+    private ChatHistoryService chatHistoryService;
+
+    @Autowired
+    private AiCodeGeneratorServiceFactory aiCodeGeneratorServiceFactory;
+
+    @Autowired
+    private VueSourceContextBuilder vueSourceContextBuilder;
+
+    private final MeterRegistry meterRegistry;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public GenerationContextPreparer(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+
+    /**
+     * 执行准备阶段
+     *
+     * @param app         应用（已校验权限）
+     * @param userMessage 用户消息
+     * @param user        当前用户
+     * @return 准备结果
+     */
+    public PreparedGeneration prepare(App app, String userMessage, User user) {
+        Long appId = app.getId();
+        long start = System.nanoTime();
+        Map<String, Long> stageMillis = Collections.synchronizedMap(new LinkedHashMap<>());
+
+        CompletableFuture<CodeGenTypeEnum> typeFuture = stage("route", stageMillis,
+                () -> resolveCodeGenType(app, userMessage));
+        CompletableFuture<Void> historyFuture = stage("save_history", stageMillis, () -> {
+            saveUserMessage(appId, userMessage, user);
+            return null;
+        });
+        CompletableFuture<String> promptFuture = typeFuture.thenCompose(type -> type != CodeGenTypeEnum.VUE_PROJECT
+                ? CompletableFuture.completedFuture(userMessage)
+                : stage("vue_context", stageMillis, () -> buildVuePrompt(appId, userMessage)));
+        CompletableFuture<Void> serviceFuture = typeFuture.thenCombine(historyFuture, (type, ignored) -> type)
+                .thenCompose(type -> stage("ai_service", stageMillis, () -> {
+                    aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(appId, type);
+                    return null;
+                }));
+
+        try {
+            CompletableFuture.allOf(promptFuture, serviceFuture).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() == null ? e : e.getCause();
+            saveErrorMessageIfHistorySaved(historyFuture, appId, cause, user);
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "生成准备失败：" + cause.getMessage());
+        }
+        long totalNanos = System.nanoTime() - start;
+        stageTimer("total").record(totalNanos, TimeUnit.NANOSECONDS);
+        log.info("应用 {} 生成准备完成，总耗时 {}ms，各阶段耗时(ms)：{}", appId,
+                TimeUnit.NANOSECONDS.toMillis(totalNanos), stageMillis);
+        return new PreparedGeneration(typeFuture.join(), promptFuture.join());
+    }
+
+
+    /**
+     * 在虚拟线程上执行一个阶段并记录耗时
+     */
+    private <T> CompletableFuture<T> stage(String name, Map<String, Long> stageMillis, Supplier<T> supplier) {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            try {
+                return supplier.get();
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                stageTimer(name).record(elapsed, TimeUnit.NANOSECONDS);
+                stageMillis.put(name, TimeUnit.NANOSECONDS.toMillis(elapsed));
+            }
+        }, executor);
+    }
+
+
+    private Timer stageTimer(String stage) {
+        return Timer.builder("ai.generation.prepare")
+                .description("代码生成准备阶段耗时")
+                .tag("stage", stage)
+                .register(meterRegistry);
+    }
+
+
+    /**
+     * 获取应用的代码生成类型（支持 AI 自动路由）
+     */
+    private CodeGenTypeEnum resolveCodeGenType(App app, String userMessage) {
+        String codeGenType = app.getCodeGenType();
+        if (StrUtil.isBlank(codeGenType) || "auto".equals(codeGenType)) {
+            // AI 自动路由：根据用户 prompt 智能判断代码生成类型（优先命中关键词规则和路由缓存）
+            log.info("应用 {} 使用AI自动路由判断代码生成类型, prompt: {}", app.getId(), userMessage);
+            CodeGenTypeEnum codeGenTypeEnum = cachedCodeGenTypeRouter.route(userMessage);
+            log.info("应用 {} AI路由结果: {}", app.getId(), codeGenTypeEnum);
+            // 回写到 App 记录，后续对话沿用此类型
+            App updateApp = new App();
+            updateApp.setId(app.getId());
+            updateApp.setCodeGenType(codeGenTypeEnum.getValue());
+            appMapper.updateById(updateApp);
+            return codeGenTypeEnum;
+        }
+        CodeGenTypeEnum codeGenTypeEnum = CodeGenTypeEnum.getEnumByValue(codeGenType);
+        if (codeGenTypeEnum == null) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "应用的代码生成类型不合法");
+        }
+        return codeGenTypeEnum;
+    }
+
+
+    /**
+     * 保存用户消息到对话历史
+     */
+    private void saveUserMessage(Long appId, String userMessage, User user) {
+        ChatHistoryAddRequest userHistoryRequest = new ChatHistoryAddRequest();
+        userHistoryRequest.setAppId(appId);
+        userHistoryRequest.setUserId(user.getId());
+        userHistoryRequest.setMessage(userMessage);
+        userHistoryRequest.setMessageType(MessageTypeEnum.USER.getValue());
+        chatHistoryService.saveChatMessage(userHistoryRequest);
+    }
+
+
+    /**
+     * 准备失败时，等待保存用户消息的阶段结束，已保存则补写错误消息
+     */
+    private void saveErrorMessageIfHistorySaved(CompletableFuture<Void> historyFuture, Long appId, Throwable cause,
+                                                User user) {
+        boolean saved = historyFuture.handle((ignored, error) -> error == null).join();
+        if (!saved) {
+            return;
+        }
+        try {
+            ChatHistoryAddRequest errorHistoryRequest = new ChatHistoryAddRequest();
+            errorHistoryRequest.setAppId(appId);
+            errorHistoryRequest.setUserId(user.getId());
+            errorHistoryRequest.setMessage("生成准备失败：" + cause.getMessage());
+            errorHistoryRequest.setMessageType(MessageTypeEnum.ERROR.getValue());
+            chatHistoryService.saveChatMessage(errorHistoryRequest);
+        } catch (Exception e) {
+            log.error("应用 {} 保存生成准备失败消息失败：{}", appId, e.getMessage());
+        }
+    }
+
+
+    /**
+     * VUE_PROJECT 类型：将源文件内容注入到 prompt 中，帮助 AI 定位需要修改的组件
+     */
+    private String buildVuePrompt(Long appId, String userMessage) {
+        String sourceContext = vueSourceContextBuilder.build(appId, userMessage);
+        if (StrUtil.isBlank(sourceContext)) {
+            return userMessage;
+        }
+        log.info("已为 VUE_PROJECT 应用 {} 注入源文件上下文", appId);
+        return sourceContext + SOURCE_CONTEXT_FOOTER + "\n\n" + userMessage;
+    }
+
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdown();
+    }
+
+
+    /**
+     * 准备结果
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class PreparedGeneration {
+
+        /**
+         * 代码生成类型
+         */
+        private final CodeGenTypeEnum codeGenType;
+
+        /**
+         * 发送给大模型的 prompt（VUE_PROJECT 已注入源文件上下文）
+         */
+        private final String prompt;
+    }
+
+}
@@ -0,0 +1,265 @@
+package com.yff.aicodemother.ai.core.context;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.yff.aicodemother.ai.core.GenerationContextPreparer;
+import com.yff.aicodemother.constant.AppConstant;
+import dev.langchain4j.model.TokenCountEstimator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ *
+ * Vue 项目源文件上下文构建器
+ * 每个应用维护一份 src/ 目录的源文件索引（路径 -> 修改时间、大小、转义后的内容、token 数），构建 prompt 上下文时不再每轮都遍历目录、读取全部文件：
+ * - FileWriteTool 写入文件后直接更新索引，正常情况下热路径上没有磁盘 IO
+ * - 超过 verify-interval-seconds 未校验时按修改时间和大小重新校验一次（兜底外部修改），只重新读取变化的文件
+ * - 上下文有 token 上限：按与 prompt 的相关度（文件名在 prompt 中出现、入口文件）排序依次放入完整内容，
+ *   放不下的文件只列出路径和行数，prompt 大小不随项目规模无限增长
+ *
+ * @author yff
+ * @date 2026-10-18 18:52:36
+ */
+@Slf4j
+@Component
+public class VueSourceContextBuilder {
+
+    private static final List<String> EXTENSIONS = List.of(".vue", ".js", ".css", ".json");
+
+    /**
+     * 入口文件，修改任何功能时都可能用到，优先放入上下文
+     */
+    private static final Set<String> ENTRY_FILES = Set.of("src/App.vue", "src/main.js", "src/router/index.js");
+
+    @Autowired
+    private TokenCountEstimator tokenCountEstimator;
+
+    @Value("${ai.vue-context.max-tokens:12000}")
+    private int maxTokens;
+
+    @Value("${ai.vue-context.verify-interval-seconds:300}")
+    private long verifyIntervalSeconds;
+
+    /**
+     * 源文件索引缓存
+     * 缓存策略:
+     * - 最大容量:500
+     * - 访问后30分钟过期
+     */
+    private final Cache<Long, SourceIndex> indexCache = Caffeine.newBuilder()
+            .maximumSize(500)
+            .expireAfterAccess(Duration.ofMinutes(30))
+            .build();
+
+
+    /**
+     * 构建源文件上下文
+     *
+     * @param appId       应用ID
+     * @param userMessage 用户消息，用于挑选相关文件
+     * @return 格式化的源文件上下文，若无源文件则返回空字符串
+     */
+    public String build(Long appId, String userMessage) {
+        Path srcDir = srcDir(appId);
+        if (!Files.isDirectory(srcDir)) {
+            log.warn("Vue 项目 src 目录不存在: {}", srcDir);
+            return "";
+        }
+        SourceIndex index = indexCache.get(appId, key -> new SourceIndex());
+        long now = System.currentTimeMillis();
+        if (now - index.verifiedAt > TimeUnit.SECONDS.toMillis(verifyIntervalSeconds)) {
+            refresh(srcDir.getParent(), index);
+            index.verifiedAt = now;
+        }
+        if (index.files.isEmpty()) {
+            return "";
+        }
+        return render(select(index, userMessage));
+    }
+
+
+    /**
+     * 文件写入后更新索引（由 FileWriteTool 调用），索引未加载时忽略，下次构建时再完整加载
+     *
+     * @param appId   应用ID
+     * @param path    写入的文件
+     * @param content 文件内容
+     */
+    public void onFileWritten(Long appId, Path path, String content) {
+        SourceIndex index = indexCache.getIfPresent(appId);
+        if (index == null) {
+            return;
+        }
+        Path projectRoot = srcDir(appId).getParent();
+        Path absolutePath = path.toAbsolutePath().normalize();
+        if (!absolutePath.startsWith(projectRoot.toAbsolutePath().normalize()) || !isSourceFile(absolutePath)) {
+            return;
+        }
+        String relativePath = relativePath(projectRoot.toAbsolutePath().normalize(), absolutePath);
+        if (!relativePath.startsWith("src/")) {
+            return;
+        }
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(absolutePath, BasicFileAttributes.class);
+            index.files.put(relativePath, toSourceFile(relativePath, attributes, content));
+        } catch (IOException e) {
+            // 读不到属性时移除，下次校验时重新读取
+            index.files.remove(relativePath);
+        }
+    }
+
+
+    /**
+     * 按修改时间和大小校验索引，只重新读取新增或变化的文件，并移除已删除的文件
+     */
+    private void refresh(Path projectRoot, SourceIndex index) {
+        Set<String> existing = new HashSet<>();
+        int reloaded = 0;
+        try (Stream<Path> walk = Files.walk(projectRoot.resolve("src"))) {
+            for (Path filePath : (Iterable<Path>) walk.filter(Files::isRegularFile).filter(this::isSourceFile)::iterator) {
+                String relativePath = relativePath(projectRoot, filePath);
+                existing.add(relativePath);
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(filePath, BasicFileAttributes.class);
+                    SourceFile cached = index.files.get(relativePath);
+                    if (cached != null && cached.lastModified() == attributes.lastModifiedTime().toMillis()
+                            && cached.size() == attributes.size()) {
+                        continue;
+                    }
+                    String content = Files.readString(filePath, StandardCharsets.UTF_8);
+                    index.files.put(relativePath, toSourceFile(relativePath, attributes, content));
+                    reloaded++;
+                } catch (IOException e) {
+                    log.warn("读取源文件失败: {}", filePath, e);
+                }
+            }
+        } catch (IOException e) {
+            log.error("遍历 Vue 项目源文件目录失败: {}", projectRoot, e);
+            return;
+        }
+        index.files.keySet().retainAll(existing);
+        log.debug("源文件索引校验完成，项目: {}，文件数: {}，重新读取: {}", projectRoot, existing.size(), reloaded);
+    }
+
+
+    /**
+     * 按相关度挑选放入完整内容的文件，总 token 数不超过上限
+     */
+    private List<SelectedFile> select(SourceIndex index, String userMessage) {
+        String prompt = userMessage == null ? "" : userMessage.toLowerCase();
+        List<SourceFile> ranked = new ArrayList<>(index.files.values());
+        ranked.sort(Comparator.comparingInt((SourceFile file) -> -relevance(file, prompt))
+                .thenComparingInt(SourceFile::tokens));
+        List<SelectedFile> selected = new ArrayList<>(ranked.size());
+        int remaining = maxTokens;
+        for (SourceFile file : ranked) {
+            boolean full = file.tokens() <= remaining;
+            if (full) {
+                remaining -= file.tokens();
+            }
+            selected.add(new SelectedFile(file, full));
+        }
+        selected.sort(Comparator.comparing(selectedFile -> selectedFile.file().relativePath()));
+        return selected;
+    }
+
+
+    private static int relevance(SourceFile file, String prompt) {
+        int score = ENTRY_FILES.contains(file.relativePath()) ? 1 : 0;
+        String fileName = Paths.get(file.relativePath()).getFileName().toString();
+        int dotIndex = fileName.lastIndexOf('.');
+        String baseName = (dotIndex > 0 ? fileName.substring(0, dotIndex) : fileName).toLowerCase();
+        if (baseName.length() >= 3 && prompt.contains(baseName)) {
+            score += 2;
+        }
+        return score;
+    }
+
+
+    private static String render(List<SelectedFile> selected) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(GenerationContextPreparer.SOURCE_CONTEXT_HEADER).append("\n");
+        for (SelectedFile selectedFile : selected) {
+            SourceFile file = selectedFile.file();
+            if (selectedFile.full()) {
+                sb.append("\n--- ").append(file.relativePath()).append(" ---\n");
+                sb.append(file.content()).append("\n");
+            } else {
+                sb.append("\n--- ").append(file.relativePath())
+                        .append("（共 ").append(file.lines()).append(" 行，内容已省略）---\n");
+            }
+        }
+        return sb.toString();
+    }
+
+
+    private SourceFile toSourceFile(String relativePath, BasicFileAttributes attributes, String content) {
+        // 转义 {{ 和 }}，避免 langchain4j 将 Vue 模板语法误认为 prompt 模板变量
+        String escaped = content.replace("{{", "{ {").replace("}}", "} }");
+        return new SourceFile(relativePath, attributes.lastModifiedTime().toMillis(), attributes.size(), escaped,
+                tokenCountEstimator.estimateTokenCountInText(escaped), (int) escaped.lines().count());
+    }
+
+
+    private boolean isSourceFile(Path path) {
+        String name = path.getFileName().toString().toLowerCase();
+        return EXTENSIONS.stream().anyMatch(name::endsWith);
+    }
+
+
+    private static String relativePath(Path projectRoot, Path filePath) {
+        // 使用相对于项目根目录的路径，如 src/App.vue
+        return projectRoot.relativize(filePath).toString().replace('\\', '/');
+    }
+
+
+    private static Path srcDir(Long appId) {
+        return Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, "vue_project_" + appId, "src");
+    }
+
+
+    /**
+     * 单个应用的源文件索引
+     */
+    private static class SourceIndex {
+
+        /**
+         * 相对路径 -> 源文件
+         */
+        private final Map<String, SourceFile> files = new ConcurrentHashMap<>();
+
+        /**
+         * 上次按磁盘校验的时间，0 表示尚未加载
+         */
+        private volatile long verifiedAt;
+    }
+
+
+    private record SourceFile(String relativePath, long lastModified, long size, String content, int tokens,
+                              int lines) {
+    }
+
+
+    private record SelectedFile(SourceFile file, boolean full) {
+    }
+
+}
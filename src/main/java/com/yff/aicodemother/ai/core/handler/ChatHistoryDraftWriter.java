@@ -0,0 +1,168 @@
+package com.yff.aicodemother.ai.core.handler;
+
+import com.yff.aicodemother.model.dto.chathistory.ChatHistoryAddRequest;
+import com.yff.aicodemother.model.enums.MessageTypeEnum;
+import com.yff.aicodemother.service.ChatHistoryService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * AI 消息草稿写入器（生成过程中的检查点）
+ * AI 消息原本只在流结束时保存一次，生成中途进程崩溃或超时会丢失全部内容，刷新页面也看不到正在生成的回复。
+ * 流处理器为每次生成打开一个 {@link Draft}，每次累积内容后调用 {@link Draft#onAppend}：
+ * - 检查点是到目前为止的完整内容，放入写入队列后立即返回（见 ChatHistoryWriteBehindQueue#enqueueDraft），
+ *   流处理线程不等待 MySQL；同一草稿还没写库的检查点合并为最新的一个，按 ID upsert 写入 ai_draft 类型的草稿消息
+ * - 大草稿与普通消息一样压缩存储（主表只保存摘要），不会超出 message 列的长度，但 chat_history_blob 每次都整条重写
+ * - 为了让写入总量与消息长度成线性关系（而不是平方），检查点的间隔随已写入的长度增长：
+ *   未写入的内容达到 max(max-chars, 已写入长度) 时写一次（长度每次至少翻倍），
+ *   按时间触发的间隔为 interval-ms × (已写入长度 / max-chars)，每个间隔最多重写约 max-chars 个字符；
+ *   代价是长回复崩溃时丢失的内容更多（最多为已写入长度、或一个放大后的间隔内生成的内容）
+ * - 流结束时保存的 AI 消息带上草稿 ID，以完整消息覆盖草稿（定稿）；流出错时先以已生成的内容定稿
+ * 检查点入队失败只记录日志，不影响生成，下次检查点重新写入完整内容
+ * 指标：chat.history.draft.checkpoint（写入检查点的次数）
+ *
+ * @author yff
+ * @date 2026-10-18 21:17:52
+ */
+@Slf4j
+@Component
+public class ChatHistoryDraftWriter {
+
+    /**
+     * 是否在生成过程中写入草稿
+     */
+    @Value("${chat-history.draft.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 检查点最小间隔（毫秒）
+     */
+    @Value("${chat-history.draft.interval-ms:3000}")
+    private long intervalMillis;
+
+    /**
+     * 未写入的内容超过该字符数时不等间隔，立即写检查点
+     */
+    @Value("${chat-history.draft.max-chars:4096}")
+    private int maxChars;
+
+    private final Counter checkpointCounter;
+
+    public ChatHistoryDraftWriter(MeterRegistry meterRegistry) {
+        this.checkpointCounter = Counter.builder("chat.history.draft.checkpoint")
+                .description("生成过程中写入 AI 消息草稿检查点的次数")
+                .register(meterRegistry);
+    }
+
+
+    /**
+     * 为一次生成打开草稿
+     *
+     * @param chatHistoryService 对话历史服务
+     * @param appId              应用ID
+     * @param userId             用户ID
+     * @return 草稿（只在流处理线程中使用，不是线程安全的）
+     */
+    public Draft open(ChatHistoryService chatHistoryService, long appId, Long userId) {
+        return new Draft(chatHistoryService, appId, userId);
+    }
+
+
+    /**
+     * 一次生成的 AI 消息草稿
+     */
+    public class Draft {
+
+        private final ChatHistoryService chatHistoryService;
+
+        private final long appId;
+
+        private final Long userId;
+
+        private Long draftId;
+
+        /**
+         * 上次检查点的字符数
+         */
+        private int checkpointedLength;
+
+        private long lastCheckpointNanos = System.nanoTime();
+
+        private Draft(ChatHistoryService chatHistoryService, long appId, Long userId) {
+            this.chatHistoryService = chatHistoryService;
+            this.appId = appId;
+            this.userId = userId;
+        }
+
+        /**
+         * 累积内容后调用，达到间隔或字符数阈值时写一次检查点
+         *
+         * @param message 到目前为止累积的完整消息
+         */
+        public void onAppend(CharSequence message) {
+            if (!enabled) {
+                return;
+            }
+            int unwritten = message.length() - checkpointedLength;
+            if (unwritten <= 0) {
+                return;
+            }
+            // 每次写入完整内容，间隔随已写入长度放大，写入总量与消息长度成线性关系
+            long interval = intervalMillis * Math.max(1, checkpointedLength / maxChars);
+            long sinceLast = System.nanoTime() - lastCheckpointNanos;
+            if (unwritten < Math.max(maxChars, checkpointedLength)
+                    && sinceLast < TimeUnit.MILLISECONDS.toNanos(interval)) {
+                return;
+            }
+            ChatHistoryAddRequest request = new ChatHistoryAddRequest();
+            request.setAppId(appId);
+            request.setUserId(userId);
+            request.setMessage(message.toString());
+            request.setMessageType(MessageTypeEnum.AI_DRAFT.getValue());
+            request.setDraftId(draftId);
+            try {
+                draftId = chatHistoryService.saveDraftCheckpoint(request);
+                checkpointCounter.increment();
+            } catch (Exception e) {
+                log.warn("写入 AI 消息草稿失败，appId={}，错误信息={}", appId, e.getMessage());
+            }
+            // 失败时同样等到下个间隔再重试，不在每个 token 上重试
+            checkpointedLength = message.length();
+            lastCheckpointNanos = System.nanoTime();
+        }
+
+        /**
+         * 最终保存的 AI 消息覆盖草稿
+         *
+         * @param request 最终保存的 AI 消息
+         */
+        public void applyTo(ChatHistoryAddRequest request) {
+            request.setDraftId(draftId);
+        }
+
+        /**
+         * 流出错时以已生成的内容定稿（没有写入过草稿时不保存）
+         *
+         * @param message 到目前为止累积的完整消息
+         */
+        public void saveInterrupted(String message) {
+            if (draftId == null) {
+                return;
+            }
+            ChatHistoryAddRequest request = new ChatHistoryAddRequest();
+            request.setAppId(appId);
+            request.setUserId(userId);
+            request.setMessage(message);
+            request.setMessageType(MessageTypeEnum.AI.getValue());
+            applyTo(request);
+            chatHistoryService.saveChatMessage(request);
+        }
+    }
+
+}
@@ -7,6 +7,7 @@ import cn.hutool.json.JSONUtil;
 import com.yff.aicodemother.ai.core.builder.VueProjectBuilder;
 import com.yff.aicodemother.ai.model.message.*;
 import com.yff.aicodemother.constant.AppConstant;
+import com.yff.aicodemother.manager.FileSnapshotManager;
 import com.yff.aicodemother.model.dto.chathistory.ChatHistoryAddRequest;
 import com.yff.aicodemother.model.entity.User;
 import com.yff.aicodemother.model.enums.MessageTypeEnum;
@@ -24,9 +25,10 @@ import java.util.HashSet;
  * JSON消息流处理器
  * 处理 VUE_PROJECT 类型的复杂流式响应，包含工具调用信息
  * 开发逻辑：
- * 1.消息解析：需要根据消息类型，将json字符串转换为对应的消息对象，然后提取属性进行其他操作
+ * 1.消息分发：上游直接传递 StreamMessage 对象，按具体类型模式匹配后提取属性进行其他操作（不再反序列化 JSON）
  * 2.输出选择工具信息：虽然后端实现了工具调用的流式输出，但是考虑到前端不好对这些消息进行解析和处理，因此我们只在同一个工具第一次输出时
  * ，输出给前端“选择工具”的消息。可以利用一个集合来判断某个id的工具是否是首次输出
+ * 3.写入文件：前端收到完整代码，对话历史中只保存"路径 + 内容哈希"引用（见 {@link FileSnapshotManager}）
  *
  * @author yff
  * @date 2026-02-12 10:41:53
@@ -38,8 +40,14 @@ public class JsonMessageStreamHandler {
     @Autowired
     private VueProjectBuilder vueProjectBuilder;
 
+    @Autowired
+    private FileSnapshotManager fileSnapshotManager;
+
+    @Autowired
+    private ChatHistoryDraftWriter chatHistoryDraftWriter;
+
     /**
-     * * 处理 TokenStream 中的 JSON 消息流，解析消息并提取工具调用信息，同时构建后端记忆格式的聊天历史字符串
+     * * 处理 TokenStream 转换来的消息流，提取工具调用信息，同时构建后端记忆格式的聊天历史字符串
      *
      * @param originalFlux       原始流
      * @param chatHistoryService 聊天记录服务
@@ -47,7 +55,7 @@ public class JsonMessageStreamHandler {
      * @param loginUser          登录用户信息
      * @return 处理后的消息流
      */
-    public Flux<String> handle(Flux<String> originalFlux,
+    public Flux<String> handle(Flux<StreamMessage> originalFlux,
             ChatHistoryService chatHistoryService,
             long appId, User loginUser) {
         // 收集数据用于生成后端记忆格式
@@ -56,12 +64,17 @@ public class JsonMessageStreamHandler {
         // 用于跟踪已经见过的工具ID,判断是否是第一次调用
         HashSet<String> seenToolIds = new HashSet<>();
 
+        // 生成过程中定期把新增的记忆格式内容写入草稿，流结束时定稿
+        ChatHistoryDraftWriter.Draft draft = chatHistoryDraftWriter.open(chatHistoryService, appId,
+                loginUser.getId());
+
         return originalFlux
-                .map(chunk -> {
-                    // 解析每一个JSON消息块
-                    return handleJsonMessageChunk(chunk, chatHistoryStringBuilder, seenToolIds);
+                .map(message -> {
+                    // 处理每一个消息
+                    return handleStreamMessage(message, chatHistoryStringBuilder, seenToolIds);
                 })
                 .filter(StrUtil::isNotEmpty)// 过滤空字符串
+                .doOnNext(chunk -> draft.onAppend(chatHistoryStringBuilder))
                 .doOnComplete(() -> {
                     // 流处理完成后，保存聊天记录到数据库
                     ChatHistoryAddRequest aiResponse = new ChatHistoryAddRequest();
@@ -69,11 +82,14 @@ public class JsonMessageStreamHandler {
                     aiResponse.setUserId(loginUser.getId());
                     aiResponse.setMessage(chatHistoryStringBuilder.toString());
                     aiResponse.setMessageType(MessageTypeEnum.AI.getValue());
+                    draft.applyTo(aiResponse);
                     chatHistoryService.saveChatMessage(aiResponse);
                     // 异步构建Vue项目
                     String projectPath = AppConstant.CODE_OUTPUT_ROOT_DIR + "/vue_project_" + appId;
                     vueProjectBuilder.buildProjectAsync(projectPath, appId);
                 }).doOnError(error -> {
+                    // 已写入草稿时先保留出错前生成的内容
+                    draft.saveInterrupted(chatHistoryStringBuilder.toString());
                     // 流出错时，保存错误消息到对话历史
                     ChatHistoryAddRequest errorHistoryRequest = new ChatHistoryAddRequest();
                     errorHistoryRequest.setAppId(appId);
@@ -85,62 +101,33 @@ public class JsonMessageStreamHandler {
     }
 
     /**
-     * 处理单个JSON消息块 解析并收集TokenStream数据
-     * 
-     * @param chunk                    JSON消息块
+     * 处理单个消息 收集TokenStream数据
+     *
+     * @param message                  流式消息
      * @param chatHistoryStringBuilder 用于构建聊天历史的字符串构建器
      * @param seenToolIds              已经见过的工具ID集合
      * @return 处理后的字符串
      */
-    private String handleJsonMessageChunk(String chunk, StringBuilder chatHistoryStringBuilder,
+    private String handleStreamMessage(StreamMessage message, StringBuilder chatHistoryStringBuilder,
             HashSet<String> seenToolIds) {
 
-        // 验证chunk是否为有效的JSON对象
-        if (StrUtil.isBlank(chunk) || !chunk.trim().startsWith("{")) {
-            log.debug("跳过非JSON格式的chunk: {}", chunk);
-            return "";
-        }
-
-        // 尝试解析JSON，如果解析失败则跳过
-        StreamMessage streamMessage;
-        try {
-            streamMessage = JSONUtil.toBean(chunk, StreamMessage.class);
-        } catch (Exception e) {
-            log.warn("无法解析JSON chunk，跳过: {}, 错误: {}", chunk, e.getMessage());
-            return "";
-        }
-
-        StreamMessageTypeEnum typeEnum = StreamMessageTypeEnum.getEnumByValue(streamMessage.getType());
-
-        // 如果类型为null或不支持，跳过该消息
-        if (typeEnum == null) {
-            log.warn("未知的消息类型: {}, 跳过处理", streamMessage.getType());
-            return "";
-        }
-        switch (typeEnum) {
-            case AI_RESPONSER -> {
-                AiResponseMessage aiResponseMessage = JSONUtil.toBean(chunk, AiResponseMessage.class);
+        return switch (message) {
+            case AiResponseMessage aiResponseMessage -> {
                 String data = aiResponseMessage.getData();
                 // 直接拼接响应
                 chatHistoryStringBuilder.append(data);
-                return data;
+                yield data;
             }
-            case TOOL_REQUEST -> {
-                ToolRequestMessage toolRequestMessage = JSONUtil.toBean(chunk, ToolRequestMessage.class);
+            case ToolRequestMessage toolRequestMessage -> {
                 String toolId = toolRequestMessage.getId();
-                // 检查是否是第一次出现该工具调用
-                if (toolId != null && !seenToolIds.contains(toolId)) {
-                    // 如果是第一次调用，则记录ID并完整返回工具信息
-                    seenToolIds.add(toolId);
-                    return "\n\n[选择工具] 写入文件\n\n";
-
-                } else {
-                    return "";
+                // 检查是否是第一次出现该工具调用，如果是第一次调用，则记录ID并返回选择工具的提示
+                if (toolId != null && seenToolIds.add(toolId)) {
+                    yield "\n\n[选择工具] 写入文件\n\n";
                 }
-
+                yield "";
             }
-            case TOOL_EXECUTED -> {
-                ToolExecutedMessage toolExecutedMessage = JSONUtil.toBean(chunk, ToolExecutedMessage.class);
+            case ToolExecutedMessage toolExecutedMessage -> {
+                // 工具参数是模型输出的 JSON 字符串，这里是唯一一次解析
                 JSONObject jsonObject = JSONUtil.parseObj(toolExecutedMessage.getArguments());
                 String relativePath = jsonObject.getStr("relativePath");
                 String suffix = FileUtil.getSuffix(relativePath);
@@ -151,16 +138,12 @@ public class JsonMessageStreamHandler {
                         %s
                         ```
                         """, relativePath, suffix, content);
-                // 输出给前端和要持久化的内容
-                String output = String.format("\n\n%s\n\n", result);
-                chatHistoryStringBuilder.append(output);
-                return output;
-            }
-            default -> {
-                log.error("不支持的消息类型：{}", typeEnum);
-                return "";
+                // 前端输出完整代码；对话历史只保存文件引用，完整内容存入内容寻址的文件快照
+                chatHistoryStringBuilder.append(String.format("\n\n%s\n\n",
+                        fileSnapshotManager.toReference(relativePath, content)));
+                yield String.format("\n\n%s\n\n", result);
             }
-        }
+        };
 
     }
 
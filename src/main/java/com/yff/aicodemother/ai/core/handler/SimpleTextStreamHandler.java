@@ -1,11 +1,15 @@
 package com.yff.aicodemother.ai.core.handler;
 
 
+import cn.hutool.core.util.StrUtil;
+import com.yff.aicodemother.ai.model.message.AiResponseMessage;
+import com.yff.aicodemother.ai.model.message.StreamMessage;
 import com.yff.aicodemother.model.dto.chathistory.ChatHistoryAddRequest;
 import com.yff.aicodemother.model.entity.User;
 import com.yff.aicodemother.model.enums.MessageTypeEnum;
 import com.yff.aicodemother.service.ChatHistoryService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
 
@@ -21,18 +25,26 @@ import reactor.core.publisher.Flux;
 @Component
 public class SimpleTextStreamHandler {
 
+    @Autowired
+    private ChatHistoryDraftWriter chatHistoryDraftWriter;
 
-    public Flux<String> handle(Flux<String> originFlux,
+    public Flux<String> handle(Flux<StreamMessage> originFlux,
                                ChatHistoryService chatHistoryService,
                                long appId, User user) {
 
         // 2. 生成代码流并保存 AI 响应
         StringBuilder aiResponseBuilder = new StringBuilder();
+        // 生成过程中定期把新增内容写入草稿，流结束时定稿
+        ChatHistoryDraftWriter.Draft draft = chatHistoryDraftWriter.open(chatHistoryService, appId, user.getId());
 
         return originFlux
+                // HTML 和多文件模式只有 AI 文本消息
+                .map(message -> message instanceof AiResponseMessage aiResponseMessage ? aiResponseMessage.getData() : "")
+                .filter(StrUtil::isNotEmpty)
                 .doOnNext(chunk -> {
                     // 累积 AI 响应内容
                     aiResponseBuilder.append(chunk);
+                    draft.onAppend(aiResponseBuilder);
                 })
                 .doOnComplete(() -> {
                     // 流完成时，保存 AI 消息到对话历史
@@ -41,9 +53,12 @@ public class SimpleTextStreamHandler {
                     aiHistoryRequest.setUserId(user.getId());
                     aiHistoryRequest.setMessage(aiResponseBuilder.toString());
                     aiHistoryRequest.setMessageType(MessageTypeEnum.AI.getValue());
+                    draft.applyTo(aiHistoryRequest);
                     chatHistoryService.saveChatMessage(aiHistoryRequest);
                 })
                 .doOnError(error -> {
+                    // 已写入草稿时先保留出错前生成的内容
+                    draft.saveInterrupted(aiResponseBuilder.toString());
                     // 流出错时，保存错误消息到对话历史
                     ChatHistoryAddRequest errorHistoryRequest = new ChatHistoryAddRequest();
                     errorHistoryRequest.setAppId(appId);
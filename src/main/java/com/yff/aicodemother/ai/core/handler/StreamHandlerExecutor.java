@@ -2,6 +2,7 @@ package com.yff.aicodemother.ai.core.handler;
 
 
 import com.yff.aicodemother.ai.model.enums.CodeGenTypeEnum;
+import com.yff.aicodemother.ai.model.message.StreamMessage;
 import com.yff.aicodemother.model.entity.User;
 import com.yff.aicodemother.service.ChatHistoryService;
 import lombok.extern.slf4j.Slf4j;
@@ -13,8 +14,8 @@ import reactor.core.publisher.Flux;
  *
  * 流处理器执行器
  * 根据代码生成类型创建合适的流处理器
- * 1.传统的Flux<String>流(HTML,MULTI_FILE等) -> SimpleStreamHandler
- * 2.TokenStream复杂的流(VUE_PROJECT) -> JsonMessageStreamHandler
+ * 1.只有文本消息的流(HTML,MULTI_FILE等) -> SimpleStreamHandler
+ * 2.TokenStream复杂的流(VUE_PROJECT，包含工具调用消息) -> JsonMessageStreamHandler
  *
  * @author yff
  * @date 2026-02-12 11:26:32
@@ -42,7 +43,7 @@ public class StreamHandlerExecutor {
      * @param codeGenTypeEnum    代码生成类型枚举
      * @return 处理后的流
      */
-    public Flux<String> doExecute(Flux<String> originFlux,
+    public Flux<String> doExecute(Flux<StreamMessage> originFlux,
                                   ChatHistoryService chatHistoryService,
                                   long appId, User loginUser, CodeGenTypeEnum codeGenTypeEnum) {
 
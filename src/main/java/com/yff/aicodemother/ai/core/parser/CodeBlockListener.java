@@ -0,0 +1,48 @@
+package com.yff.aicodemother.ai.core.parser;
+
+
+/**
+ *
+ * 代码块事件监听器
+ * 由 {@link CodeFenceTokenizer} 在识别到 ``` 围栏边界时回调，所有方法都在调用 append 的线程上同步执行
+ *
+ * @author yff
+ * @date 2026-10-18 09:12:40
+ */
+public interface CodeBlockListener {
+
+
+    /**
+     * 代码块之外的普通文本片段
+     *
+     * @param text 文本片段
+     */
+    default void onText(String text) {
+    }
+
+
+    /**
+     * 代码块开始（已读完 ```语言 所在的整行）
+     *
+     * @param language 小写的语言标识，例如 html / css / js，没有标识时为空字符串
+     */
+    void onBlockStart(String language);
+
+
+    /**
+     * 代码块内容片段，可能被调用多次，片段之间不做任何拼接处理
+     *
+     * @param language 语言标识
+     * @param content  内容片段
+     */
+    void onBlockContent(String language, String content);
+
+
+    /**
+     * 代码块结束（遇到闭合的 ```，或流结束时仍未闭合）
+     *
+     * @param language 语言标识
+     */
+    void onBlockEnd(String language);
+
+}
@@ -0,0 +1,186 @@
+package com.yff.aicodemother.ai.core.parser;
+
+
+/**
+ *
+ * Markdown 代码围栏增量分词器（状态机）
+ * 逐个 chunk 推入 LLM 输出，识别 ```语言 ... ``` 的边界并回调 {@link CodeBlockListener}
+ * 1.TEXT：围栏之外的普通文本，寻找连续三个反引号
+ * 2.FENCE_INFO：读取 ``` 之后到行尾的语言标识
+ * 3.CODE：代码块内容，寻找闭合的 ```
+ * 反引号可能被拆在两个 chunk 中，用 pendingBackticks 记录尚未确定含义的反引号数量，
+ * 因此整个过程不需要保留已经处理过的输出。非线程安全，每个流单独创建一个实例
+ *
+ * @author yff
+ * @date 2026-10-18 09:20:15
+ */
+public class CodeFenceTokenizer {
+
+    private static final char BACKTICK = '`';
+
+    private static final int FENCE_LENGTH = 3;
+
+    /**
+     * 语言标识最大长度，超出部分直接丢弃，防止异常输出把整行都缓存下来
+     */
+    private static final int MAX_INFO_LENGTH = 32;
+
+    private enum State {
+        TEXT, FENCE_INFO, CODE
+    }
+
+    private final CodeBlockListener listener;
+
+    private final StringBuilder infoBuilder = new StringBuilder();
+
+    private State state = State.TEXT;
+
+    private int pendingBackticks;
+
+    private String currentLanguage;
+
+    public CodeFenceTokenizer(CodeBlockListener listener) {
+        this.listener = listener;
+    }
+
+
+    /**
+     * 推入一个新的输出片段
+     *
+     * @param chunk 输出片段
+     */
+    public void append(String chunk) {
+        if (chunk == null || chunk.isEmpty()) {
+            return;
+        }
+        int index = 0;
+        while (index < chunk.length()) {
+            index = switch (state) {
+                case TEXT -> scanText(chunk, index);
+                case FENCE_INFO -> scanFenceInfo(chunk, index);
+                case CODE -> scanCode(chunk, index);
+            };
+        }
+    }
+
+
+    /**
+     * 输出结束，冲刷尚未确定含义的字符；未闭合的代码块按结束处理
+     */
+    public void finish() {
+        switch (state) {
+            case TEXT -> flushPendingBackticks(false);
+            case FENCE_INFO -> {
+                // 只有 ```语言 而没有换行，不构成代码块，按普通文本处理
+                listener.onText("`".repeat(FENCE_LENGTH) + infoBuilder);
+                infoBuilder.setLength(0);
+            }
+            case CODE -> {
+                flushPendingBackticks(true);
+                listener.onBlockEnd(currentLanguage);
+                currentLanguage = null;
+            }
+        }
+        state = State.TEXT;
+    }
+
+
+    /**
+     * 扫描普通文本，遇到 ``` 后切换到 FENCE_INFO
+     */
+    private int scanText(String chunk, int from) {
+        int segmentStart = from;
+        for (int i = from; i < chunk.length(); i++) {
+            char c = chunk.charAt(i);
+            if (c == BACKTICK) {
+                emit(chunk, segmentStart, i, false);
+                segmentStart = i + 1;
+                if (++pendingBackticks == FENCE_LENGTH) {
+                    pendingBackticks = 0;
+                    state = State.FENCE_INFO;
+                    return i + 1;
+                }
+            } else if (pendingBackticks > 0) {
+                // 不足三个的反引号只是普通字符
+                flushPendingBackticks(false);
+            }
+        }
+        emit(chunk, segmentStart, chunk.length(), false);
+        return chunk.length();
+    }
+
+
+    /**
+     * 读取语言标识直到行尾，读完后进入 CODE
+     */
+    private int scanFenceInfo(String chunk, int from) {
+        int lineEnd = chunk.indexOf('\n', from);
+        int end = lineEnd < 0 ? chunk.length() : lineEnd;
+        int room = MAX_INFO_LENGTH - infoBuilder.length();
+        if (room > 0) {
+            infoBuilder.append(chunk, from, Math.min(end, from + room));
+        }
+        if (lineEnd < 0) {
+            return chunk.length();
+        }
+        currentLanguage = infoBuilder.toString().trim().toLowerCase();
+        infoBuilder.setLength(0);
+        state = State.CODE;
+        listener.onBlockStart(currentLanguage);
+        return lineEnd + 1;
+    }
+
+
+    /**
+     * 扫描代码块内容，遇到闭合的 ``` 后回到 TEXT
+     */
+    private int scanCode(String chunk, int from) {
+        int segmentStart = from;
+        for (int i = from; i < chunk.length(); i++) {
+            char c = chunk.charAt(i);
+            if (c == BACKTICK) {
+                emit(chunk, segmentStart, i, true);
+                segmentStart = i + 1;
+                if (++pendingBackticks == FENCE_LENGTH) {
+                    pendingBackticks = 0;
+                    state = State.TEXT;
+                    listener.onBlockEnd(currentLanguage);
+                    currentLanguage = null;
+                    return i + 1;
+                }
+            } else if (pendingBackticks > 0) {
+                flushPendingBackticks(true);
+            }
+        }
+        emit(chunk, segmentStart, chunk.length(), true);
+        return chunk.length();
+    }
+
+
+    private void flushPendingBackticks(boolean inCode) {
+        if (pendingBackticks == 0) {
+            return;
+        }
+        String backticks = "`".repeat(pendingBackticks);
+        pendingBackticks = 0;
+        if (inCode) {
+            listener.onBlockContent(currentLanguage, backticks);
+        } else {
+            listener.onText(backticks);
+        }
+    }
+
+
+    private void emit(String chunk, int start, int end, boolean inCode) {
+        if (start >= end) {
+            return;
+        }
+        String segment = start == 0 && end == chunk.length() ? chunk : chunk.substring(start, end);
+        if (inCode) {
+            listener.onBlockContent(currentLanguage, segment);
+        } else {
+            listener.onText(segment);
+        }
+    }
+
+}
@@ -40,4 +40,21 @@ public class CodeParserExecutor {
 
     }
 
+
+    /**
+     * 创建流式代码解析器（有状态，每个流创建一个新实例）
+     *
+     * @param codeGenType 代码生成类型
+     * @return 流式解析器
+     */
+    public static StreamingCodeParser<?> createStreamingParser(CodeGenTypeEnum codeGenType) {
+
+        return switch (codeGenType) {
+            case HTML -> new HtmlStreamingCodeParser();
+            case MULTI_FILE -> new MultiFileStreamingCodeParser();
+            default -> throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型" + codeGenType);
+        };
+
+    }
+
 }
@@ -0,0 +1,51 @@
+package com.yff.aicodemother.ai.core.parser;
+
+
+import com.yff.aicodemother.ai.model.HtmlCodeResult;
+
+/**
+ *
+ * HTML单文件流式代码解析器
+ *
+ * @author yff
+ * @date 2026-10-18 09:52:03
+ */
+public class HtmlStreamingCodeParser extends StreamingCodeParser<HtmlCodeResult> {
+
+    /**
+     * 出现第一个代码围栏之前的文本，仅用于没有任何代码块时的兜底，出现围栏后即释放
+     */
+    private StringBuilder plainText = new StringBuilder();
+
+
+    @Override
+    public void onText(String text) {
+        if (plainText != null) {
+            plainText.append(text);
+        }
+    }
+
+    @Override
+    public void onBlockStart(String language) {
+        plainText = null;
+        super.onBlockStart(language);
+    }
+
+    @Override
+    protected boolean isSupportedLanguage(String language) {
+        return LANGUAGE_HTML.equals(language);
+    }
+
+    @Override
+    protected HtmlCodeResult buildResult() {
+        HtmlCodeResult htmlCodeResult = new HtmlCodeResult();
+        String htmlCode = getBlockCode(LANGUAGE_HTML);
+        if (htmlCode != null) {
+            htmlCodeResult.setHtmlCode(htmlCode);
+        } else if (plainText != null) {
+            //如果没有找到代码块，将整个内容作为HTML代码返回
+            htmlCodeResult.setHtmlCode(plainText.toString().trim());
+        }
+        return htmlCodeResult;
+    }
+}
@@ -0,0 +1,28 @@
+package com.yff.aicodemother.ai.core.parser;
+
+
+import com.yff.aicodemother.ai.model.MultiFileCodeResult;
+
+/**
+ *
+ * 多文件流式代码解析器
+ *
+ * @author yff
+ * @date 2026-10-18 09:55:48
+ */
+public class MultiFileStreamingCodeParser extends StreamingCodeParser<MultiFileCodeResult> {
+
+    @Override
+    protected boolean isSupportedLanguage(String language) {
+        return LANGUAGE_HTML.equals(language) || LANGUAGE_CSS.equals(language) || LANGUAGE_JS.equals(language);
+    }
+
+    @Override
+    protected MultiFileCodeResult buildResult() {
+        MultiFileCodeResult multiFileCodeResult = new MultiFileCodeResult();
+        multiFileCodeResult.setHtmlCode(getBlockCode(LANGUAGE_HTML));
+        multiFileCodeResult.setCssCode(getBlockCode(LANGUAGE_CSS));
+        multiFileCodeResult.setJsCode(getBlockCode(LANGUAGE_JS));
+        return multiFileCodeResult;
+    }
+}
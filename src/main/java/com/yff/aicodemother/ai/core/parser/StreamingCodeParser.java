@@ -0,0 +1,132 @@
+package com.yff.aicodemother.ai.core.parser;
+
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ *
+ * 流式代码解析器模板
+ * 与 {@link CodeParser} 的区别是不需要等待完整输出：在 chunk 到达时推入 {@link #append(String)}，
+ * 每种语言只保留第一个完整代码块的内容（与正则解析器的 find() 语义一致），流结束时调用 {@link #complete()} 获取结果。
+ * 有状态，每个流单独创建一个实例
+ *
+ * @author yff
+ * @date 2026-10-18 09:41:27
+ */
+public abstract class StreamingCodeParser<T> implements CodeBlockListener {
+
+    protected static final String LANGUAGE_HTML = "html";
+    protected static final String LANGUAGE_CSS = "css";
+    protected static final String LANGUAGE_JS = "js";
+
+    private final CodeFenceTokenizer tokenizer = new CodeFenceTokenizer(this);
+
+    /**
+     * 已捕获的代码块：语言 -> 内容
+     */
+    private final Map<String, StringBuilder> capturedBlocks = new HashMap<>();
+
+    /**
+     * 当前正在捕获的代码块，为 null 表示当前块不需要保留
+     */
+    private StringBuilder currentBlock;
+
+
+    /**
+     * 推入一个输出片段
+     *
+     * @param chunk 输出片段
+     */
+    public final void append(String chunk) {
+        tokenizer.append(chunk);
+    }
+
+
+    /**
+     * 结束解析并构建结果
+     *
+     * @return 解析结果
+     */
+    public final T complete() {
+        tokenizer.finish();
+        return buildResult();
+    }
+
+
+    @Override
+    public void onBlockStart(String language) {
+        String normalized = normalizeLanguage(language);
+        if (normalized != null && isSupportedLanguage(normalized) && !capturedBlocks.containsKey(normalized)) {
+            currentBlock = new StringBuilder();
+            capturedBlocks.put(normalized, currentBlock);
+        } else {
+            currentBlock = null;
+        }
+    }
+
+    @Override
+    public void onBlockContent(String language, String content) {
+        if (currentBlock != null) {
+            currentBlock.append(content);
+        }
+    }
+
+    @Override
+    public void onBlockEnd(String language) {
+        currentBlock = null;
+    }
+
+
+    /**
+     * 获取指定语言第一个代码块的内容（已去除首尾空白）
+     *
+     * @param language 规范化后的语言标识
+     * @return 代码内容，没有该语言的代码块或内容为空时返回 null
+     */
+    protected final String getBlockCode(String language) {
+        StringBuilder block = capturedBlocks.get(language);
+        if (block == null) {
+            return null;
+        }
+        String code = block.toString().trim();
+        return code.isEmpty() ? null : code;
+    }
+
+
+    /**
+     * 将围栏上的语言标识规范化，javascript 统一为 js
+     *
+     * @param language 原始语言标识（已转小写）
+     * @return 规范化后的语言标识，无法识别时返回 null
+     */
+    public static String normalizeLanguage(String language) {
+        if (language == null) {
+            return null;
+        }
+        return switch (language) {
+            case LANGUAGE_HTML -> LANGUAGE_HTML;
+            case LANGUAGE_CSS -> LANGUAGE_CSS;
+            case LANGUAGE_JS, "javascript" -> LANGUAGE_JS;
+            default -> null;
+        };
+    }
+
+
+    /**
+     * 当前解析器需要保留的语言（由子类实现）
+     *
+     * @param language 规范化后的语言标识
+     * @return 是否保留
+     */
+    protected abstract boolean isSupportedLanguage(String language);
+
+
+    /**
+     * 根据已捕获的代码块构建结果（由子类实现）
+     *
+     * @return 解析结果
+     */
+    protected abstract T buildResult();
+
+}
@@ -44,4 +44,22 @@ public class CodeFileSaverExecutor {
     }
 
 
+    /**
+     * 创建边生成边写入的保存会话
+     *
+     * @param codeGenTypeEnum 代码生成类型枚举
+     * @param appId           应用ID
+     * @return 流式保存会话
+     */
+    public static StreamingCodeFileSaver createStreamingSaver(CodeGenTypeEnum codeGenTypeEnum, Long appId) {
+
+        return switch (codeGenTypeEnum) {
+            case HTML -> htmlCodeFileSaver.createStreamingSaver(appId);
+            case MULTI_FILE -> multiFileCodeFileSaver.createStreamingSaver(appId);
+            default -> throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型：" + codeGenTypeEnum);
+        };
+
+    }
+
+
 }
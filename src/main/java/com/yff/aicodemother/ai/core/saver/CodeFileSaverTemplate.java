@@ -11,6 +11,7 @@ import com.yff.aicodemother.exception.ErrorCode;
 
 import java.io.File;
 import java.nio.charset.StandardCharsets;
+import java.util.Map;
 
 /**
  * 抽象的代码文件保存器模板  - 模板方法模式
@@ -43,6 +44,18 @@ public abstract class CodeFileSaverTemplate<T> {
     }
 
 
+    /**
+     * 创建边生成边写入的保存会话,与 saveCode 写入相同的目录和文件
+     *
+     * @param appId 应用ID
+     * @return 流式保存会话
+     */
+    public final StreamingCodeFileSaver createStreamingSaver(Long appId) {
+        String baseDirPath = buildUniqueDir(appId);
+        return new StreamingCodeFileSaver(baseDirPath, getStreamingFileNames(), getFallbackFileName());
+    }
+
+
     /**
      * 构建唯一目录
      *
@@ -94,6 +107,24 @@ public abstract class CodeFileSaverTemplate<T> {
     protected abstract void saveCodeFiles(T result, String baseDirPath);
 
 
+    /**
+     * 流式保存时代码块语言与文件名的映射（由子类实现）
+     *
+     * @return 语言 -> 文件名
+     */
+    protected abstract Map<String, String> getStreamingFileNames();
+
+
+    /**
+     * 流式保存时没有任何代码块的兜底文件名（可由子类覆盖）
+     *
+     * @return 文件名，默认不兜底
+     */
+    protected String getFallbackFileName() {
+        return null;
+    }
+
+
     /**
      * 获取代码生成类型（由子类实现具体类型）
      *
@@ -7,6 +7,8 @@ import com.yff.aicodemother.ai.model.enums.CodeGenTypeEnum;
 import com.yff.aicodemother.exception.BusinessException;
 import com.yff.aicodemother.exception.ErrorCode;
 
+import java.util.Map;
+
 /**
  * HTML代码文件保存器实现类
  *
@@ -30,6 +32,16 @@ public class HtmlCodeFileSaverTemplate extends CodeFileSaverTemplate<HtmlCodeRes
 
     }
 
+    @Override
+    protected Map<String, String> getStreamingFileNames() {
+        return Map.of("html", "index.html");
+    }
+
+    @Override
+    protected String getFallbackFileName() {
+        return "index.html";
+    }
+
     @Override
     protected CodeGenTypeEnum getCodeType() {
         return CodeGenTypeEnum.HTML;
@@ -7,6 +7,8 @@ import com.yff.aicodemother.ai.model.enums.CodeGenTypeEnum;
 import com.yff.aicodemother.exception.BusinessException;
 import com.yff.aicodemother.exception.ErrorCode;
 
+import java.util.Map;
+
 /**
  *
  * 多文件代码保存器实现类
@@ -33,6 +35,11 @@ public class MultiFileCodeFileSaverTemplate extends CodeFileSaverTemplate<MultiF
         writeToFile(baseDirPath, "script.js", result.getJsCode());
     }
 
+    @Override
+    protected Map<String, String> getStreamingFileNames() {
+        return Map.of("html", "index.html", "css", "style.css", "js", "script.js");
+    }
+
     @Override
     protected CodeGenTypeEnum getCodeType() {
         return CodeGenTypeEnum.MULTI_FILE;
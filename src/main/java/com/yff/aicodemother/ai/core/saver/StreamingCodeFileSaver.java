@@ -0,0 +1,288 @@
+package com.yff.aicodemother.ai.core.saver;
+
+
+import com.yff.aicodemother.ai.core.parser.CodeBlockListener;
+import com.yff.aicodemother.ai.core.parser.CodeFenceTokenizer;
+import com.yff.aicodemother.ai.core.parser.StreamingCodeParser;
+import com.yff.aicodemother.exception.BusinessException;
+import com.yff.aicodemother.exception.ErrorCode;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ *
+ * 边生成边写入的代码文件保存会话
+ * 代码围栏打开时在目标目录创建临时文件并打开通道，内容片段到达即追加写入，围栏闭合时原子重命名为正式文件名，
+ * 因此磁盘 IO 分散在整个生成过程中，流结束时 /static/ 下的预览已经可用。
+ * 写入的内容与 {@link CodeFileSaverTemplate#saveCode} 一致：每种语言只保存第一个代码块，并去除首尾空白。
+ * 由 {@link CodeFileSaverTemplate#createStreamingSaver(Long)} 创建，非线程安全，每个流一个实例
+ *
+ * @author yff
+ * @date 2026-10-18 11:06:32
+ */
+@Slf4j
+public class StreamingCodeFileSaver implements CodeBlockListener {
+
+    private static final String HTML_FILE_NAME = "index.html";
+
+    private final Path baseDir;
+
+    /**
+     * 语言 -> 文件名
+     */
+    private final Map<String, String> fileNames;
+
+    /**
+     * 没有任何代码围栏时，用整段文本兜底写入的文件名，为 null 表示不兜底
+     */
+    private final String fallbackFileName;
+
+    private final CodeFenceTokenizer tokenizer = new CodeFenceTokenizer(this);
+
+    /**
+     * 已经开始写入过的语言（每种语言只保存第一个代码块）
+     */
+    private final Set<String> openedLanguages = new HashSet<>();
+
+    /**
+     * 已经成功落盘的文件名
+     */
+    private final Set<String> savedFileNames = new HashSet<>();
+
+    /**
+     * 第一个代码围栏之前的文本，仅在需要兜底时保留，出现围栏后即释放
+     */
+    private StringBuilder plainText;
+
+    private BlockFileWriter currentWriter;
+
+    private IOException failure;
+
+    StreamingCodeFileSaver(String baseDirPath, Map<String, String> fileNames, String fallbackFileName) {
+        this.baseDir = Paths.get(baseDirPath);
+        this.fileNames = fileNames;
+        this.fallbackFileName = fallbackFileName;
+        this.plainText = fallbackFileName == null ? null : new StringBuilder();
+    }
+
+
+    /**
+     * 推入一个输出片段
+     *
+     * @param chunk 输出片段
+     */
+    public void append(String chunk) {
+        tokenizer.append(chunk);
+    }
+
+
+    /**
+     * 结束写入并校验结果
+     *
+     * @return 保存代码的目录对象
+     */
+    public File complete() {
+        tokenizer.finish();
+        if (failure != null) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "流式写入代码文件失败：" + failure.getMessage());
+        }
+        if (plainText != null && !savedFileNames.contains(fallbackFileName)) {
+            //如果没有找到代码块，将整个内容作为代码写入
+            String content = plainText.toString().trim();
+            plainText = null;
+            if (!content.isEmpty()) {
+                writeWholeFile(fallbackFileName, content);
+            }
+        }
+        //至少要有HTML代码,CSS和JS代码可以没有
+        if (!savedFileNames.contains(HTML_FILE_NAME)) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "HTML代码内容不能为空");
+        }
+        return baseDir.toFile();
+    }
+
+
+    /**
+     * 流出错或被取消时调用，丢弃尚未闭合的临时文件
+     */
+    public void abort() {
+        if (currentWriter != null) {
+            currentWriter.discard();
+            currentWriter = null;
+        }
+        plainText = null;
+    }
+
+
+    @Override
+    public void onText(String text) {
+        if (plainText != null) {
+            plainText.append(text);
+        }
+    }
+
+    @Override
+    public void onBlockStart(String language) {
+        plainText = null;
+        String normalized = StreamingCodeParser.normalizeLanguage(language);
+        String fileName = normalized == null ? null : fileNames.get(normalized);
+        if (fileName == null || failure != null || !openedLanguages.add(normalized)) {
+            return;
+        }
+        try {
+            currentWriter = new BlockFileWriter(fileName);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public void onBlockContent(String language, String content) {
+        if (currentWriter == null) {
+            return;
+        }
+        try {
+            currentWriter.write(content);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public void onBlockEnd(String language) {
+        if (currentWriter == null) {
+            return;
+        }
+        BlockFileWriter writer = currentWriter;
+        currentWriter = null;
+        try {
+            if (writer.commit()) {
+                savedFileNames.add(writer.fileName);
+            }
+        } catch (IOException e) {
+            writer.discard();
+            fail(e);
+        }
+    }
+
+
+    private void writeWholeFile(String fileName, String content) {
+        try {
+            BlockFileWriter writer = new BlockFileWriter(fileName);
+            writer.write(content);
+            if (writer.commit()) {
+                savedFileNames.add(fileName);
+            }
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "写入代码文件失败：" + e.getMessage());
+        }
+    }
+
+
+    private void fail(IOException e) {
+        log.error("流式写入代码文件失败，目录：{}，错误：{}", baseDir, e.getMessage());
+        if (failure == null) {
+            failure = e;
+        }
+        abort();
+    }
+
+
+    /**
+     * 单个代码块对应的文件写入器
+     * 先写入同目录下的临时文件，闭合时原子重命名；首尾空白不落盘，末尾空白暂存到出现下一个非空白字符为止
+     */
+    private class BlockFileWriter {
+
+        private final String fileName;
+
+        private final Path tempFile;
+
+        private final Writer writer;
+
+        private final StringBuilder pendingWhitespace = new StringBuilder();
+
+        private boolean started;
+
+        BlockFileWriter(String fileName) throws IOException {
+            this.fileName = fileName;
+            this.tempFile = Files.createTempFile(baseDir, "." + fileName + ".", ".tmp");
+            FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            // StreamEncoder 自带 8KB 缓冲并能处理跨片段的代理对，避免每个 token 一次系统调用
+            this.writer = Channels.newWriter(channel, StandardCharsets.UTF_8);
+        }
+
+        void write(String content) throws IOException {
+            int start = 0;
+            int end = content.length();
+            if (!started) {
+                while (start < end && content.charAt(start) <= ' ') {
+                    start++;
+                }
+                if (start == end) {
+                    return;
+                }
+            }
+            int lastVisible = end - 1;
+            while (lastVisible >= start && content.charAt(lastVisible) <= ' ') {
+                lastVisible--;
+            }
+            if (lastVisible < start) {
+                pendingWhitespace.append(content, start, end);
+                return;
+            }
+            started = true;
+            if (!pendingWhitespace.isEmpty()) {
+                writer.append(pendingWhitespace);
+                pendingWhitespace.setLength(0);
+            }
+            writer.append(content, start, lastVisible + 1);
+            pendingWhitespace.append(content, lastVisible + 1, end);
+        }
+
+        /**
+         * 关闭并重命名为正式文件
+         *
+         * @return 是否写入了非空内容
+         */
+        boolean commit() throws IOException {
+            writer.close();
+            if (!started) {
+                Files.deleteIfExists(tempFile);
+                return false;
+            }
+            Path target = baseDir.resolve(fileName);
+            Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            log.info("代码文件已写入：{}", target.toAbsolutePath());
+            return true;
+        }
+
+        void discard() {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                log.warn("关闭临时文件失败：{}", tempFile, e);
+            }
+            try {
+                Files.deleteIfExists(tempFile);
+            } catch (IOException e) {
+                log.warn("删除临时文件失败：{}", tempFile, e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,120 @@
+package com.yff.aicodemother.ai.listener;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.listener.ChatModelRequestContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ *
+ * Prompt 前缀复用统计
+ * 模型服务商的前缀缓存（OpenAI、DeepSeek 等）按请求开头逐字节相同的部分命中，不需要显式标记。
+ * 这里在本地按消息粒度统计每次请求中与近期请求相同的前缀：对消息序列计算链式哈希（第 i 个哈希覆盖前 i 条消息的序列化内容），
+ * 近期出现过的前缀计为可缓存，其余计为未缓存：
+ * - ai.llm.prompt.prefix.tokens{cache=hit}：可命中前缀缓存的 token 数（估算）
+ * - ai.llm.prompt.prefix.tokens{cache=miss}：未命中的 token 数（估算）
+ * 只统计每轮的第一次请求（最后一条是用户消息）：工具调用循环中的后续请求只是在上一次请求末尾追加 AI 消息和工具执行结果，
+ * 前缀必然复用，每一步都重新序列化、计算 token 数的开销随窗口大小增长，不再统计。
+ * 不依赖服务商返回的用量，接入本地 mock 模型时同样可以验证前缀是否跨轮次保持一致（debug 日志输出复用的前缀字节数）。
+ * 服务商实际命中的缓存 token 数见 {@link PromptTokenMetricsListener}
+ *
+ * @author yff
+ * @date 2026-10-18 19:14:22
+ */
+@Slf4j
+@Component
+public class PromptPrefixCacheListener implements ChatModelListener {
+
+    @Autowired
+    private TokenCountEstimator tokenCountEstimator;
+
+    /**
+     * 近期出现过的前缀哈希
+     * 缓存策略:
+     * - 最大容量:100000
+     * - 最近一次使用10分钟后过期（与服务商前缀缓存的保留时间相当）
+     */
+    private final Cache<String, Boolean> recentPrefixes = Caffeine.newBuilder()
+            .maximumSize(100000)
+            .expireAfterWrite(Duration.ofMinutes(10))
+            .build();
+
+    private final Counter hitTokens;
+
+    private final Counter missTokens;
+
+    public PromptPrefixCacheListener(MeterRegistry meterRegistry) {
+        this.hitTokens = prefixCounter(meterRegistry, "hit");
+        this.missTokens = prefixCounter(meterRegistry, "miss");
+    }
+
+    @Override
+    public void onRequest(ChatModelRequestContext requestContext) {
+        try {
+            record(requestContext.chatRequest().messages());
+        } catch (Exception e) {
+            // 统计失败不影响请求
+            log.warn("统计 prompt 前缀失败：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 统计一次请求的前缀复用情况（工具调用循环中的后续请求跳过）
+     *
+     * @param messages 请求消息
+     */
+    void record(List<ChatMessage> messages) {
+        if (messages.isEmpty() || !(messages.getLast() instanceof UserMessage)) {
+            return;
+        }
+        String prefixHash = "";
+        boolean cached = true;
+        long cachedTokens = 0;
+        long uncachedTokens = 0;
+        long cachedBytes = 0;
+        long totalBytes = 0;
+        for (ChatMessage message : messages) {
+            String json = ChatMessageSerializer.messageToJson(message);
+            prefixHash = DigestUtil.sha256Hex(prefixHash + json);
+            int tokens = tokenCountEstimator.estimateTokenCountInMessage(message);
+            int bytes = json.getBytes(StandardCharsets.UTF_8).length;
+            totalBytes += bytes;
+            cached = cached && recentPrefixes.getIfPresent(prefixHash) != null;
+            if (cached) {
+                cachedTokens += tokens;
+                cachedBytes += bytes;
+            } else {
+                uncachedTokens += tokens;
+            }
+            // 命中也重新写入，和服务商缓存一样按最近使用时间保留
+            recentPrefixes.put(prefixHash, Boolean.TRUE);
+        }
+        hitTokens.increment(cachedTokens);
+        missTokens.increment(uncachedTokens);
+        log.debug("prompt 前缀复用 {}/{} 字节，约 {}/{} tokens", cachedBytes, totalBytes,
+                cachedTokens, cachedTokens + uncachedTokens);
+    }
+
+    private static Counter prefixCounter(MeterRegistry meterRegistry, String cache) {
+        return Counter.builder("ai.llm.prompt.prefix.tokens")
+                .description("prompt 前缀可命中/未命中缓存的 token 数（本地估算）")
+                .baseUnit("tokens")
+                .tag("cache", cache)
+                .register(meterRegistry);
+    }
+
+}
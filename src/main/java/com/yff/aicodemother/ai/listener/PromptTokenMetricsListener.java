@@ -0,0 +1,63 @@
+package com.yff.aicodemother.ai.listener;
+
+import cn.hutool.core.util.StrUtil;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.listener.ChatModelResponseContext;
+import dev.langchain4j.model.openai.OpenAiTokenUsage;
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+/**
+ *
+ * 大模型 token 用量指标
+ * 按模型服务商返回的实际用量记录每次请求的 prompt / 输出 token 数：
+ * - ai.llm.prompt.tokens{model}
+ * - ai.llm.completion.tokens{model}
+ * - ai.llm.prompt.cached.tokens{model}：服务商前缀缓存命中的 prompt token 数（服务商返回时记录）
+ * 由 langchain4j starter 自动注册到 ChatModel 和 StreamingChatModel
+ *
+ * @author yff
+ * @date 2026-10-18 18:11:40
+ */
+@Component
+public class PromptTokenMetricsListener implements ChatModelListener {
+
+    private final MeterRegistry meterRegistry;
+
+    public PromptTokenMetricsListener(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void onResponse(ChatModelResponseContext responseContext) {
+        TokenUsage tokenUsage = responseContext.chatResponse().tokenUsage();
+        if (tokenUsage == null) {
+            return;
+        }
+        String model = StrUtil.blankToDefault(responseContext.chatResponse().modelName(), "unknown");
+        if (tokenUsage.inputTokenCount() != null) {
+            tokenSummary("ai.llm.prompt.tokens", "每次大模型请求的 prompt token 数", model)
+                    .record(tokenUsage.inputTokenCount());
+        }
+        if (tokenUsage instanceof OpenAiTokenUsage openAiTokenUsage && openAiTokenUsage.inputTokensDetails() != null
+                && openAiTokenUsage.inputTokensDetails().cachedTokens() != null) {
+            tokenSummary("ai.llm.prompt.cached.tokens", "每次大模型请求命中前缀缓存的 prompt token 数", model)
+                    .record(openAiTokenUsage.inputTokensDetails().cachedTokens());
+        }
+        if (tokenUsage.outputTokenCount() != null) {
+            tokenSummary("ai.llm.completion.tokens", "每次大模型请求的输出 token 数", model)
+                    .record(tokenUsage.outputTokenCount());
+        }
+    }
+
+    private DistributionSummary tokenSummary(String name, String description, String model) {
+        return DistributionSummary.builder(name)
+                .description(description)
+                .baseUnit("tokens")
+                .tag("model", model)
+                .register(meterRegistry);
+    }
+
+}
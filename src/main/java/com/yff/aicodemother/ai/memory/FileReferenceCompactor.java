@@ -0,0 +1,109 @@
+package com.yff.aicodemother.ai.memory;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.yff.aicodemother.ai.core.GenerationContextPreparer;
+import com.yff.aicodemother.manager.FileSnapshotManager;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.TextContent;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ *
+ * 对话记忆中文件内容的压缩（VUE_PROJECT）
+ * 新一轮对话开始时，把之前各轮中的完整文件内容替换为文件引用，当前文件内容只由本轮 prompt 注入一次：
+ * - 用户消息：去掉注入的源文件上下文，只保留用户原始输入
+ * - 写文件的工具调用：AI 消息和对应的工具执行结果合并为一条只包含文件引用的 AI 消息（快照写入失败时保留完整代码块）
+ *
+ * @author yff
+ * @date 2026-10-18 18:31:52
+ */
+@Slf4j
+@Component
+public class FileReferenceCompactor {
+
+    private static final String WRITE_FILE_TOOL_NAME = "writeFile";
+
+    @Autowired
+    private FileSnapshotManager fileSnapshotManager;
+
+
+    /**
+     * 压缩历史消息
+     *
+     * @param messages 历史消息
+     * @return 压缩后的消息
+     */
+    public List<ChatMessage> compact(List<ChatMessage> messages) {
+        List<ChatMessage> result = new ArrayList<>(messages.size());
+        Set<String> compactedToolIds = new HashSet<>();
+        for (ChatMessage message : messages) {
+            switch (message) {
+                case UserMessage userMessage when userMessage.hasSingleText() -> {
+                    String text = stripSourceContext(userMessage.singleText());
+                    // 保留 name 和 attributes，只替换文本
+                    result.add(text.equals(userMessage.singleText()) ? userMessage
+                            : userMessage.toBuilder().contents(List.of(TextContent.from(text))).build());
+                }
+                case AiMessage aiMessage when aiMessage.hasToolExecutionRequests() -> {
+                    StringBuilder sb = new StringBuilder(StrUtil.nullToEmpty(aiMessage.text()));
+                    for (ToolExecutionRequest request : aiMessage.toolExecutionRequests()) {
+                        compactedToolIds.add(request.id());
+                        sb.append("\n").append(describeToolCall(request));
+                    }
+                    result.add(AiMessage.from(sb.toString().strip()));
+                }
+                case ToolExecutionResultMessage resultMessage when compactedToolIds.contains(resultMessage.id()) -> {
+                    // 已合并到对应的 AI 消息中
+                }
+                default -> result.add(message);
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * 去掉用户消息前注入的源文件上下文
+     */
+    static String stripSourceContext(String text) {
+        if (!text.startsWith(GenerationContextPreparer.SOURCE_CONTEXT_HEADER)) {
+            return text;
+        }
+        int footerIndex = text.indexOf(GenerationContextPreparer.SOURCE_CONTEXT_FOOTER);
+        if (footerIndex < 0) {
+            return text;
+        }
+        return text.substring(footerIndex + GenerationContextPreparer.SOURCE_CONTEXT_FOOTER.length()).strip();
+    }
+
+
+    private String describeToolCall(ToolExecutionRequest request) {
+        if (WRITE_FILE_TOOL_NAME.equals(request.name())) {
+            try {
+                JSONObject arguments = JSONUtil.parseObj(request.arguments());
+                String relativePath = arguments.getStr("relativePath");
+                String content = arguments.getStr("content");
+                if (relativePath != null && content != null) {
+                    return fileSnapshotManager.toReference(relativePath, content);
+                }
+            } catch (Exception e) {
+                log.warn("解析工具调用参数失败：{}", e.getMessage());
+            }
+        }
+        return "[工具调用] " + request.name() + "\n";
+    }
+
+}
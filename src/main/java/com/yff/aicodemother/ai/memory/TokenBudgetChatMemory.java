@@ -0,0 +1,197 @@
+package com.yff.aicodemother.ai.memory;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ *
+ * 按 token 预算限制窗口的对话记忆
+ * 与 MessageWindowChatMemory 一样通过 ChatMemoryStore 持久化，区别是窗口大小按 token 数而不是消息条数计算：
+ * - 超出预算时按轮次从最早的一轮开始淘汰（一轮为用户消息及其后的 AI 消息、工具执行结果），系统消息保留；
+ *   整轮淘汰不会留下没有用户消息的 AI 回复，也不会留下没有工具调用请求的工具执行结果
+ * - 当前这一轮（最后一条用户消息及之后的消息）始终保留，即使它本身已超出预算：工具调用循环中途超出预算时
+ *   不会淘汰本轮的用户消息（VUE_PROJECT 注入的源文件上下文）和正在进行的工具调用
+ * - 一次淘汰到预算的 75% 以下，而不是每轮只淘汰刚好超出的一两条：窗口开头在两次淘汰之间保持不变，
+ *   请求前缀逐字节一致，可以命中模型服务商的前缀缓存。这个比例只作用于当前这一轮之前已完成的轮次，
+ *   当前这一轮单独超出 75% 时只淘汰到剩下当前这一轮为止
+ * - set 整体写入一次存储，不会像逐条 add 那样每条消息都重写一遍
+ * - 可选的历史压缩：新一轮用户消息写入前先压缩之前的消息（例如把完整文件内容替换为文件引用）
+ * 每次读取窗口（即每次调用大模型前）记录窗口 token 数，写入时记录淘汰的消息数
+ *
+ * @author yff
+ * @date 2026-10-18 18:06:27
+ */
+public class TokenBudgetChatMemory implements ChatMemory {
+
+    /**
+     * 超出预算后淘汰到预算的这个比例以下（只淘汰已完成的轮次）
+     */
+    private static final double EVICTION_TARGET_RATIO = 0.75;
+
+    private final Object id;
+
+    private final ChatMemoryStore chatMemoryStore;
+
+    private final int maxTokens;
+
+    private final TokenCountEstimator tokenCountEstimator;
+
+    private final DistributionSummary windowTokens;
+
+    private final Counter evictedMessages;
+
+    private final UnaryOperator<List<ChatMessage>> historyCompactor;
+
+    /**
+     * @param id                  记忆ID（appId）
+     * @param chatMemoryStore     持久化存储
+     * @param maxTokens           token 预算
+     * @param tokenCountEstimator token 计数器
+     * @param windowTokens        窗口 token 数指标
+     * @param evictedMessages     淘汰消息数指标
+     * @param historyCompactor    新一轮用户消息写入前对历史消息的压缩
+     */
+    public TokenBudgetChatMemory(Object id, ChatMemoryStore chatMemoryStore, int maxTokens,
+                                 TokenCountEstimator tokenCountEstimator,
+                                 DistributionSummary windowTokens, Counter evictedMessages,
+                                 UnaryOperator<List<ChatMessage>> historyCompactor) {
+        this.id = id;
+        this.chatMemoryStore = chatMemoryStore;
+        this.maxTokens = maxTokens;
+        this.tokenCountEstimator = tokenCountEstimator;
+        this.windowTokens = windowTokens;
+        this.evictedMessages = evictedMessages;
+        this.historyCompactor = historyCompactor;
+    }
+
+    @Override
+    public Object id() {
+        return id;
+    }
+
+    @Override
+    public void add(ChatMessage message) {
+        List<ChatMessage> messages = new ArrayList<>(chatMemoryStore.getMessages(id));
+        if (message instanceof SystemMessage) {
+            if (messages.contains(message)) {
+                return;
+            }
+            // 只保留最新的系统消息，并放在最前面
+            messages.removeIf(SystemMessage.class::isInstance);
+            messages.add(0, message);
+        } else if (message instanceof UserMessage) {
+            messages = new ArrayList<>(historyCompactor.apply(messages));
+            messages.add(message);
+        } else {
+            messages.add(message);
+        }
+        store(messages);
+    }
+
+    @Override
+    public void set(Iterable<ChatMessage> messages) {
+        List<ChatMessage> list = new ArrayList<>();
+        messages.forEach(list::add);
+        if (list.isEmpty()) {
+            clear();
+            return;
+        }
+        store(list);
+    }
+
+    @Override
+    public List<ChatMessage> messages() {
+        List<ChatMessage> messages = new ArrayList<>(chatMemoryStore.getMessages(id));
+        windowTokens.record(trim(messages).tokens());
+        return messages;
+    }
+
+    @Override
+    public void clear() {
+        chatMemoryStore.deleteMessages(id);
+    }
+
+    /**
+     * 裁剪到预算内后写入存储
+     */
+    private void store(List<ChatMessage> messages) {
+        int evicted = trim(messages).evicted();
+        if (evicted > 0) {
+            evictedMessages.increment(evicted);
+        }
+        chatMemoryStore.updateMessages(id, messages);
+    }
+
+    /**
+     * 超出预算时从最早的一轮开始整轮淘汰，直到总 token 数不超过预算的 75% 或只剩当前这一轮
+     *
+     * @param messages 消息列表（原地修改）
+     * @return 裁剪后的 token 数和淘汰的消息数
+     */
+    private TrimResult trim(List<ChatMessage> messages) {
+        List<Integer> tokenCounts = new ArrayList<>(messages.size());
+        int total = 0;
+        for (ChatMessage message : messages) {
+            int count = tokenCountEstimator.estimateTokenCountInMessage(message);
+            tokenCounts.add(count);
+            total += count;
+        }
+        int evicted = 0;
+        if (total <= maxTokens) {
+            return new TrimResult(total, evicted);
+        }
+        int targetTokens = (int) (maxTokens * EVICTION_TARGET_RATIO);
+        int oldest = firstNonSystemIndex(messages);
+        int current = currentTurnIndex(messages, oldest);
+        while (total > targetTokens && oldest < current) {
+            // 最早的一轮：到下一条用户消息之前（第一条用户消息之前的 AI 消息、工具执行结果也作为一轮）
+            int end = oldest + 1;
+            while (end < current && !(messages.get(end) instanceof UserMessage)) {
+                end++;
+            }
+            List<Integer> removedCounts = tokenCounts.subList(oldest, end);
+            for (int count : removedCounts) {
+                total -= count;
+            }
+            removedCounts.clear();
+            messages.subList(oldest, end).clear();
+            evicted += end - oldest;
+            current -= end - oldest;
+        }
+        return new TrimResult(total, evicted);
+    }
+
+    private static int firstNonSystemIndex(List<ChatMessage> messages) {
+        int index = 0;
+        while (index < messages.size() && messages.get(index) instanceof SystemMessage) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * 当前这一轮的开始位置（最后一条用户消息），没有用户消息时整个窗口视为当前这一轮
+     */
+    private static int currentTurnIndex(List<ChatMessage> messages, int oldest) {
+        for (int index = messages.size() - 1; index > oldest; index--) {
+            if (messages.get(index) instanceof UserMessage) {
+                return index;
+            }
+        }
+        return oldest;
+    }
+
+    private record TrimResult(int tokens, int evicted) {
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.yff.aicodemother.ai.mock;
+
+import cn.hutool.json.JSONUtil;
+import com.yff.aicodemother.ai.core.parser.CodeParserExecutor;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.output.FinishReason;
+import dev.langchain4j.model.output.TokenUsage;
+
+import java.util.List;
+
+/**
+ *
+ * 本地模拟非流式模型（压测用）
+ * - 路由请求返回配置的代码生成类型
+ * - HTML / 多文件的结构化输出请求从录制的对话中解析代码，返回对应结果对象的 JSON
+ * 按首 token 时间加上整段输出的耗时等待后一次性返回
+ *
+ * @author yff
+ * @date 2026-10-18 19:41:03
+ */
+public class MockChatModel implements ChatModel {
+
+    private final MockTranscripts transcripts;
+
+    private final MockLatency latency;
+
+    private final int charsPerToken;
+
+    private final String routingResult;
+
+    private final List<ChatModelListener> listeners;
+
+    public MockChatModel(MockTranscripts transcripts, MockLatency latency, int charsPerToken, String routingResult,
+                         List<ChatModelListener> listeners) {
+        this.transcripts = transcripts;
+        this.latency = latency;
+        this.charsPerToken = charsPerToken;
+        this.routingResult = routingResult;
+        this.listeners = listeners;
+    }
+
+    @Override
+    public ChatResponse doChat(ChatRequest chatRequest) {
+        MockTranscripts.RequestKind kind = transcripts.kindOf(chatRequest);
+        String text = switch (kind) {
+            case ROUTING -> routingResult;
+            case HTML, MULTI_FILE -> JSONUtil.toJsonStr(
+                    CodeParserExecutor.executeParse(transcripts.stepOf(chatRequest).text(), kind.codeGenType()));
+            case VUE_PROJECT -> transcripts.stepOf(chatRequest).text();
+        };
+        int outputTokens = Math.max(1, text.length() / charsPerToken);
+        try {
+            latency.awaitFirstToken();
+            latency.awaitTokens(outputTokens);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("模拟模型调用被中断", e);
+        }
+        return ChatResponse.builder()
+                .aiMessage(AiMessage.from(text))
+                .tokenUsage(new TokenUsage(MockStreamingChatModel.estimateInputTokens(chatRequest, charsPerToken),
+                        outputTokens))
+                .finishReason(FinishReason.STOP)
+                .modelName(MockStreamingChatModel.MODEL_NAME)
+                .build();
+    }
+
+    @Override
+    public List<ChatModelListener> listeners() {
+        return listeners;
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.yff.aicodemother.ai.mock;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * 模拟模型的输出节奏
+ *
+ * @param timeToFirstTokenMillis 首个 token 的等待时间（毫秒）
+ * @param tokensPerSecond        每秒输出的 token 数，0 表示不限速
+ * @param jitter                 抖动比例，每次等待时间在 [1 - jitter, 1 + jitter] 倍之间随机
+ * @author yff
+ * @date 2026-10-18 19:34:20
+ */
+public record MockLatency(long timeToFirstTokenMillis, int tokensPerSecond, double jitter) {
+
+    /**
+     * 等待首个 token
+     */
+    public void awaitFirstToken() throws InterruptedException {
+        sleepWithJitter(TimeUnit.MILLISECONDS.toNanos(timeToFirstTokenMillis));
+    }
+
+    /**
+     * 等待输出指定数量的 token
+     *
+     * @param tokens token 数
+     */
+    public void awaitTokens(int tokens) throws InterruptedException {
+        if (tokensPerSecond > 0) {
+            sleepWithJitter(TimeUnit.SECONDS.toNanos(tokens) / tokensPerSecond);
+        }
+    }
+
+    private void sleepWithJitter(long nanos) throws InterruptedException {
+        if (nanos <= 0) {
+            return;
+        }
+        double factor = 1 + (ThreadLocalRandom.current().nextDouble() * 2 - 1) * jitter;
+        TimeUnit.NANOSECONDS.sleep((long) (nanos * factor));
+    }
+
+}
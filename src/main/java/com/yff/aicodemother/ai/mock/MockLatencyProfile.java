@@ -0,0 +1,45 @@
+package com.yff.aicodemother.ai.mock;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ *
+ * 模拟模型的延迟档位
+ *
+ * @author yff
+ * @date 2026-10-18 19:32:05
+ */
+@Getter
+@AllArgsConstructor
+public enum MockLatencyProfile {
+
+    /**
+     * 不等待，用于测量管道自身的开销
+     */
+    INSTANT(0, 0, 0),
+
+    FAST(200, 200, 0.1),
+
+    /**
+     * 接近线上大模型的表现
+     */
+    REALISTIC(1500, 50, 0.3),
+
+    SLOW(5000, 20, 0.5);
+
+    /**
+     * 首个 token 的等待时间（毫秒）
+     */
+    private final long timeToFirstTokenMillis;
+
+    /**
+     * 每秒输出的 token 数，0 表示不限速
+     */
+    private final int tokensPerSecond;
+
+    /**
+     * 抖动比例，每次等待时间在 [1 - jitter, 1 + jitter] 倍之间随机
+     */
+    private final double jitter;
+}
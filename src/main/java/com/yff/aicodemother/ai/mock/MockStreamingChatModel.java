@@ -0,0 +1,140 @@
+package com.yff.aicodemother.ai.mock;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.json.JSONUtil;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.CompleteToolCall;
+import dev.langchain4j.model.chat.response.PartialToolCall;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.output.FinishReason;
+import dev.langchain4j.model.output.TokenUsage;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ * 本地模拟流式模型（压测用）
+ * 按录制的对话回放输出，不调用模型服务商：等待首 token 时间后按 tokens/秒 逐 token 推送文本，
+ * Vue 项目请求按录制步骤推送 writeFile 工具调用（参数同样逐 token 推送），由 AiServices 照常执行工具并进入下一步。
+ * 每个请求在独立的虚拟线程中输出，和真实模型一样不占用调用方线程
+ *
+ * @author yff
+ * @date 2026-10-18 19:38:47
+ */
+@Slf4j
+public class MockStreamingChatModel implements StreamingChatModel {
+
+    static final String MODEL_NAME = "mock";
+
+    private static final String WRITE_FILE_TOOL_NAME = "writeFile";
+
+    private final MockTranscripts transcripts;
+
+    private final MockLatency latency;
+
+    private final int charsPerToken;
+
+    private final List<ChatModelListener> listeners;
+
+    public MockStreamingChatModel(MockTranscripts transcripts, MockLatency latency, int charsPerToken,
+                                  List<ChatModelListener> listeners) {
+        this.transcripts = transcripts;
+        this.latency = latency;
+        this.charsPerToken = charsPerToken;
+        this.listeners = listeners;
+    }
+
+    @Override
+    public void doChat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        Thread.ofVirtual().name("mock-streaming-model").start(() -> {
+            try {
+                handler.onCompleteResponse(replay(chatRequest, handler));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                handler.onError(e);
+            } catch (Exception e) {
+                log.error("模拟模型输出失败", e);
+                handler.onError(e);
+            }
+        });
+    }
+
+    @Override
+    public List<ChatModelListener> listeners() {
+        return listeners;
+    }
+
+    private ChatResponse replay(ChatRequest chatRequest, StreamingChatResponseHandler handler)
+            throws InterruptedException {
+        MockTranscripts.Step step = transcripts.stepOf(chatRequest);
+        latency.awaitFirstToken();
+        int outputTokens = 0;
+        for (String chunk : split(step.text())) {
+            handler.onPartialResponse(chunk);
+            latency.awaitTokens(1);
+            outputTokens++;
+        }
+        List<ToolExecutionRequest> toolRequests = new ArrayList<>(step.writes().size());
+        for (int index = 0; index < step.writes().size(); index++) {
+            MockTranscripts.FileWrite write = step.writes().get(index);
+            Map<String, String> arguments = new LinkedHashMap<>();
+            arguments.put("relativePath", write.relativePath());
+            arguments.put("content", write.content());
+            ToolExecutionRequest request = ToolExecutionRequest.builder()
+                    .id("call_" + IdUtil.fastSimpleUUID())
+                    .name(WRITE_FILE_TOOL_NAME)
+                    .arguments(JSONUtil.toJsonStr(arguments))
+                    .build();
+            for (String chunk : split(request.arguments())) {
+                handler.onPartialToolCall(PartialToolCall.builder()
+                        .index(index)
+                        .id(request.id())
+                        .name(request.name())
+                        .partialArguments(chunk)
+                        .build());
+                latency.awaitTokens(1);
+                outputTokens++;
+            }
+            handler.onCompleteToolCall(new CompleteToolCall(index, request));
+            toolRequests.add(request);
+        }
+        AiMessage aiMessage = toolRequests.isEmpty()
+                ? AiMessage.from(step.text())
+                : AiMessage.from(step.text(), toolRequests);
+        return ChatResponse.builder()
+                .aiMessage(aiMessage)
+                .tokenUsage(new TokenUsage(estimateInputTokens(chatRequest, charsPerToken), outputTokens))
+                .finishReason(toolRequests.isEmpty() ? FinishReason.STOP : FinishReason.TOOL_EXECUTION)
+                .modelName(MODEL_NAME)
+                .build();
+    }
+
+    /**
+     * 按每个 token 的字符数切分输出
+     */
+    List<String> split(String text) {
+        List<String> chunks = new ArrayList<>(text.length() / charsPerToken + 1);
+        for (int start = 0; start < text.length(); start += charsPerToken) {
+            chunks.add(text.substring(start, Math.min(text.length(), start + charsPerToken)));
+        }
+        return chunks;
+    }
+
+    /**
+     * 按字符数粗略估算 prompt token 数（只用于填充用量指标）
+     */
+    static int estimateInputTokens(ChatRequest chatRequest, int charsPerToken) {
+        int chars = chatRequest.messages().stream().mapToInt(message -> message.toString().length()).sum();
+        return chars / charsPerToken;
+    }
+
+}
@@ -0,0 +1,145 @@
+package com.yff.aicodemother.ai.mock;
+
+import cn.hutool.core.io.resource.ResourceUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.yff.aicodemother.ai.model.enums.CodeGenTypeEnum;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.request.ChatRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ * 模拟模型回放的录制对话
+ * 按请求的系统提示词判断是哪类生成（路由 / HTML / 多文件），带工具定义的请求按 Vue 项目的工具调用步骤回放：
+ * - mock/html.md、mock/multi-file.md：完整的模型输出文本
+ * - mock/vue-project.json：按步骤录制的输出，每一步包含文本和 writeFile 工具调用，
+ *   当前步骤 = 最后一条用户消息之后已有的 AI 消息数（每次工具执行完成后模型被再次调用）
+ *
+ * @author yff
+ * @date 2026-10-18 19:36:12
+ */
+public class MockTranscripts {
+
+    private final String htmlTranscript = ResourceUtil.readUtf8Str("mock/html.md");
+
+    private final String multiFileTranscript = ResourceUtil.readUtf8Str("mock/multi-file.md");
+
+    private final List<Step> vueSteps = loadVueSteps();
+
+    /**
+     * 系统提示词的首行 -> 请求类型
+     */
+    private final Map<String, RequestKind> promptKinds = Map.of(
+            firstLine("prompt/codegen-routing-system-prompt.txt"), RequestKind.ROUTING,
+            firstLine("prompt/codegen-html-system-prompt.txt"), RequestKind.HTML,
+            firstLine("prompt/codegen-multi-file-system-prompt.txt"), RequestKind.MULTI_FILE,
+            firstLine("prompt/codegen-vue-project-system-prompt.txt"), RequestKind.VUE_PROJECT);
+
+
+    /**
+     * 判断请求类型
+     *
+     * @param chatRequest 请求
+     * @return 请求类型，无法识别时按 HTML 回放
+     */
+    public RequestKind kindOf(ChatRequest chatRequest) {
+        if (chatRequest.toolSpecifications() != null && !chatRequest.toolSpecifications().isEmpty()) {
+            return RequestKind.VUE_PROJECT;
+        }
+        for (ChatMessage message : chatRequest.messages()) {
+            if (message instanceof SystemMessage systemMessage) {
+                String line = StrUtil.trim(StrUtil.subBefore(systemMessage.text().strip(), "\n", false));
+                return promptKinds.getOrDefault(line, RequestKind.HTML);
+            }
+        }
+        return RequestKind.HTML;
+    }
+
+
+    /**
+     * 获取本次请求要回放的步骤
+     *
+     * @param chatRequest 请求
+     * @return 回放步骤
+     */
+    public Step stepOf(ChatRequest chatRequest) {
+        return switch (kindOf(chatRequest)) {
+            case HTML -> new Step(htmlTranscript, List.of());
+            case MULTI_FILE -> new Step(multiFileTranscript, List.of());
+            case VUE_PROJECT -> vueSteps.get(Math.min(vueStepIndex(chatRequest.messages()), vueSteps.size() - 1));
+            case ROUTING -> throw new IllegalStateException("路由请求没有录制的对话");
+        };
+    }
+
+
+    /**
+     * 最后一条用户消息之后的 AI 消息数
+     */
+    private static int vueStepIndex(List<ChatMessage> messages) {
+        int count = 0;
+        for (int i = messages.size() - 1; i >= 0 && !(messages.get(i) instanceof UserMessage); i--) {
+            if (messages.get(i) instanceof AiMessage) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+
+    private static List<Step> loadVueSteps() {
+        JSONArray steps = JSONUtil.parseObj(ResourceUtil.readUtf8Str("mock/vue-project.json")).getJSONArray("steps");
+        List<Step> result = new ArrayList<>(steps.size());
+        for (int i = 0; i < steps.size(); i++) {
+            JSONObject step = steps.getJSONObject(i);
+            List<FileWrite> writes = step.getJSONArray("toolCalls").toList(JSONObject.class).stream()
+                    .map(call -> new FileWrite(call.getStr("relativePath"), call.getStr("content")))
+                    .toList();
+            result.add(new Step(step.getStr("text"), writes));
+        }
+        return result;
+    }
+
+
+    private static String firstLine(String resource) {
+        return StrUtil.trim(StrUtil.subBefore(ResourceUtil.readUtf8Str(resource).strip(), "\n", false));
+    }
+
+
+    /**
+     * 请求类型
+     */
+    public enum RequestKind {
+        ROUTING, HTML, MULTI_FILE, VUE_PROJECT;
+
+        /**
+         * 对应的代码生成类型，路由请求返回 null
+         */
+        public CodeGenTypeEnum codeGenType() {
+            return this == ROUTING ? null : CodeGenTypeEnum.valueOf(name());
+        }
+    }
+
+
+    /**
+     * 一次模型调用的输出
+     *
+     * @param text   输出文本
+     * @param writes 写文件工具调用
+     */
+    public record Step(String text, List<FileWrite> writes) {
+    }
+
+
+    public record FileWrite(String relativePath, String content) {
+    }
+
+}
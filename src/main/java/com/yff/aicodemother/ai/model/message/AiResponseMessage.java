@@ -14,7 +14,7 @@ import lombok.NoArgsConstructor;
 @Data
 @NoArgsConstructor
 @EqualsAndHashCode(callSuper = true)
-public class AiResponseMessage extends StreamMessage{
+public final class AiResponseMessage extends StreamMessage {
 
     private String data;
 
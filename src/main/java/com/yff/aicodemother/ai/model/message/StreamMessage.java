@@ -8,6 +8,8 @@ import lombok.NoArgsConstructor;
 /**
  *
  * 流式响应消息基类
+ * 密封类型，进程内以 Flux<StreamMessage> 直接传递对象，处理器通过模式匹配区分具体类型，
+ * 只有在 SSE 边界才会转换为文本，不再在生成和处理之间做 JSON 序列化/反序列化
  *
  * @author yff
  * @date 2026-02-11 16:24:30
@@ -15,7 +17,7 @@ import lombok.NoArgsConstructor;
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-public class StreamMessage {
+public abstract sealed class StreamMessage permits AiResponseMessage, ToolRequestMessage, ToolExecutedMessage {
 
     private String type;
 
@@ -20,7 +20,7 @@ import org.springframework.stereotype.Component;
 @Data
 @NoArgsConstructor
 @EqualsAndHashCode(callSuper = true)
-public class ToolExecutedMessage extends StreamMessage{
+public final class ToolExecutedMessage extends StreamMessage {
 
     private String id;
     private String name;
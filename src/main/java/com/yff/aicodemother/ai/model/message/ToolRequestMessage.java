@@ -18,7 +18,7 @@ import lombok.NoArgsConstructor;
 @Data
 @NoArgsConstructor
 @EqualsAndHashCode(callSuper = true)
-public class ToolRequestMessage extends StreamMessage{
+public final class ToolRequestMessage extends StreamMessage {
 
     private String id;
     private String name;
@@ -0,0 +1,212 @@
+package com.yff.aicodemother.ai.routing;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.yff.aicodemother.ai.model.enums.CodeGenTypeEnum;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * 带多级缓存的代码生成类型路由
+ * 依次尝试：
+ * 1. 关键词规则：用户明确指定了生成方式（如"用 Vue 做"、"单个 HTML 文件"）时直接返回，不调用大模型；
+ *    关键词前面有否定词（如"不要用 Vue"）时不走规则，交给大模型判断
+ * 2. 本地 Caffeine 缓存
+ * 3. Redis 共享缓存（多实例之间共享路由结果）
+ * 4. 调用 {@link AiCodeGenTypeRoutingService}，结果回填两级缓存
+ * 缓存 key 为规范化后的 prompt（转小写、去掉空白和标点）的 SHA-256，"做一个个人博客。" 和 "做一个 个人博客" 命中同一条。
+ * Redis 不可用时跳过该层，不影响路由。
+ * 指标 ai.routing.lookups（tier=heuristic/local/redis/model）按层统计次数，非 model 的占比即命中率；
+ * ai.routing.model 记录实际调用大模型的耗时
+ *
+ * @author yff
+ * @date 2026-10-18 16:41:09
+ */
+@Slf4j
+@Component
+public class CachedCodeGenTypeRouter {
+
+    private static final String REDIS_KEY_PREFIX = "ai:routing:";
+
+    private static final List<String> VUE_KEYWORDS = List.of("vue");
+
+    private static final List<String> SINGLE_HTML_KEYWORDS = List.of("单个html", "一个html文件", "单html", "单文件html");
+
+    private static final List<String> MULTI_FILE_KEYWORDS = List.of("多文件", "htmlcssjs分离", "分离htmlcssjs");
+
+    /**
+     * 否定词（规范化后的形式），出现在关键词前 NEGATION_WINDOW 个字符内时视为否定
+     */
+    private static final List<String> NEGATIONS = List.of("不", "别", "无需", "非", "没有", "避免",
+            "without", "not", "dont", "avoid");
+
+    private static final int NEGATION_WINDOW = 8;
+
+    @Autowired
+    private AiCodeGenTypeRoutingService aiCodeGenTypeRoutingService;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${routing.cache.redis-ttl-days:7}")
+    private long redisTtlDays;
+
+    /**
+     * 路由结果本地缓存
+     * 缓存策略:
+     * - 最大容量:10000
+     * - 写入后24小时过期
+     */
+    private final Cache<String, CodeGenTypeEnum> localCache = Caffeine.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(Duration.ofHours(24))
+            .build();
+
+    private final Counter heuristicCounter;
+
+    private final Counter localHitCounter;
+
+    private final Counter redisHitCounter;
+
+    private final Counter modelCounter;
+
+    private final Timer modelTimer;
+
+    public CachedCodeGenTypeRouter(MeterRegistry meterRegistry) {
+        this.heuristicCounter = lookupCounter(meterRegistry, "heuristic");
+        this.localHitCounter = lookupCounter(meterRegistry, "local");
+        this.redisHitCounter = lookupCounter(meterRegistry, "redis");
+        this.modelCounter = lookupCounter(meterRegistry, "model");
+        this.modelTimer = Timer.builder("ai.routing.model")
+                .description("代码生成类型路由调用大模型的耗时")
+                .register(meterRegistry);
+    }
+
+
+    /**
+     * 根据用户输入的提示路由到具体的代码生成类型
+     *
+     * @param userPrompt 用户输入的提示信息
+     * @return 代码生成类型
+     */
+    public CodeGenTypeEnum route(String userPrompt) {
+        String normalized = normalize(userPrompt);
+        CodeGenTypeEnum type = classifyByKeyword(normalized);
+        if (type != null) {
+            heuristicCounter.increment();
+            return type;
+        }
+        String key = DigestUtil.sha256Hex(normalized);
+        type = localCache.getIfPresent(key);
+        if (type != null) {
+            localHitCounter.increment();
+            return type;
+        }
+        type = getFromRedis(key);
+        if (type != null) {
+            redisHitCounter.increment();
+            localCache.put(key, type);
+            return type;
+        }
+        modelCounter.increment();
+        type = modelTimer.record(() -> aiCodeGenTypeRoutingService.routeCodeGenType(userPrompt));
+        if (type != null) {
+            localCache.put(key, type);
+            putToRedis(key, type);
+        }
+        return type;
+    }
+
+
+    /**
+     * 规范化 prompt：转小写，只保留字母和数字（含中文）
+     */
+    static String normalize(String prompt) {
+        StringBuilder sb = new StringBuilder(prompt.length());
+        prompt.codePoints()
+                .filter(Character::isLetterOrDigit)
+                .map(Character::toLowerCase)
+                .forEach(sb::appendCodePoint);
+        return sb.toString();
+    }
+
+
+    /**
+     * 关键词规则：只处理用户明确指定生成方式的情况，命中多种、都不命中或关键词被否定（如"不要用vue"）时
+     * 返回 null 交给后续层
+     *
+     * @param normalized 规范化后的 prompt
+     * @return 代码生成类型
+     */
+    static CodeGenTypeEnum classifyByKeyword(String normalized) {
+        int vue = matchKeyword(normalized, VUE_KEYWORDS);
+        int singleHtml = matchKeyword(normalized, SINGLE_HTML_KEYWORDS);
+        int multiFile = matchKeyword(normalized, MULTI_FILE_KEYWORDS);
+        if (vue < 0 || singleHtml < 0 || multiFile < 0 || vue + singleHtml + multiFile != 1) {
+            return null;
+        }
+        if (vue > 0) {
+            return CodeGenTypeEnum.VUE_PROJECT;
+        }
+        return singleHtml > 0 ? CodeGenTypeEnum.HTML : CodeGenTypeEnum.MULTI_FILE;
+    }
+
+
+    /**
+     * @return 1 命中，0 未命中，-1 存在被否定的关键词
+     */
+    private static int matchKeyword(String normalized, List<String> keywords) {
+        int result = 0;
+        for (String keyword : keywords) {
+            for (int index = normalized.indexOf(keyword); index >= 0; index = normalized.indexOf(keyword, index + 1)) {
+                String before = normalized.substring(Math.max(0, index - NEGATION_WINDOW), index);
+                if (NEGATIONS.stream().anyMatch(before::contains)) {
+                    return -1;
+                }
+                result = 1;
+            }
+        }
+        return result;
+    }
+
+
+    private CodeGenTypeEnum getFromRedis(String key) {
+        try {
+            String value = stringRedisTemplate.opsForValue().get(REDIS_KEY_PREFIX + key);
+            return value == null ? null : CodeGenTypeEnum.valueOf(value);
+        } catch (Exception e) {
+            log.warn("读取路由缓存失败：{}", e.getMessage());
+            return null;
+        }
+    }
+
+
+    private void putToRedis(String key, CodeGenTypeEnum type) {
+        try {
+            stringRedisTemplate.opsForValue().set(REDIS_KEY_PREFIX + key, type.name(), redisTtlDays, TimeUnit.DAYS);
+        } catch (Exception e) {
+            log.warn("写入路由缓存失败：{}", e.getMessage());
+        }
+    }
+
+
+    private static Counter lookupCounter(MeterRegistry meterRegistry, String tier) {
+        return Counter.builder("ai.routing.lookups")
+                .description("代码生成类型路由次数")
+                .tag("tier", tier)
+                .register(meterRegistry);
+    }
+
+}
@@ -1,11 +1,13 @@
 package com.yff.aicodemother.ai.tools;
 
 
+import com.yff.aicodemother.ai.core.context.VueSourceContextBuilder;
 import com.yff.aicodemother.constant.AppConstant;
 import dev.langchain4j.agent.tool.P;
 import dev.langchain4j.agent.tool.Tool;
 import dev.langchain4j.agent.tool.ToolMemoryId;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
@@ -27,6 +29,9 @@ import java.nio.file.StandardOpenOption;
 @Component
 public class FileWriteTool {
 
+    @Autowired
+    private VueSourceContextBuilder vueSourceContextBuilder;
+
     @Tool("写入文件到指定路径")
     public String writeFile(
             @P("文件的相对路径")
@@ -51,6 +56,8 @@ public class FileWriteTool {
             //写入文件内容
             Files.write(path, content.getBytes(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
             log.info("成功写入文件：{}", path.toAbsolutePath());
+            // 同步更新源文件索引，下一轮构建上下文时无需重新读取
+            vueSourceContextBuilder.onFileWritten(appId, path, content);
             //返回相对路径
             return "文件写入成功：" + relativePath;
         } catch (IOException e) {
@@ -0,0 +1,104 @@
+package com.yff.aicodemother.common.sse;
+
+
+/**
+ *
+ * SSE 消息信封编码器
+ * 将每个输出片段编码为前端约定的 {"d":"..."} 格式，替代逐 chunk 创建 Map 再用 JSONUtil 反射序列化的做法：
+ * 直接把转义结果写入复用的缓冲区，每个片段只产生最终的一个字符串。
+ * 转义规则与 Hutool JSONUtil 完全一致（控制字符、U+0080~U+00A0 及部分 U+20xx 不可见字符输出为 \\uXXXX），前端解析结果不变。
+ * 非线程安全，每个 SSE 连接创建一个实例（Flux.map 对同一个流是串行调用的）
+ *
+ * @author yff
+ * @date 2026-10-18 13:32:05
+ */
+public class SseEnvelopeEncoder {
+
+    private static final String ENVELOPE_PREFIX = "{\"d\":\"";
+
+    private static final String ENVELOPE_SUFFIX = "\"}";
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    /**
+     * 缓冲区保留的最大容量，偶尔出现的超大片段编码后不会一直占用内存
+     */
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    private StringBuilder buffer = new StringBuilder(INITIAL_CAPACITY);
+
+
+    /**
+     * 编码一个输出片段
+     *
+     * @param chunk 输出片段
+     * @return {"d":"..."} 格式的 JSON 字符串
+     */
+    public String encode(String chunk) {
+        StringBuilder sb = buffer;
+        sb.setLength(0);
+        sb.append(ENVELOPE_PREFIX);
+        escapeTo(chunk, sb);
+        sb.append(ENVELOPE_SUFFIX);
+        String json = sb.toString();
+        if (sb.capacity() > MAX_RETAINED_CAPACITY) {
+            buffer = new StringBuilder(INITIAL_CAPACITY);
+        }
+        return json;
+    }
+
+
+    /**
+     * 将字符串按 JSON 字符串规则转义后追加到目标缓冲区（不含两侧引号）
+     * 不需要转义的连续字符整段追加
+     *
+     * @param value 原始字符串
+     * @param out   目标缓冲区
+     */
+    public static void escapeTo(String value, StringBuilder out) {
+        if (value == null) {
+            return;
+        }
+        int runStart = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (!needsEscape(c)) {
+                continue;
+            }
+            if (i > runStart) {
+                out.append(value, runStart, i);
+            }
+            runStart = i + 1;
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\b' -> out.append("\\b");
+                case '\t' -> out.append("\\t");
+                case '\n' -> out.append("\\n");
+                case '\f' -> out.append("\\f");
+                case '\r' -> out.append("\\r");
+                default -> out.append("\\u")
+                        .append(HEX_DIGITS[(c >> 12) & 0xF])
+                        .append(HEX_DIGITS[(c >> 8) & 0xF])
+                        .append(HEX_DIGITS[(c >> 4) & 0xF])
+                        .append(HEX_DIGITS[c & 0xF]);
+            }
+        }
+        if (runStart < length) {
+            out.append(value, runStart, length);
+        }
+    }
+
+
+    private static boolean needsEscape(char c) {
+        return c < 0x20 || c == '"' || c == '\\'
+                || (c >= 0x80 && c <= 0xa0)
+                || (c >= 0x2000 && c <= 0x2010)
+                || (c >= 0x2028 && c <= 0x202f)
+                || (c >= 0x2066 && c <= 0x206f);
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.yff.aicodemother.config;
+
+import com.yff.aicodemother.ai.model.enums.CodeGenTypeEnum;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.model.openai.OpenAiTokenCountEstimator;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ *
+ * 对话记忆配置类
+ * 每种代码生成类型的记忆窗口按 token 预算限制（VUE_PROJECT 的 AI 回复包含整份文件内容，需要更大的预算）
+ *
+ * @author yff
+ * @date 2026-10-18 18:02:15
+ */
+@Configuration
+@Data
+@ConfigurationProperties(prefix = "ai.memory")
+public class ChatMemoryConfig {
+
+    /**
+     * 各代码生成类型的记忆 token 预算
+     */
+    private Map<CodeGenTypeEnum, Integer> tokenBudget = new EnumMap<>(CodeGenTypeEnum.class);
+
+    /**
+     * 未单独配置的类型使用的 token 预算
+     */
+    private int defaultTokenBudget = 8000;
+
+    /**
+     * 用于估算 token 数的分词模型（jtokkit 支持的 OpenAI 模型名，其他模型按近似值计算）
+     */
+    private String tokenizerModel = "gpt-4o";
+
+    /**
+     * 冷启动时从数据库加载的最大历史条数
+     */
+    private int historyLoadCount = 50;
+
+    /**
+     * 获取指定代码生成类型的 token 预算
+     *
+     * @param codeGenTypeEnum 代码生成类型
+     * @return token 预算
+     */
+    public int getTokenBudget(CodeGenTypeEnum codeGenTypeEnum) {
+        return tokenBudget.getOrDefault(codeGenTypeEnum, defaultTokenBudget);
+    }
+
+    @Bean
+    public TokenCountEstimator tokenCountEstimator() {
+        return new OpenAiTokenCountEstimator(tokenizerModel);
+    }
+
+}
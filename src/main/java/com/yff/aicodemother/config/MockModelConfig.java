@@ -0,0 +1,91 @@
+package com.yff.aicodemother.config;
+
+import com.yff.aicodemother.ai.mock.MockChatModel;
+import com.yff.aicodemother.ai.mock.MockLatency;
+import com.yff.aicodemother.ai.mock.MockLatencyProfile;
+import com.yff.aicodemother.ai.mock.MockStreamingChatModel;
+import com.yff.aicodemother.ai.mock.MockTranscripts;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import lombok.Data;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+/**
+ *
+ * 模拟模型配置类（压测用）
+ * ai.mock-model.enabled=true 时用本地回放录制对话的模拟模型替换真实大模型，压测只测量服务自身的开销，不消耗模型额度。
+ * 选择一个延迟档位，单独配置的 time-to-first-token-millis / tokens-per-second / jitter 覆盖档位中的值
+ *
+ * @author yff
+ * @date 2026-10-18 19:43:26
+ */
+@Configuration
+@Data
+@ConfigurationProperties(prefix = "ai.mock-model")
+@ConditionalOnProperty(prefix = "ai.mock-model", name = "enabled", havingValue = "true")
+public class MockModelConfig {
+
+    /**
+     * 延迟档位
+     */
+    private MockLatencyProfile profile = MockLatencyProfile.REALISTIC;
+
+    /**
+     * 首个 token 的等待时间（毫秒），为空时使用档位中的值
+     */
+    private Long timeToFirstTokenMillis;
+
+    /**
+     * 每秒输出的 token 数，0 表示不限速，为空时使用档位中的值
+     */
+    private Integer tokensPerSecond;
+
+    /**
+     * 抖动比例，为空时使用档位中的值
+     */
+    private Double jitter;
+
+    /**
+     * 每个 token 的字符数（按这个粒度切分输出）
+     */
+    private int charsPerToken = 4;
+
+    /**
+     * 路由请求返回的代码生成类型
+     */
+    private String routingResult = "HTML";
+
+    @Bean
+    public MockTranscripts mockTranscripts() {
+        return new MockTranscripts();
+    }
+
+    @Bean
+    @Primary
+    public StreamingChatModel mockStreamingChatModel(MockTranscripts mockTranscripts,
+                                                     ObjectProvider<ChatModelListener> listeners) {
+        return new MockStreamingChatModel(mockTranscripts, latency(), charsPerToken,
+                listeners.orderedStream().toList());
+    }
+
+    @Bean
+    @Primary
+    public ChatModel mockChatModel(MockTranscripts mockTranscripts, ObjectProvider<ChatModelListener> listeners) {
+        return new MockChatModel(mockTranscripts, latency(), charsPerToken, routingResult,
+                listeners.orderedStream().toList());
+    }
+
+    private MockLatency latency() {
+        return new MockLatency(
+                timeToFirstTokenMillis != null ? timeToFirstTokenMillis : profile.getTimeToFirstTokenMillis(),
+                tokensPerSecond != null ? tokensPerSecond : profile.getTokensPerSecond(),
+                jitter != null ? jitter : profile.getJitter());
+    }
+
+}
@@ -16,6 +16,16 @@ public interface AppConstant {
      */
     String CODE_DEPLOY_ROOT_DIR = System.getProperty("user.dir") + "/tmp/code_deploy";
 
+    /**
+     * 文件快照目录（按内容哈希存储生成的文件内容，是对话历史中文件引用的唯一副本，需要与数据库一起备份）
+     */
+    String FILE_SNAPSHOT_ROOT_DIR = System.getProperty("user.dir") + "/tmp/file_snapshot";
+
+    /**
+     * 对话历史写入日志目录（异步批量写库前先追加到本地日志）
+     */
+    String CHAT_HISTORY_JOURNAL_DIR = System.getProperty("user.dir") + "/tmp/chat_history_journal";
+
     /**
      * 应用部署域名
      */
@@ -1,16 +1,19 @@
 package com.yff.aicodemother.controller;
 
 import cn.hutool.core.util.StrUtil;
-import cn.hutool.json.JSONUtil;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.yff.aicodemother.annotation.AuthCheck;
 import com.yff.aicodemother.common.BaseResponse;
 import com.yff.aicodemother.common.ResultUtils;
 import com.yff.aicodemother.common.login.UserHolder;
+import com.yff.aicodemother.common.sse.SseChunkCoalescer;
+import com.yff.aicodemother.common.sse.SseEnvelopeEncoder;
 import com.yff.aicodemother.constant.AppConstant;
 import com.yff.aicodemother.exception.BusinessException;
 import com.yff.aicodemother.exception.ErrorCode;
 import com.yff.aicodemother.exception.ThrowUtils;
+import com.yff.aicodemother.manager.GenerationStreamManager;
+import com.yff.aicodemother.manager.GenerationStreamManager.GenerationEvent;
 import com.yff.aicodemother.model.dto.app.*;
 import com.yff.aicodemother.model.entity.App;
 import com.yff.aicodemother.model.entity.User;
@@ -28,7 +31,6 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.io.File;
-import java.util.Map;
 
 /**
  * 应用 控制层。
@@ -48,6 +50,10 @@ public class AppController {
     private ProjectDownloadService projectDownloadService;
     @Autowired
     private com.yff.aicodemother.ai.core.builder.VueProjectBuilder vueProjectBuilder;
+    @Autowired
+    private SseChunkCoalescer sseChunkCoalescer;
+    @Autowired
+    private GenerationStreamManager generationStreamManager;
 
     // ==================== 普通用户接口 ====================
 
@@ -145,29 +151,52 @@ public class AppController {
      *
      * @param appId       应用ID
      * @param userMessage 用户消息
+     * @param lastEventId 断线重连时客户端最后收到的事件 id，有值时从断点续传而不是重新生成
      * @return 代码生成结果流
      */
     @GetMapping(value = "/chat/gen/code", produces = MediaType.TEXT_EVENT_STREAM_VALUE) // 声明为SSE流式返回
     @Operation(summary = "聊天生成代码（SSE 流式返回）")
-    public Flux<ServerSentEvent<String>> chatToGenCode(@RequestParam Long appId, @RequestParam String userMessage) {
+    public Flux<ServerSentEvent<String>> chatToGenCode(@RequestParam Long appId, @RequestParam String userMessage,
+                                                       @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID不合法");
         ThrowUtils.throwIf(userMessage == null || userMessage.trim().isEmpty(), ErrorCode.PARAMS_ERROR, "用户消息不能为空");
 
         // 获取当前登录用户
         Long userId = UserHolder.getUserId();
         User user = userService.getById(userId);// 确保用户存在，否则抛出异常
-        // 调用服务层方法进行流式代码生成
-        Flux<String> contentFlux = appService.chatToGenCode(appId, userMessage, user);
-        return contentFlux.map(
-                chuck -> {
-                    // 将内容包装成json对象
-                    Map<String, String> wrapper = Map.of("d", chuck);
-                    String jsonData = JSONUtil.toJsonStr(wrapper);
-                    return ServerSentEvent.<String>builder().data(jsonData).build();
+        if (StrUtil.isNotBlank(lastEventId)) {
+            Flux<GenerationEvent> resumed = generationStreamManager.resume(appId, user.getId(), lastEventId);
+            // 生成已结束并过期时直接发送结束标志，不重新发起生成
+            return toServerSentEvents(resumed == null ? Flux.empty() : resumed);
+        }
+        // 同一应用已有相同的生成在运行时直接接入，否则调用服务层方法进行流式代码生成
+        // 按配置合并小片段后再编号，续传时按合并后的事件对齐
+        Flux<GenerationEvent> events = generationStreamManager.startOrJoin(appId, user.getId(), userMessage,
+                () -> sseChunkCoalescer.coalesce(appService.chatToGenCode(appId, userMessage, user)));
+        return toServerSentEvents(events);
+    }
+
+    /**
+     * 将生成事件转换为 SSE 事件，并在末尾追加结束标志
+     *
+     * @param events 生成事件流
+     * @return SSE 事件流
+     */
+    private Flux<ServerSentEvent<String>> toServerSentEvents(Flux<GenerationEvent> events) {
+        // 每个连接一个编码器，复用缓冲区直接输出 {"d":"..."}，避免逐 chunk 创建 Map 并反射序列化
+        SseEnvelopeEncoder envelopeEncoder = new SseEnvelopeEncoder();
+        return events
+                .map(event -> {
+                    if (event.getEvent() != null) {
+                        // 排队状态等控制事件，不编号也不包信封
+                        return ServerSentEvent.<String>builder().event(event.getEvent()).data(event.getData()).build();
+                    }
+                    String jsonData = envelopeEncoder.encode(event.getData());
+                    sseChunkCoalescer.recordEvent(jsonData);
+                    return ServerSentEvent.<String>builder().id(event.getId()).data(jsonData).build();
                 }).concatWith(Mono.just( // concatWith 用于在流的末尾添加结束标志 Mono.just创建一个 只包含一个结束标志事件 的 Mono，用于在流结束时发送
                         // 发送结束标志
                         ServerSentEvent.<String>builder().event("done").data("").build()));
-
     }
 
     /**
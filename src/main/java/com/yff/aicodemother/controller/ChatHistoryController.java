@@ -7,6 +7,7 @@ import com.yff.aicodemother.common.ResultUtils;
 import com.yff.aicodemother.common.login.UserHolder;
 import com.yff.aicodemother.exception.ErrorCode;
 import com.yff.aicodemother.exception.ThrowUtils;
+import com.yff.aicodemother.model.dto.chathistory.ChatHistoryAdminCursorQueryRequest;
 import com.yff.aicodemother.model.dto.chathistory.ChatHistoryAdminQueryRequest;
 import com.yff.aicodemother.model.dto.chathistory.ChatHistoryCursorQueryRequest;
 import com.yff.aicodemother.model.vo.ChatHistoryVo;
@@ -50,6 +51,21 @@ public class ChatHistoryController {
         return ResultUtils.success(chatHistoryVoPageByCursor);
     }
 
+    /**
+     * 获取一条消息的完整内容（列表中 messageLength 不为空的消息只返回了摘要）
+     *
+     * @param id 消息 ID
+     * @return 完整消息
+     */
+    @GetMapping("/message")
+    @Operation(summary = "获取一条消息的完整内容")
+    public BaseResponse<String> getFullMessage(@RequestParam Long id) {
+        ThrowUtils.throwIf(id == null || id <= 0, ErrorCode.PARAMS_ERROR, "消息ID不合法");
+
+        Long userId = UserHolder.getUserId();
+        return ResultUtils.success(chatHistoryService.getFullMessage(id, userId));
+    }
+
     // ==================== 管理员接口 ====================
 
     /**
@@ -70,4 +86,22 @@ public class ChatHistoryController {
         return ResultUtils.success(chatHistoryVoPage);
     }
 
+    /**
+     * 【管理员】游标查询所有对话历史（不统计总数，消息内容走全文索引检索）
+     *
+     * @param chatHistoryAdminCursorQueryRequest 查询条件
+     * @return 游标分页对话历史 VO 列表
+     */
+    @PostMapping("/admin/list/cursor")
+    @Operation(summary = "【管理员】游标查询所有对话历史")
+    @AuthCheck(mustRole = "admin")
+    public BaseResponse<CursorPageVo<ChatHistoryVo>> adminListChatHistoryByCursor(
+            @RequestBody ChatHistoryAdminCursorQueryRequest chatHistoryAdminCursorQueryRequest) {
+        ThrowUtils.throwIf(chatHistoryAdminCursorQueryRequest == null, ErrorCode.PARAMS_ERROR);
+
+        CursorPageVo<ChatHistoryVo> chatHistoryVoPage = chatHistoryService.adminListChatHistoryVoByCursor(
+                chatHistoryAdminCursorQueryRequest);
+        return ResultUtils.success(chatHistoryVoPage);
+    }
+
 }
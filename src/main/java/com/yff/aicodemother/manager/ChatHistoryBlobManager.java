@@ -0,0 +1,234 @@
+package com.yff.aicodemother.manager;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.ZipUtil;
+import com.yff.aicodemother.mapper.ChatHistoryBlobMapper;
+import com.yff.aicodemother.mapper.ChatHistoryMapper;
+import com.yff.aicodemother.model.entity.ChatHistory;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
+import com.yff.aicodemother.model.entity.ChatHistoryBlob;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.zip.Deflater;
+
+/**
+ * 对话历史大消息压缩存储
+ * 超过 threshold-chars 的消息（通常是包含生成代码的 AI 回复）写库时：
+ * - 完整消息用 zlib 压缩后存入 chat_history_blob
+ * - chat_history.message 只保存前 summary-chars 个字符的摘要，messageLength 记录完整长度
+ * 游标分页、管理员列表扫描的都是摘要，主表行变小，缓冲池能容纳更多行；
+ * 完整消息只在用户展开消息、加载对话记忆时按 ID 读取并解压
+ * 管理员按消息内容检索不能只匹配摘要（生成的代码通常在摘要之后），chat_history_blob 同时保存不压缩的原文（searchText），
+ * 检索时一起匹配；升级前写入、还没有原文的行在启动后按批补齐
+ * 指标：chat.history.blob.bytes{type=original|compressed}（压缩前后的字节数）
+ *
+ * @author yff
+ * @date 2026-10-18 21:42:06
+ */
+@Slf4j
+@Component
+public class ChatHistoryBlobManager {
+
+    /**
+     * 补齐检索原文时每批处理的行数
+     */
+    private static final int BACKFILL_BATCH_SIZE = 100;
+
+    @Autowired
+    private ChatHistoryMapper chatHistoryMapper;
+
+    @Autowired
+    private ChatHistoryBlobMapper chatHistoryBlobMapper;
+
+    /**
+     * 是否压缩存储大消息
+     */
+    @Value("${chat-history.compression.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 超过该字符数的消息压缩存储
+     */
+    @Value("${chat-history.compression.threshold-chars:8192}")
+    private int thresholdChars;
+
+    /**
+     * 主表中保留的摘要字符数
+     */
+    @Value("${chat-history.compression.summary-chars:512}")
+    private int summaryChars;
+
+    private final Counter originalBytes;
+
+    private final Counter compressedBytes;
+
+    public ChatHistoryBlobManager(MeterRegistry meterRegistry) {
+        this.originalBytes = bytesCounter(meterRegistry, "original");
+        this.compressedBytes = bytesCounter(meterRegistry, "compressed");
+    }
+
+
+    /**
+     * 批量写入对话历史，大消息压缩后写入 chat_history_blob、主表只写摘要
+     * 先写压缩消息再写主表：主表写入失败重试时压缩消息按 ID 覆盖，不会留下指向不存在数据的摘要
+     *
+     * @param histories 对话历史（ID 和创建时间需已设置，不会被修改）
+     */
+    public void saveBatch(List<ChatHistory> histories) {
+        List<ChatHistory> rows = new ArrayList<>(histories.size());
+        List<ChatHistoryBlob> blobs = new ArrayList<>();
+        for (ChatHistory history : histories) {
+            if (!shouldCompress(history)) {
+                rows.add(history);
+                continue;
+            }
+            byte[] raw = history.getMessage().getBytes(StandardCharsets.UTF_8);
+            byte[] compressed = ZipUtil.zlib(raw, Deflater.DEFAULT_COMPRESSION);
+            originalBytes.increment(raw.length);
+            compressedBytes.increment(compressed.length);
+            blobs.add(ChatHistoryBlob.builder()
+                    .chatHistoryId(history.getId())
+                    .content(compressed)
+                    .searchText(history.getMessage())
+                    .createTime(LocalDateTime.now())
+                    .build());
+            rows.add(summarize(history));
+        }
+        if (!blobs.isEmpty()) {
+            chatHistoryBlobMapper.upsertBatch(blobs);
+        }
+        chatHistoryMapper.upsertBatch(rows);
+    }
+
+
+    /**
+     * 按写库时的规则生成摘要（不需要压缩时返回原对象），用于热窗口等与数据库保持一致的副本
+     *
+     * @param history 对话历史
+     * @return 摘要副本，或原对象
+     */
+    public ChatHistory summarize(ChatHistory history) {
+        if (!shouldCompress(history)) {
+            return history;
+        }
+        String message = history.getMessage();
+        int end = summaryChars;
+        // 不在代理对中间截断
+        if (Character.isHighSurrogate(message.charAt(end - 1))) {
+            end--;
+        }
+        return ChatHistory.builder()
+                .id(history.getId())
+                .appId(history.getAppId())
+                .userId(history.getUserId())
+                .messageType(history.getMessageType())
+                .message(message.substring(0, end))
+                .messageLength(message.length())
+                .createTime(history.getCreateTime())
+                .updateTime(history.getUpdateTime())
+                .build();
+    }
+
+
+    /**
+     * 读取并解压完整消息
+     *
+     * @param chatHistoryId 对话历史ID
+     * @return 完整消息，不存在时返回 null
+     */
+    public String loadMessage(Long chatHistoryId) {
+        ChatHistoryBlob blob = chatHistoryBlobMapper.selectById(chatHistoryId);
+        return blob == null ? null : decompress(blob);
+    }
+
+
+    /**
+     * 把摘要替换为完整消息（一次查询读取所有需要的压缩消息）
+     *
+     * @param histories 对话历史（原地修改）
+     */
+    public void restoreMessages(List<ChatHistory> histories) {
+        List<Long> ids = histories.stream()
+                .filter(history -> history.getMessageLength() != null)
+                .map(ChatHistory::getId)
+                .toList();
+        if (CollUtil.isEmpty(ids)) {
+            return;
+        }
+        Map<Long, ChatHistoryBlob> blobs = chatHistoryBlobMapper.selectByIds(ids).stream()
+                .collect(Collectors.toMap(ChatHistoryBlob::getChatHistoryId, Function.identity()));
+        for (ChatHistory history : histories) {
+            ChatHistoryBlob blob = blobs.get(history.getId());
+            if (blob != null) {
+                history.setMessage(decompress(blob));
+                history.setMessageLength(null);
+            }
+        }
+    }
+
+
+    /**
+     * 启动后为升级前写入的压缩消息补齐检索原文
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillSearchText() {
+        int filled = 0;
+        try {
+            List<ChatHistoryBlob> blobs;
+            do {
+                blobs = chatHistoryBlobMapper.selectList(new QueryWrapper<ChatHistoryBlob>()
+                        .select("chatHistoryId", "content")
+                        .isNull("searchText")
+                        .last("limit " + BACKFILL_BATCH_SIZE));
+                for (ChatHistoryBlob blob : blobs) {
+                    chatHistoryBlobMapper.update(new UpdateWrapper<ChatHistoryBlob>()
+                            .set("searchText", decompress(blob))
+                            .eq("chatHistoryId", blob.getChatHistoryId()));
+                    filled++;
+                }
+            } while (blobs.size() == BACKFILL_BATCH_SIZE);
+        } catch (Exception e) {
+            log.warn("补齐对话历史检索原文失败，已补齐 {} 条：{}", filled, e.getMessage());
+            return;
+        }
+        if (filled > 0) {
+            log.info("已补齐 {} 条对话历史的检索原文", filled);
+        }
+    }
+
+
+    private boolean shouldCompress(ChatHistory history) {
+        return enabled && history.getMessage() != null && history.getMessage().length() > thresholdChars
+                && thresholdChars >= summaryChars;
+    }
+
+
+    private static String decompress(ChatHistoryBlob blob) {
+        return new String(ZipUtil.unZlib(blob.getContent()), StandardCharsets.UTF_8);
+    }
+
+
+    private static Counter bytesCounter(MeterRegistry meterRegistry, String type) {
+        return Counter.builder("chat.history.blob.bytes")
+                .description("压缩存储的对话消息字节数")
+                .baseUnit("bytes")
+                .tag("type", type)
+                .register(meterRegistry);
+    }
+
+}
@@ -0,0 +1,255 @@
+package com.yff.aicodemother.manager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.yff.aicodemother.model.entity.ChatHistory;
+import com.yff.aicodemother.model.vo.ChatHistoryVo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 对话历史热窗口缓存
+ * 每个应用缓存最近 window-size 条消息（按 createTime、id 倒序，与游标分页的顺序一致）和应用创建者，
+ * 前端频繁加载的前几页游标分页直接从窗口中取，不再每次查询应用做权限校验、再按游标查询对话历史：
+ * - 保存消息时追加到已缓存的窗口（不在缓存中的应用不处理，下次查询时从数据库加载）
+ * - 草稿检查点、草稿定稿时替换窗口中的草稿
+ * - 游标之后的消息在窗口内足够一页（或窗口已包含应用的全部消息）时命中，否则回源数据库
+ * - 删除应用的对话历史时移除窗口
+ * 指标：chat.history.page.cache{result=hit|miss}
+ *
+ * @author yff
+ * @date 2026-10-18 20:58:41
+ */
+@Component
+public class ChatHistoryHotWindowCache {
+
+    /**
+     * 每个应用缓存的最近消息数
+     */
+    @Value("${chat-history.hot-window.size:50}")
+    private int windowSize;
+
+    /**
+     * 热窗口缓存
+     * 缓存策略:
+     * - 最大容量:2000
+     * - 访问后10分钟过期
+     */
+    private final Cache<Long, HotWindow> windows = Caffeine.newBuilder()
+            .maximumSize(2000)
+            .expireAfterAccess(Duration.ofMinutes(10))
+            .build();
+
+    private final Counter hitCounter;
+
+    private final Counter missCounter;
+
+    public ChatHistoryHotWindowCache(MeterRegistry meterRegistry) {
+        this.hitCounter = pageCounter(meterRegistry, "hit");
+        this.missCounter = pageCounter(meterRegistry, "miss");
+    }
+
+
+    /**
+     * 从应用的热窗口中取一页，窗口不在缓存中时先加载
+     *
+     * @param appId    应用ID
+     * @param loader   加载窗口：参数为需要加载的消息数（window-size + 1，多出的一条用于判断窗口是否包含全部消息）
+     * @param lastTime 游标时间，为空表示第一页
+     * @param lastId   游标ID
+     * @param limit    需要的条数
+     * @return 应用创建者和消息副本，窗口中不够一页时消息为 null（需要回源数据库）
+     */
+    public WindowPage page(Long appId, Function<Integer, HotWindow> loader, LocalDateTime lastTime, Long lastId,
+                           int limit) {
+        boolean[] loaded = {false};
+        HotWindow window = windows.get(appId, key -> {
+            loaded[0] = true;
+            return loader.apply(windowSize + 1);
+        });
+        List<ChatHistoryVo> records = window.page(lastTime, lastId, limit);
+        // 刚从数据库加载的窗口不算命中
+        (records != null && !loaded[0] ? hitCounter : missCounter).increment();
+        return new WindowPage(window.ownerId, records);
+    }
+
+
+    /**
+     * 新消息追加到已缓存的窗口
+     *
+     * @param chatHistory 新消息
+     */
+    public void append(ChatHistory chatHistory) {
+        windows.asMap().computeIfPresent(chatHistory.getAppId(), (appId, window) -> {
+            window.prepend(toVo(chatHistory), windowSize);
+            return window;
+        });
+    }
+
+
+    /**
+     * 替换窗口中的同一条消息（草稿检查点、草稿定稿），保留窗口中的创建时间
+     *
+     * @param chatHistory 新内容
+     * @return 窗口不在缓存中或已替换时返回 true，窗口中没有该消息时返回 false
+     */
+    public boolean replace(ChatHistory chatHistory) {
+        boolean[] replaced = {true};
+        windows.asMap().computeIfPresent(chatHistory.getAppId(), (appId, window) -> {
+            replaced[0] = window.replace(toVo(chatHistory));
+            return window;
+        });
+        return replaced[0];
+    }
+
+
+    /**
+     * 移除应用的窗口
+     *
+     * @param appId 应用ID
+     */
+    public void invalidate(Long appId) {
+        windows.invalidate(appId);
+    }
+
+
+    private static ChatHistoryVo toVo(ChatHistory chatHistory) {
+        ChatHistoryVo vo = new ChatHistoryVo();
+        vo.setId(chatHistory.getId());
+        vo.setMessage(chatHistory.getMessage());
+        vo.setMessageType(chatHistory.getMessageType());
+        vo.setAppId(chatHistory.getAppId());
+        vo.setUserId(chatHistory.getUserId());
+        vo.setCreateTime(chatHistory.getCreateTime());
+        vo.setUpdateTime(chatHistory.getUpdateTime());
+        vo.setMessageLength(chatHistory.getMessageLength());
+        return vo;
+    }
+
+
+    private static ChatHistoryVo copy(ChatHistoryVo source) {
+        ChatHistoryVo vo = new ChatHistoryVo();
+        vo.setId(source.getId());
+        vo.setMessage(source.getMessage());
+        vo.setMessageType(source.getMessageType());
+        vo.setAppId(source.getAppId());
+        vo.setUserId(source.getUserId());
+        vo.setCreateTime(source.getCreateTime());
+        vo.setUpdateTime(source.getUpdateTime());
+        vo.setMessageLength(source.getMessageLength());
+        return vo;
+    }
+
+
+    private static Counter pageCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("chat.history.page.cache")
+                .description("对话历史分页查询命中热窗口的次数")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+
+    /**
+     * 热窗口中的一页
+     *
+     * @param ownerId 应用创建者ID
+     * @param records 消息，窗口中不够一页时为 null
+     */
+    public record WindowPage(Long ownerId, List<ChatHistoryVo> records) {
+    }
+
+
+    /**
+     * 单个应用的热窗口
+     */
+    public static class HotWindow {
+
+        private final Long ownerId;
+
+        /**
+         * 最近的消息，按 createTime、id 倒序
+         */
+        private final List<ChatHistoryVo> records;
+
+        /**
+         * 窗口是否包含应用的全部消息
+         */
+        private boolean complete;
+
+        /**
+         * @param ownerId       应用创建者ID
+         * @param newestRecords 最近的消息（按 createTime、id 倒序，最多 window-size + 1 条）
+         * @param windowSize    窗口大小
+         */
+        public HotWindow(Long ownerId, List<ChatHistoryVo> newestRecords, int windowSize) {
+            this.ownerId = ownerId;
+            this.complete = newestRecords.size() <= windowSize;
+            this.records = new ArrayList<>(newestRecords.subList(0, Math.min(windowSize, newestRecords.size())));
+        }
+
+        private synchronized void prepend(ChatHistoryVo vo, int windowSize) {
+            // 加载窗口时消息可能已经写入数据库并被加载
+            if (records.stream().anyMatch(record -> record.getId().equals(vo.getId()))) {
+                return;
+            }
+            // 并发保存时后分配ID的消息可能先追加，按 createTime、id 找到位置插入（通常就是第一个）
+            int index = 0;
+            while (index < records.size()) {
+                ChatHistoryVo record = records.get(index);
+                if (!isBefore(vo, record.getCreateTime(), record.getId())) {
+                    break;
+                }
+                index++;
+            }
+            records.add(index, vo);
+            if (records.size() > windowSize) {
+                records.removeLast();
+                complete = false;
+            }
+        }
+
+        private synchronized boolean replace(ChatHistoryVo vo) {
+            for (int i = 0; i < records.size(); i++) {
+                ChatHistoryVo record = records.get(i);
+                if (record.getId().equals(vo.getId())) {
+                    // 按 ID upsert 保留首次写入的创建时间，窗口中的顺序不变
+                    vo.setCreateTime(record.getCreateTime());
+                    records.set(i, vo);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private synchronized List<ChatHistoryVo> page(LocalDateTime lastTime, Long lastId, int limit) {
+            List<ChatHistoryVo> result = new ArrayList<>(limit);
+            for (ChatHistoryVo record : records) {
+                if (lastTime != null && lastId != null && !isBefore(record, lastTime, lastId)) {
+                    continue;
+                }
+                result.add(copy(record));
+                if (result.size() == limit) {
+                    return result;
+                }
+            }
+            return complete ? result : null;
+        }
+
+        /**
+         * 与游标查询条件一致：createTime 早于游标，或 createTime 相同且 id 更小
+         */
+        private static boolean isBefore(ChatHistoryVo record, LocalDateTime lastTime, Long lastId) {
+            int compare = record.getCreateTime().compareTo(lastTime);
+            return compare < 0 || (compare == 0 && record.getId() < lastId);
+        }
+    }
+
+}
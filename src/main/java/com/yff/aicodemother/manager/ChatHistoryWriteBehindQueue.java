@@ -0,0 +1,584 @@
+package com.yff.aicodemother.manager;
+
+import cn.hutool.core.collection.ListUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.yff.aicodemother.constant.AppConstant;
+import com.yff.aicodemother.model.entity.ChatHistory;
+import com.yff.aicodemother.model.enums.MessageTypeEnum;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * 对话历史异步批量写入队列（write-behind）
+ * <p>
+ * 保存对话消息时不再同步写 MySQL：消息先追加到本地日志（每行一条 JSON，默认每次追加后 fsync），再放入内存队列，
+ * 由后台定时任务按 batch-size 拼成多行 INSERT 批量写库（大消息压缩存储，见 {@link ChatHistoryBlobManager}），
+ * 流结束时的保存只有一次本地追加写。
+ * <p>
+ * 日志按段滚动：每次写库前封存当前段，之后的消息写入新段；封存段中的消息全部写库成功后删除。
+ * 批量写入失败时逐条重试：有消息写入成功说明数据库可用，仍然失败的消息（例如超长、非法字符）移入死信段
+ * （dead-letter-*.log，不回放，需人工处理）并告警，不会阻塞之后的消息；全部失败视为数据库暂时不可用，
+ * 消息放回队首、封存段保留，下次重试。进程崩溃后启动时按顺序回放所有残留段。
+ * 消息 ID 在入队时预先分配（雪花ID），批量写入按 ID upsert，回放已写入过的消息不会重复。
+ * AI 消息草稿检查点（{@link #enqueueDraft}）不写日志，同一草稿未写库的检查点合并为最新的一个。
+ * 读取前只写入指定应用（或指定消息）等待写库的消息，正在进行的批量写库最多等待 flush-wait-ms。
+ * <p>
+ * 指标：
+ * - chat.history.write.pending：等待写库的消息数
+ * - chat.history.write.flush：每次批量写库耗时
+ * - chat.history.write.dead_letter：移入死信段的消息数（大于 0 时应告警）
+ *
+ * @author yff
+ * @date 2026-10-18 20:36:14
+ */
+@Slf4j
+@Component
+public class ChatHistoryWriteBehindQueue {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final String DEAD_LETTER_PREFIX = "dead-letter-";
+
+    /**
+     * 逐条重试时连续失败这么多条且没有一条成功，视为数据库不可用，不再继续重试剩下的消息
+     */
+    private static final int MAX_CONSECUTIVE_ROW_FAILURES = 3;
+
+    @Autowired
+    private ChatHistoryBlobManager chatHistoryBlobManager;
+
+    /**
+     * 每条多行 INSERT 的最大行数
+     */
+    @Value("${chat-history.write-behind.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * 每次追加日志后是否 fsync（关闭后断电可能丢失最近的消息，进程崩溃不受影响）
+     */
+    @Value("${chat-history.write-behind.fsync:true}")
+    private boolean fsync;
+
+    /**
+     * 读取前写入指定应用的消息时，等待正在进行的批量写库的最长时间（毫秒）
+     */
+    @Value("${chat-history.write-behind.flush-wait-ms:2000}")
+    private long flushWaitMillis;
+
+    Path journalDir = Paths.get(AppConstant.CHAT_HISTORY_JOURNAL_DIR);
+
+    /**
+     * 保护日志和队列，保证日志中的顺序与入队顺序一致
+     */
+    private final Object lock = new Object();
+
+    /**
+     * 同一时间只有一次写库
+     */
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private final ArrayDeque<ChatHistory> pending = new ArrayDeque<>();
+
+    /**
+     * 正在写库的消息（已从队列取出、尚未写入完成），读取前据此判断是否需要等待
+     */
+    private List<ChatHistory> inFlight = List.of();
+
+    /**
+     * 已封存、其中的消息尚未全部写库的日志段
+     */
+    private final List<Path> sealedSegments = new ArrayList<>();
+
+    private Path activeSegment;
+
+    private FileChannel activeChannel;
+
+    private long nextSegmentSeq;
+
+    /**
+     * 消息写库成功后的回调
+     */
+    private volatile Consumer<List<ChatHistory>> flushListener = histories -> {
+    };
+
+    private final Timer flushTimer;
+
+    private final Counter deadLetterCounter;
+
+    public ChatHistoryWriteBehindQueue(MeterRegistry meterRegistry) {
+        Gauge.builder("chat.history.write.pending", this, ChatHistoryWriteBehindQueue::pendingCount)
+                .description("等待写库的对话消息数")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("chat.history.write.flush")
+                .description("对话历史批量写库耗时")
+                .register(meterRegistry);
+        this.deadLetterCounter = Counter.builder("chat.history.write.dead_letter")
+                .description("多次写库失败后移入死信段的对话消息数")
+                .register(meterRegistry);
+    }
+
+
+    /**
+     * 启动时回放上次未写库的日志段
+     */
+    @PostConstruct
+    public void replay() throws IOException {
+        Files.createDirectories(journalDir);
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(journalDir)) {
+            segments = files.filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .sorted()
+                    .toList();
+        }
+        int replayed = 0;
+        for (Path segment : segments) {
+            for (String line : Files.readAllLines(segment, StandardCharsets.UTF_8)) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    pending.add(fromJournalLine(line));
+                    replayed++;
+                } catch (Exception e) {
+                    // 崩溃时只写了一半的最后一行
+                    log.warn("跳过无法解析的对话历史日志行，文件: {}", segment.getFileName());
+                }
+            }
+            sealedSegments.add(segment);
+            nextSegmentSeq = Math.max(nextSegmentSeq, segmentSeq(segment) + 1);
+        }
+        if (replayed > 0) {
+            log.info("回放对话历史写入日志，段数: {}，消息数: {}", segments.size(), replayed);
+        }
+    }
+
+
+    /**
+     * 消息入队：追加到本地日志后等待批量写库
+     * 日志写入失败时退化为同步写库
+     *
+     * @param chatHistory 对话消息（ID 和创建时间需已设置）
+     */
+    public void enqueue(ChatHistory chatHistory) {
+        synchronized (lock) {
+            // 草稿定稿：还没写库的草稿检查点不用再写
+            coalesceDraft(chatHistory);
+            try {
+                append(toJournalLine(chatHistory));
+                pending.add(chatHistory);
+                return;
+            } catch (IOException e) {
+                log.error("追加对话历史写入日志失败，改为同步写库，appId={}", chatHistory.getAppId(), e);
+                closeActiveQuietly();
+            }
+        }
+        chatHistoryBlobManager.saveBatch(List.of(chatHistory));
+        flushListener.accept(List.of(chatHistory));
+    }
+
+
+    /**
+     * AI 消息草稿检查点入队：不写本地日志，由后台随其他消息一起批量写库，流处理线程不等待 MySQL
+     * 同一草稿还没写库的检查点只保留最新的一个（检查点是到目前为止的完整内容），
+     * 崩溃时最多丢失最近一次检查点，之前写库的检查点仍然保留
+     *
+     * @param draft 草稿（ID 和创建时间需已设置，创建时间可能被替换为同一草稿更早检查点的创建时间）
+     */
+    public void enqueueDraft(ChatHistory draft) {
+        synchronized (lock) {
+            coalesceDraft(draft);
+            pending.add(draft);
+        }
+    }
+
+
+    /**
+     * 移除队列中同一草稿还没写库的检查点，沿用其创建时间（与按 ID upsert 时保留首次写入的创建时间一致）
+     */
+    private void coalesceDraft(ChatHistory chatHistory) {
+        Iterator<ChatHistory> iterator = pending.iterator();
+        while (iterator.hasNext()) {
+            ChatHistory queued = iterator.next();
+            if (queued.getId().equals(chatHistory.getId())
+                    && MessageTypeEnum.AI_DRAFT.getValue().equals(queued.getMessageType())) {
+                chatHistory.setCreateTime(queued.getCreateTime());
+                iterator.remove();
+            }
+        }
+    }
+
+
+    /**
+     * 批量写库（定时执行）
+     */
+    @Scheduled(fixedDelayString = "${chat-history.write-behind.flush-interval-ms:200}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            List<ChatHistory> batch;
+            List<Path> segments;
+            synchronized (lock) {
+                if (pending.isEmpty() && activeSegment == null && sealedSegments.isEmpty()) {
+                    return;
+                }
+                sealActive();
+                batch = new ArrayList<>(pending);
+                pending.clear();
+                inFlight = batch;
+                segments = new ArrayList<>(sealedSegments);
+            }
+            if (!writeAndRequeueFailures(batch)) {
+                return;
+            }
+            // 段中的消息已全部写库（或在之前只写入某个应用的消息时写入、或已移入死信段）
+            synchronized (lock) {
+                sealedSegments.removeAll(segments);
+            }
+            for (Path segment : segments) {
+                try {
+                    Files.deleteIfExists(segment);
+                } catch (IOException e) {
+                    // 残留的段在下次启动时回放，按 ID upsert 不会重复
+                    log.warn("删除对话历史写入日志失败: {}", segment, e);
+                }
+            }
+        } finally {
+            clearInFlight();
+            flushLock.unlock();
+        }
+    }
+
+
+    /**
+     * 只写入指定应用等待写库的消息（读取该应用的对话历史前调用，保证读到刚保存的消息）
+     * 正在进行批量写库时最多等待 flush-wait-ms，超时后直接返回（读到的数据可能缺少最近的消息）
+     *
+     * @param appId 应用ID
+     */
+    public void flush(Long appId) {
+        flushMatching(chatHistory -> appId.equals(chatHistory.getAppId()), "appId=" + appId);
+    }
+
+
+    /**
+     * 只写入指定的消息（按 ID 读取消息前调用）
+     *
+     * @param chatHistoryId 对话历史ID
+     */
+    public void flushMessage(Long chatHistoryId) {
+        flushMatching(chatHistory -> chatHistoryId.equals(chatHistory.getId()), "id=" + chatHistoryId);
+    }
+
+
+    private void flushMatching(Predicate<ChatHistory> filter, String description) {
+        if (!hasPending(filter)) {
+            return;
+        }
+        try {
+            if (!flushLock.tryLock(flushWaitMillis, TimeUnit.MILLISECONDS)) {
+                log.warn("等待对话历史写库超时，{}", description);
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            List<ChatHistory> rows = new ArrayList<>();
+            synchronized (lock) {
+                Iterator<ChatHistory> iterator = pending.iterator();
+                while (iterator.hasNext()) {
+                    ChatHistory chatHistory = iterator.next();
+                    if (filter.test(chatHistory)) {
+                        rows.add(chatHistory);
+                        iterator.remove();
+                    }
+                }
+                inFlight = rows;
+            }
+            // 日志段中的其他消息尚未写库，段保留到下次批量写库后删除
+            if (!rows.isEmpty()) {
+                writeAndRequeueFailures(rows);
+            }
+        } finally {
+            clearInFlight();
+            flushLock.unlock();
+        }
+    }
+
+
+    /**
+     * 写库并通知回调，需要重试的消息按原顺序放回队首
+     *
+     * @param batch 消息
+     * @return 是否全部处理完成（写入成功或移入死信段）
+     */
+    private boolean writeAndRequeueFailures(List<ChatHistory> batch) {
+        long start = System.nanoTime();
+        WriteResult result = write(batch);
+        flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (!result.retry().isEmpty()) {
+            synchronized (lock) {
+                for (int i = result.retry().size() - 1; i >= 0; i--) {
+                    pending.addFirst(result.retry().get(i));
+                }
+            }
+            log.error("对话历史写库失败，{} 条消息将在下次重试", result.retry().size());
+        }
+        if (!result.written().isEmpty()) {
+            try {
+                flushListener.accept(result.written());
+            } catch (Exception e) {
+                log.warn("对话历史写库回调失败: {}", e.getMessage());
+            }
+        }
+        return result.retry().isEmpty();
+    }
+
+
+    /**
+     * 按 batch-size 批量写库，批量写入失败时逐条重试：
+     * - 有消息写入成功时，逐条仍然失败的消息移入死信段
+     * - 没有一条成功时视为数据库不可用，全部重试（逐条失败的消息排到最后，下次先尝试其他消息）
+     */
+    private WriteResult write(List<ChatHistory> batch) {
+        List<ChatHistory> written = new ArrayList<>(batch.size());
+        List<ChatHistory> failed = new ArrayList<>();
+        List<ChatHistory> untried = new ArrayList<>();
+        Exception lastError = null;
+        int consecutiveFailures = 0;
+        for (List<ChatHistory> rows : ListUtil.partition(batch, batchSize)) {
+            if (consecutiveFailures >= MAX_CONSECUTIVE_ROW_FAILURES) {
+                untried.addAll(rows);
+                continue;
+            }
+            try {
+                chatHistoryBlobManager.saveBatch(rows);
+                written.addAll(rows);
+                continue;
+            } catch (Exception e) {
+                lastError = e;
+                log.warn("对话历史批量写库失败，逐条重试 {} 条消息：{}", rows.size(), e.getMessage());
+            }
+            for (ChatHistory row : rows) {
+                if (consecutiveFailures >= MAX_CONSECUTIVE_ROW_FAILURES) {
+                    untried.add(row);
+                    continue;
+                }
+                try {
+                    chatHistoryBlobManager.saveBatch(List.of(row));
+                    written.add(row);
+                    consecutiveFailures = 0;
+                } catch (Exception e) {
+                    lastError = e;
+                    failed.add(row);
+                    if (written.isEmpty()) {
+                        consecutiveFailures++;
+                    }
+                }
+            }
+        }
+        List<ChatHistory> retry = new ArrayList<>(untried);
+        if (!failed.isEmpty() && (written.isEmpty() || !deadLetter(failed, lastError))) {
+            retry.addAll(failed);
+        }
+        return new WriteResult(written, retry);
+    }
+
+
+    /**
+     * 写入死信段并告警
+     *
+     * @return 是否写入成功
+     */
+    private boolean deadLetter(List<ChatHistory> rows, Exception error) {
+        Path file = journalDir.resolve(String.format("%s%d-%s%s", DEAD_LETTER_PREFIX, System.currentTimeMillis(),
+                IdUtil.fastSimpleUUID(), SEGMENT_SUFFIX));
+        try {
+            Files.write(file, rows.stream().map(ChatHistoryWriteBehindQueue::toJournalLine).toList(),
+                    StandardCharsets.UTF_8, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            log.error("写入对话历史死信段失败，{} 条消息将在下次重试", rows.size(), e);
+            return false;
+        }
+        deadLetterCounter.increment(rows.size());
+        log.error("对话历史消息逐条写库仍然失败，已移入死信段 {}，消息ID: {}", file.getFileName(),
+                rows.stream().map(ChatHistory::getId).toList(), error);
+        return true;
+    }
+
+
+    /**
+     * 是否有指定应用等待写库（或正在写库）的消息
+     *
+     * @param appId 应用ID
+     * @return 是否有待写入的消息
+     */
+    public boolean hasPending(Long appId) {
+        return hasPending(chatHistory -> appId.equals(chatHistory.getAppId()));
+    }
+
+
+    private boolean hasPending(Predicate<ChatHistory> filter) {
+        synchronized (lock) {
+            return pending.stream().anyMatch(filter) || inFlight.stream().anyMatch(filter);
+        }
+    }
+
+
+    private void clearInFlight() {
+        synchronized (lock) {
+            inFlight = List.of();
+        }
+    }
+
+
+    /**
+     * 设置消息写库成功后的回调（按写入顺序传入本批消息）
+     *
+     * @param flushListener 回调
+     */
+    public void setFlushListener(Consumer<List<ChatHistory>> flushListener) {
+        this.flushListener = flushListener;
+    }
+
+
+    @PreDestroy
+    public void destroy() {
+        flush();
+        synchronized (lock) {
+            closeActiveQuietly();
+        }
+    }
+
+
+    private int pendingCount() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+
+    private void append(String line) throws IOException {
+        if (activeChannel == null) {
+            activeSegment = journalDir.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, nextSegmentSeq++,
+                    SEGMENT_SUFFIX));
+            activeChannel = FileChannel.open(activeSegment, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            activeChannel.write(buffer);
+        }
+        if (fsync) {
+            activeChannel.force(false);
+        }
+    }
+
+
+    /**
+     * 封存当前段，之后的消息写入新段
+     */
+    private void sealActive() {
+        if (activeSegment != null) {
+            sealedSegments.add(activeSegment);
+        }
+        closeActiveQuietly();
+    }
+
+
+    private void closeActiveQuietly() {
+        if (activeChannel != null) {
+            try {
+                activeChannel.close();
+            } catch (IOException e) {
+                log.warn("关闭对话历史写入日志失败: {}", activeSegment, e);
+            }
+        }
+        activeChannel = null;
+        activeSegment = null;
+    }
+
+
+    private static long segmentSeq(Path segment) {
+        String name = segment.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return 0;
+        }
+    }
+
+
+    private static String toJournalLine(ChatHistory chatHistory) {
+        JSONObject json = new JSONObject();
+        json.set("id", chatHistory.getId());
+        json.set("appId", chatHistory.getAppId());
+        json.set("userId", chatHistory.getUserId());
+        json.set("messageType", chatHistory.getMessageType());
+        json.set("message", chatHistory.getMessage());
+        json.set("createTime", chatHistory.getCreateTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        return json.toString();
+    }
+
+
+    private static ChatHistory fromJournalLine(String line) {
+        JSONObject json = JSONUtil.parseObj(line);
+        LocalDateTime createTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(json.getLong("createTime")),
+                ZoneId.systemDefault());
+        return ChatHistory.builder()
+                .id(json.getLong("id"))
+                .appId(json.getLong("appId"))
+                .userId(json.getLong("userId"))
+                .messageType(json.getStr("messageType"))
+                .message(json.getStr("message"))
+                .createTime(createTime)
+                .updateTime(createTime)
+                .build();
+    }
+
+
+    /**
+     * 写库结果
+     *
+     * @param written 写入成功的消息
+     * @param retry   需要放回队首重试的消息
+     */
+    private record WriteResult(List<ChatHistory> written, List<ChatHistory> retry) {
+    }
+
+}
@@ -0,0 +1,223 @@
+package com.yff.aicodemother.manager;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.yff.aicodemother.constant.AppConstant;
+import com.yff.aicodemother.exception.BusinessException;
+import com.yff.aicodemother.exception.ErrorCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ *
+ * 文件快照管理器（内容寻址）
+ * AI 写入的每个文件内容按 SHA-256 存储一份（相同内容只存一次），对话历史和对话记忆中只保留"路径 + 哈希"引用：
+ * [工具调用] 写入文件：src/App.vue（快照：<sha256>）
+ * 需要完整内容时（例如前端展示对话历史）再按哈希展开为原来的代码块格式。
+ * 快照按哈希前两位分目录存放在 {@link AppConstant#FILE_SNAPSHOT_ROOT_DIR} 下，先写临时文件再原子移动，并发写入同一内容是安全的。
+ * 快照写入失败时消息中保留完整代码块，不会留下指向不存在快照的引用。
+ * 快照是对话历史中这些代码的唯一副本，不按时间清理；快照目录不在数据库备份范围内，需要与数据库一起备份，
+ * 快照丢失时，展示历史消息时保留引用
+ *
+ * @author yff
+ * @date 2026-10-18 18:25:08
+ */
+@Slf4j
+@Component
+public class FileSnapshotManager {
+
+    /**
+     * 文件引用：[工具调用] 写入文件：路径（快照：哈希）
+     */
+    private static final Pattern REFERENCE_PATTERN =
+            Pattern.compile("\\[工具调用] 写入文件：(.+?)（快照：([0-9a-f]{64})）\n");
+
+    /**
+     * 完整代码块的开头：[工具调用] 写入文件：路径 + 开始围栏（旧的对话历史格式），结束围栏由 {@link #findClosingFence} 查找
+     */
+    private static final Pattern CODE_BLOCK_HEADER_PATTERN = Pattern.compile("\\[工具调用] 写入文件：([^\n]+)\n```[^\n]*\n");
+
+    private static final String FENCE = "```";
+
+    Path rootDir = Paths.get(AppConstant.FILE_SNAPSHOT_ROOT_DIR);
+
+
+    /**
+     * 保存文件内容快照
+     *
+     * @param content 文件内容
+     * @return 内容哈希
+     * @throws BusinessException 写入失败
+     */
+    public String save(String content) {
+        String hash = DigestUtil.sha256Hex(content);
+        Path path = snapshotPath(hash);
+        if (Files.exists(path)) {
+            return hash;
+        }
+        try {
+            Files.createDirectories(path.getParent());
+            Path tempFile = Files.createTempFile(path.getParent(), hash, ".tmp");
+            Files.writeString(tempFile, content, StandardCharsets.UTF_8);
+            try {
+                Files.move(tempFile, path, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                Files.deleteIfExists(tempFile);
+            }
+        } catch (IOException e) {
+            log.error("保存文件快照失败，hash: {}", hash, e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "保存文件快照失败");
+        }
+        return hash;
+    }
+
+
+    /**
+     * 读取文件内容快照
+     *
+     * @param hash 内容哈希
+     * @return 文件内容，快照不存在时返回 null
+     */
+    public String load(String hash) {
+        Path path = snapshotPath(hash);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try {
+            return Files.readString(path, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            log.error("读取文件快照失败，hash: {}", hash, e);
+            return null;
+        }
+    }
+
+
+    /**
+     * 保存文件内容并返回引用
+     *
+     * @param relativePath 文件相对路径
+     * @param content      文件内容
+     * @return 文件引用，快照写入失败时返回完整代码块
+     */
+    public String toReference(String relativePath, String content) {
+        try {
+            return String.format("[工具调用] 写入文件：%s（快照：%s）\n", relativePath, save(content));
+        } catch (BusinessException e) {
+            return toCodeBlock(relativePath, content);
+        }
+    }
+
+
+    /**
+     * 把消息中的完整代码块替换为文件引用（兼容旧格式的对话历史）
+     *
+     * @param message 消息
+     * @return 替换后的消息
+     */
+    public String compact(String message) {
+        if (message == null || !message.contains("[工具调用] 写入文件：")) {
+            return message;
+        }
+        Matcher matcher = CODE_BLOCK_HEADER_PATTERN.matcher(message);
+        StringBuilder sb = new StringBuilder(message.length());
+        int tail = 0;
+        int from = 0;
+        while (matcher.find(from)) {
+            int contentStart = matcher.end();
+            int closing = findClosingFence(message, contentStart);
+            if (closing < 0) {
+                break;
+            }
+            String content = closing > contentStart ? message.substring(contentStart, closing - 1) : "";
+            sb.append(message, tail, matcher.start()).append(toReference(matcher.group(1), content));
+            tail = closing + FENCE.length() + 1;
+            from = tail;
+        }
+        sb.append(message, tail, message.length());
+        return sb.toString();
+    }
+
+
+    /**
+     * 查找代码块的结束围栏（单独一行的 ```，之后是空行），跳过文件内容中成对出现的嵌套围栏（例如 Markdown 文件中的代码块）
+     *
+     * @param message      消息
+     * @param contentStart 代码块内容的开始位置
+     * @return 结束围栏所在行的开始位置，找不到时返回 -1
+     */
+    static int findClosingFence(String message, int contentStart) {
+        int depth = 0;
+        int lineStart = contentStart;
+        while (lineStart < message.length()) {
+            int lineEnd = message.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                return -1;
+            }
+            if (message.startsWith(FENCE, lineStart)) {
+                boolean bare = lineEnd - lineStart == FENCE.length();
+                boolean followedByBlankLine = lineEnd + 1 == message.length() || message.charAt(lineEnd + 1) == '\n';
+                if (!bare) {
+                    // 带语言标记的围栏只能是嵌套代码块的开始
+                    depth++;
+                } else if (depth > 0) {
+                    depth--;
+                } else if (followedByBlankLine) {
+                    return lineStart;
+                } else {
+                    depth++;
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        return -1;
+    }
+
+
+    /**
+     * 把消息中的文件引用展开为完整代码块，快照不存在时保留引用
+     *
+     * @param message 消息
+     * @return 展开后的消息
+     */
+    public String expand(String message) {
+        if (message == null || !message.contains("（快照：")) {
+            return message;
+        }
+        Matcher matcher = REFERENCE_PATTERN.matcher(message);
+        StringBuilder sb = new StringBuilder(message.length());
+        while (matcher.find()) {
+            String relativePath = matcher.group(1);
+            String content = load(matcher.group(2));
+            String replacement = content == null ? matcher.group() : toCodeBlock(relativePath, content);
+            matcher.appendReplacement(sb, Matcher.quoteReplacement(replacement));
+        }
+        matcher.appendTail(sb);
+        return sb.toString();
+    }
+
+
+    private static String toCodeBlock(String relativePath, String content) {
+        return String.format("""
+                [工具调用] 写入文件：%s
+                ```%s
+                %s
+                ```
+                """, relativePath, FileUtil.getSuffix(relativePath), content);
+    }
+
+
+    private Path snapshotPath(String hash) {
+        return rootDir.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+}
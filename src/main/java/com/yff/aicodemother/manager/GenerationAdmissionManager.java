@@ -0,0 +1,187 @@
+package com.yff.aicodemother.manager;
+
+import com.yff.aicodemother.exception.BusinessException;
+import com.yff.aicodemother.exception.ErrorCode;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * 生成任务准入控制器
+ * <p>
+ * 限制同时调用大模型的生成任务数：全局不超过 max-concurrent，每个用户不超过 max-per-user
+ * （每个应用同时只有一个任务，由 {@link GenerationStreamManager} 保证）。
+ * 超出限制的任务进入等待队列，按到达顺序放行；队首任务所属用户已达上限时跳过它放行后面其他用户的任务，
+ * 单个用户排再多任务也不会挡住别人。排队位置变化时回调通知，由生成流推送给前端。
+ * 队列长度超过 max-queue-size 时直接拒绝，避免排队时间无限增长。
+ * <p>
+ * 指标：
+ * - ai.generation.running：正在运行的任务数
+ * - ai.generation.queued：排队中的任务数
+ * - ai.generation.queue.wait：任务排队等待时间
+ *
+ * @author yff
+ * @date 2026-10-18 16:02:37
+ */
+@Slf4j
+@Component
+public class GenerationAdmissionManager {
+
+    @Value("${generation.admission.max-concurrent:16}")
+    private int maxConcurrent;
+
+    @Value("${generation.admission.max-per-user:2}")
+    private int maxPerUser;
+
+    @Value("${generation.admission.max-queue-size:200}")
+    private int maxQueueSize;
+
+    /**
+     * 等待中的任务（按到达顺序）
+     */
+    private final LinkedList<AdmissionTicket> waiting = new LinkedList<>();
+
+    /**
+     * userId -> 该用户正在运行的任务数
+     */
+    private final Map<Long, Integer> runningPerUser = new HashMap<>();
+
+    private int running;
+
+    private final Timer queueWaitTimer;
+
+    public GenerationAdmissionManager(MeterRegistry meterRegistry) {
+        Gauge.builder("ai.generation.running", this, manager -> manager.running)
+                .description("正在运行的生成任务数")
+                .register(meterRegistry);
+        Gauge.builder("ai.generation.queued", waiting, List::size)
+                .description("排队中的生成任务数")
+                .register(meterRegistry);
+        this.queueWaitTimer = Timer.builder("ai.generation.queue.wait")
+                .description("生成任务排队等待时间")
+                .register(meterRegistry);
+    }
+
+
+    /**
+     * 申请运行一个生成任务
+     * 有空闲名额时在当前线程立即回调 onAdmitted，否则进入队列，等到名额后在释放名额的线程回调
+     *
+     * @param userId     用户ID
+     * @param onQueued   排队位置（从 1 开始）变化时的回调
+     * @param onAdmitted 获得运行名额时的回调，任务结束后必须调用 {@link #release(AdmissionTicket)}
+     * @return 准入凭证
+     */
+    public AdmissionTicket acquire(Long userId, IntConsumer onQueued, Consumer<AdmissionTicket> onAdmitted) {
+        AdmissionTicket ticket = new AdmissionTicket(userId, onQueued, onAdmitted);
+        List<Runnable> callbacks;
+        synchronized (this) {
+            if (waiting.size() >= maxQueueSize) {
+                throw new BusinessException(ErrorCode.RATE_LIMIT_ERROR, "当前排队人数过多，请稍后再试");
+            }
+            waiting.add(ticket);
+            callbacks = dispatch();
+            if (ticket.state == TicketState.WAITING) {
+                log.info("生成任务进入排队，userId: {}, 排队位置: {}, 运行中: {}", userId, ticket.position, running);
+            }
+        }
+        callbacks.forEach(Runnable::run);
+        return ticket;
+    }
+
+
+    /**
+     * 归还名额（任务结束）或退出队列（任务放弃），可重复调用
+     *
+     * @param ticket 准入凭证
+     */
+    public void release(AdmissionTicket ticket) {
+        List<Runnable> callbacks;
+        synchronized (this) {
+            if (ticket.state == TicketState.WAITING) {
+                waiting.remove(ticket);
+            } else if (ticket.state == TicketState.RUNNING) {
+                running--;
+                runningPerUser.computeIfPresent(ticket.userId, (key, count) -> count <= 1 ? null : count - 1);
+            }
+            ticket.state = TicketState.RELEASED;
+            callbacks = dispatch();
+        }
+        callbacks.forEach(Runnable::run);
+    }
+
+
+    /**
+     * 按到达顺序放行可以运行的任务，并计算其余任务的新排队位置
+     * 调用方持有锁，返回的回调在锁外执行
+     */
+    private List<Runnable> dispatch() {
+        List<Runnable> callbacks = new ArrayList<>();
+        int position = 0;
+        Iterator<AdmissionTicket> iterator = waiting.iterator();
+        while (iterator.hasNext()) {
+            AdmissionTicket ticket = iterator.next();
+            int userRunning = runningPerUser.getOrDefault(ticket.userId, 0);
+            if (running < maxConcurrent && userRunning < maxPerUser) {
+                iterator.remove();
+                running++;
+                runningPerUser.put(ticket.userId, userRunning + 1);
+                ticket.state = TicketState.RUNNING;
+                queueWaitTimer.record(System.nanoTime() - ticket.enqueuedAt, TimeUnit.NANOSECONDS);
+                callbacks.add(() -> ticket.onAdmitted.accept(ticket));
+                continue;
+            }
+            position++;
+            if (ticket.position != position) {
+                ticket.position = position;
+                int current = position;
+                callbacks.add(() -> ticket.onQueued.accept(current));
+            }
+        }
+        return callbacks;
+    }
+
+
+    private enum TicketState {
+        WAITING, RUNNING, RELEASED
+    }
+
+
+    /**
+     * 准入凭证，状态只在持有控制器锁时修改
+     */
+    public static class AdmissionTicket {
+
+        private final Long userId;
+
+        private final IntConsumer onQueued;
+
+        private final Consumer<AdmissionTicket> onAdmitted;
+
+        private final long enqueuedAt = System.nanoTime();
+
+        private TicketState state = TicketState.WAITING;
+
+        private int position;
+
+        private AdmissionTicket(Long userId, IntConsumer onQueued, Consumer<AdmissionTicket> onAdmitted) {
+            this.userId = userId;
+            this.onQueued = onQueued;
+            this.onAdmitted = onAdmitted;
+        }
+    }
+
+}
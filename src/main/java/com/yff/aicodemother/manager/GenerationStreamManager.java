@@ -0,0 +1,320 @@
+package com.yff.aicodemother.manager;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import com.yff.aicodemother.exception.BusinessException;
+import com.yff.aicodemother.exception.ErrorCode;
+import com.yff.aicodemother.exception.ThrowUtils;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * 生成任务管理器（可续传的生成流）
+ * <p>
+ * 每次生成是一个以 appId 为键登记的任务，分配一个 generationId，输出片段按顺序编号，SSE 事件 id 为 "generationId:序号"。
+ * 任务独立于 HTTP 连接订阅、只执行一次，输出是可多播的热流：任意多个连接可以随时接入或断开，
+ * 没有连接时生成也会继续完成（对话历史照常保存）。
+ * 最近的 buffer-size 个输出片段保存在有界回放缓冲区中（排队状态单独保存最新一条，不占用缓冲区）；
+ * 客户端带 Last-Event-ID 重连时从断点之后继续推送，不会重新调用大模型，也不会重复写入用户消息。
+ * 断点（或接入时的开头）已滚出缓冲区时只推送一个 reset 事件后结束，客户端改为从对话历史加载已保存的内容
+ * （生成过程中写入的草稿），不会收到中间缺了一段的输出。
+ * 同一应用同时只运行一个任务：同一用户用同样的消息再次请求（例如打开了两个标签页）时接入正在运行的任务，
+ * 其他请求直接拒绝。新任务先经过 {@link GenerationAdmissionManager} 准入，排队期间向连接推送 queue 事件（不编号）。
+ * 任务独立于连接运行，最长运行 max-duration，超时后以错误结束：释放准入名额，应用可以开始新的生成。
+ * 生成结束后缓冲区再保留 retention-seconds 秒，供晚到的重连使用，之后由定时任务清理。
+ *
+ * @author yff
+ * @date 2026-10-18 15:20:43
+ */
+@Slf4j
+@Component
+public class GenerationStreamManager {
+
+    private static final String EVENT_ID_SEPARATOR = ":";
+
+    @Value("${generation.replay.buffer-size:1024}")
+    private int bufferSize;
+
+    @Value("${generation.replay.retention-seconds:120}")
+    private long retentionSeconds;
+
+    /**
+     * 单次生成的最长运行时间
+     */
+    @Value("${generation.max-duration:20m}")
+    private Duration maxDuration;
+
+    @Autowired
+    private GenerationAdmissionManager generationAdmissionManager;
+
+    /**
+     * appId -> 该应用最近一次生成
+     */
+    private final Map<Long, GenerationStream> streams = new ConcurrentHashMap<>();
+
+
+    /**
+     * 开始一次新的生成，或接入该应用正在运行的同一生成
+     *
+     * @param appId          应用ID
+     * @param userId         发起生成的用户ID
+     * @param userMessage    用户消息
+     * @param sourceSupplier 生成内容流的构造方法，只有真正开始新任务时才会调用（冷流，获得准入后由本方法订阅）
+     * @return 带事件 id 的输出流，取消订阅不会中断生成
+     */
+    public Flux<GenerationEvent> startOrJoin(Long appId, Long userId, String userMessage,
+                                             Supplier<Flux<String>> sourceSupplier) {
+        GenerationStream created = new GenerationStream(IdUtil.getSnowflakeNextIdStr(), userId, userMessage, bufferSize);
+        GenerationStream stream = streams.compute(appId, (key, current) -> {
+            if (current == null || current.isFinished()) {
+                return created;
+            }
+            if (current.getUserId().equals(userId) && current.getUserMessage().equals(userMessage)) {
+                return current;
+            }
+            throw new BusinessException(ErrorCode.FORBIDDEN_ERROR, "该应用正在生成中，请等待当前生成完成");
+        });
+        if (stream != created) {
+            log.info("接入正在运行的生成，appId: {}, generationId: {}", appId, stream.getGenerationId());
+            return stream.eventsAfter(-1);
+        }
+        try {
+            Flux<String> source = sourceSupplier.get();
+            generationAdmissionManager.acquire(userId, created::reportQueuePosition, ticket -> {
+                log.info("生成开始，appId: {}, generationId: {}", appId, created.getGenerationId());
+                created.start(source, maxDuration, () -> generationAdmissionManager.release(ticket));
+            });
+        } catch (RuntimeException e) {
+            abandon(appId, created, e);
+            throw e;
+        }
+        return created.eventsAfter(-1);
+    }
+
+
+    /**
+     * 从断点继续推送
+     *
+     * @param appId       应用ID
+     * @param userId      当前用户ID
+     * @param lastEventId 客户端最后收到的事件 id
+     * @return 断点之后的输出流（断点已滚出回放缓冲区时只有一个 reset 事件）；生成不存在或已过期时返回 null
+     */
+    public Flux<GenerationEvent> resume(Long appId, Long userId, String lastEventId) {
+        int separatorIndex = StrUtil.indexOf(lastEventId, EVENT_ID_SEPARATOR.charAt(0));
+        if (separatorIndex <= 0) {
+            return null;
+        }
+        String generationId = lastEventId.substring(0, separatorIndex);
+        long lastSeq;
+        try {
+            lastSeq = Long.parseLong(lastEventId.substring(separatorIndex + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        GenerationStream stream = streams.get(appId);
+        if (stream == null || !stream.getGenerationId().equals(generationId)) {
+            log.info("生成已过期，无法续传，appId: {}, lastEventId: {}", appId, lastEventId);
+            return null;
+        }
+        ThrowUtils.throwIf(!stream.getUserId().equals(userId), ErrorCode.NO_AUTH_ERROR, "无权限续传该生成");
+        log.info("生成续传，appId: {}, generationId: {}, lastSeq: {}", appId, generationId, lastSeq);
+        return stream.eventsAfter(lastSeq);
+    }
+
+
+    /**
+     * 任务未能开始：取消登记，并结束可能已经接入的连接
+     */
+    private void abandon(Long appId, GenerationStream stream, RuntimeException cause) {
+        streams.remove(appId, stream);
+        stream.fail(cause);
+    }
+
+
+    /**
+     * 定时清理已结束且超过保留时间的生成
+     */
+    @Scheduled(fixedDelay = 60, timeUnit = TimeUnit.SECONDS)
+    public void evictFinishedStreams() {
+        long deadline = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(retentionSeconds);
+        streams.values().removeIf(stream -> stream.isFinishedBefore(deadline));
+    }
+
+
+    /**
+     * 一个输出事件：带编号的输出片段，或不编号的排队状态
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class GenerationEvent {
+
+        /**
+         * 排队状态事件名，data 为 {"position":排队位置}
+         */
+        public static final String EVENT_QUEUE = "queue";
+
+        /**
+         * 回放缓冲区已不包含断点之后的全部输出，data 为 {"oldestSeq":缓冲区中最早的序号}，客户端应从对话历史重新加载
+         */
+        public static final String EVENT_RESET = "reset";
+
+        /**
+         * SSE 事件 id，格式 generationId:seq，排队状态等控制事件为 null
+         */
+        private final String id;
+
+        /**
+         * 序号，排队状态等控制事件为 -1
+         */
+        private final long seq;
+
+        /**
+         * SSE 事件名，输出片段为 null
+         */
+        private final String event;
+
+        private final String data;
+    }
+
+
+    /**
+     * 单次生成：订阅上游并把编号后的输出片段写入有界回放 Sink，排队状态写入只保留最新一条的 Sink
+     */
+    @Getter
+    private static class GenerationStream {
+
+        private final String generationId;
+
+        private final Long userId;
+
+        private final String userMessage;
+
+        private final Sinks.Many<GenerationEvent> sink;
+
+        private final Sinks.Many<GenerationEvent> statusSink = Sinks.many().replay().latest();
+
+        /**
+         * 下一个事件的序号，只在上游线程写入
+         */
+        private volatile long nextSeq;
+
+        /**
+         * 是否已获得准入开始生成
+         */
+        private volatile boolean started;
+
+        /**
+         * 结束时间，0 表示仍在生成
+         */
+        private volatile long finishedAt;
+
+        GenerationStream(String generationId, Long userId, String userMessage, int capacity) {
+            this.generationId = generationId;
+            this.userId = userId;
+            this.userMessage = userMessage;
+            this.sink = Sinks.many().replay().limit(capacity);
+        }
+
+        /**
+         * 订阅上游开始生成
+         *
+         * @param source      生成内容流
+         * @param maxDuration 最长运行时间，超时后取消上游并以错误结束
+         * @param onFinished  生成结束（完成、出错或超时）后的回调
+         */
+        void start(Flux<String> source, Duration maxDuration, Runnable onFinished) {
+            started = true;
+            statusSink.tryEmitComplete();
+            long deadline = System.nanoTime() + maxDuration.toNanos();
+            // 在弹性线程上订阅：路由等阻塞调用不占用请求线程，也不占用释放名额的线程
+            source.timeout(Mono.delay(maxDuration),
+                            // 每个片段之后按剩余时间等待，限制的是总时长而不是片段间隔
+                            data -> Mono.delay(Duration.ofNanos(Math.max(0, deadline - System.nanoTime()))))
+                    .onErrorMap(TimeoutException.class,
+                            e -> new BusinessException(ErrorCode.SYSTEM_ERROR, "生成超时，已运行超过 " + maxDuration))
+                    .subscribeOn(Schedulers.boundedElastic()).subscribe(
+                    data -> {
+                        long seq = nextSeq;
+                        emitNext(new GenerationEvent(generationId + EVENT_ID_SEPARATOR + seq, seq, null, data));
+                        nextSeq = seq + 1;
+                    },
+                    error -> {
+                        onFinished.run();
+                        fail(error);
+                    },
+                    () -> {
+                        onFinished.run();
+                        synchronized (this) {
+                            finishedAt = System.currentTimeMillis();
+                            sink.tryEmitComplete();
+                        }
+                    });
+        }
+
+        void reportQueuePosition(int position) {
+            if (!started) {
+                statusSink.tryEmitNext(new GenerationEvent(null, -1, GenerationEvent.EVENT_QUEUE,
+                        "{\"position\":" + position + "}"));
+            }
+        }
+
+        synchronized void fail(Throwable error) {
+            finishedAt = System.currentTimeMillis();
+            statusSink.tryEmitComplete();
+            sink.tryEmitError(error);
+        }
+
+        /**
+         * 输出片段和出错结束可能来自不同线程，串行写入 Sink
+         */
+        private synchronized void emitNext(GenerationEvent event) {
+            sink.tryEmitNext(event);
+        }
+
+        /**
+         * 断点之后的事件；lastSeq 为 -1 时从头开始，并带上最新的排队状态
+         */
+        Flux<GenerationEvent> eventsAfter(long lastSeq) {
+            Flux<GenerationEvent> content = sink.asFlux()
+                    .filter(event -> event.getSeq() > lastSeq)
+                    // 回放的第一个片段不是断点之后的下一个，说明中间的片段已滚出缓冲区
+                    .switchOnFirst((signal, events) -> {
+                        GenerationEvent first = signal.get();
+                        if (first == null || first.getSeq() == lastSeq + 1) {
+                            return events;
+                        }
+                        log.warn("断点已超出回放缓冲区，generationId: {}, lastSeq: {}, oldestSeq: {}",
+                                generationId, lastSeq, first.getSeq());
+                        return Flux.just(new GenerationEvent(null, -1, GenerationEvent.EVENT_RESET,
+                                "{\"oldestSeq\":" + first.getSeq() + "}"));
+                    });
+            return lastSeq < 0 ? Flux.merge(statusSink.asFlux(), content) : content;
+        }
+
+        boolean isFinished() {
+            return finishedAt != 0;
+        }
+
+        boolean isFinishedBefore(long deadline) {
+            return finishedAt != 0 && finishedAt < deadline;
+        }
+    }
+
+}
@@ -0,0 +1,27 @@
+package com.yff.aicodemother.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.yff.aicodemother.model.entity.ChatHistoryBlob;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+/**
+ * 对话历史大消息压缩存储 映射层。
+ *
+ * @author yff
+ * @date 2026-10-18 21:42:06
+ */
+@Mapper
+public interface ChatHistoryBlobMapper extends BaseMapper<ChatHistoryBlob> {
+
+    /**
+     * 批量写入压缩消息（ID 已存在时覆盖，写入日志回放和草稿定稿时重复写入结果不变）
+     *
+     * @param list 压缩消息
+     * @return 影响的行数
+     */
+    int upsertBatch(@Param("list") List<ChatHistoryBlob> list);
+
+}
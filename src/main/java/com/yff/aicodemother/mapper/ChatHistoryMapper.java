@@ -3,6 +3,7 @@ package com.yff.aicodemother.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.yff.aicodemother.model.dto.chathistory.ChatHistoryAdminCursorQueryRequest;
 import com.yff.aicodemother.model.dto.chathistory.ChatHistoryAdminQueryRequest;
 import com.yff.aicodemother.model.dto.chathistory.ChatHistoryCursorQueryRequest;
 import com.yff.aicodemother.model.entity.ChatHistory;
@@ -37,11 +38,32 @@ public interface ChatHistoryMapper extends BaseMapper<ChatHistory> {
     /**
      * 管理员分页查询所有对话历史
      *
-     * @param page  分页参数
-     * @param query 查询条件
+     * @param page   分页参数
+     * @param query  查询条件
+     * @param phrase 消息内容的全文检索短语，为空时按 LIKE 模糊查询
      * @return 分页 VO 结果
      */
     IPage<ChatHistoryVo> selectChatHistoryVoPageForAdmin(Page<ChatHistoryVo> page,
-            @Param("query") ChatHistoryAdminQueryRequest query);
+            @Param("query") ChatHistoryAdminQueryRequest query, @Param("phrase") String phrase);
+
+    /**
+     * 管理员游标查询所有对话历史（按 createTime、id 倒序，不统计总数）
+     *
+     * @param query  查询条件
+     * @param phrase 消息内容的全文检索短语，为空时按 LIKE 模糊查询
+     * @param limit  查询条数（实际查询 N+1 条）
+     * @return 对话历史 VO 列表
+     */
+    List<ChatHistoryVo> selectChatHistoryVoForAdminByCursor(@Param("query") ChatHistoryAdminCursorQueryRequest query,
+            @Param("phrase") String phrase, @Param("limit") int limit);
+
+    /**
+     * 批量写入对话历史（多行 INSERT ... ON DUPLICATE KEY UPDATE）
+     * ID 已存在时覆盖消息内容和类型、保留创建时间：写入日志回放时重复写入结果不变，草稿消息定稿时以完整消息覆盖草稿
+     *
+     * @param list 对话历史（ID 和创建时间需已设置）
+     * @return 影响的行数
+     */
+    int upsertBatch(@Param("list") List<ChatHistory> list);
 
 }
@@ -37,4 +37,10 @@ public class ChatHistoryAddRequest implements Serializable {
      */
     private Long userId;
 
+    /**
+     * AI 消息草稿 ID（可选）
+     * 流式生成过程中已写入草稿时设置：保存时以完整消息覆盖草稿，而不是新增一条消息
+     */
+    private Long draftId;
+
 }
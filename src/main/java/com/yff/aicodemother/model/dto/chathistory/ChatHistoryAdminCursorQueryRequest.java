@@ -0,0 +1,64 @@
+package com.yff.aicodemother.model.dto.chathistory;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Data;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 管理员游标查询所有对话历史请求
+ * 按 (createTime, id) 倒序翻页，不统计总数
+ *
+ * @author yff
+ * @date 2026-10-18 22:05:37
+ */
+@Data
+public class ChatHistoryAdminCursorQueryRequest implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 对话历史 ID
+     */
+    private Long id;
+
+    /**
+     * 应用 ID
+     */
+    private Long appId;
+
+    /**
+     * 用户 ID
+     */
+    private Long userId;
+
+    /**
+     * 消息类型（user/ai/ai_draft/error）
+     */
+    private String messageType;
+
+    /**
+     * 消息内容（全文检索）
+     */
+    private String message;
+
+    /**
+     * 每页查询条数（默认20条）
+     */
+    private Integer pageSize = 20;
+
+    /**
+     * 上一页最后一条记录的创建时间
+     */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
+    private LocalDateTime lastTime;
+
+    /**
+     * 上一页最后一条记录的ID
+     */
+    private Long lastId;
+
+}
@@ -74,4 +74,10 @@ public class ChatHistory implements Serializable {
     @TableLogic
     private Integer isDelete;
 
+    /**
+     * 完整消息长度（大消息压缩存储到 chat_history_blob 时设置，此时 message 中只保存摘要）
+     */
+    @TableField("messageLength")
+    private Integer messageLength;
+
 }
\ No newline at end of file
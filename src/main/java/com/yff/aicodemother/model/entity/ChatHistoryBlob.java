@@ -0,0 +1,57 @@
+package com.yff.aicodemother.model.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 对话历史大消息压缩存储 实体类。
+ * 超过阈值的消息压缩后存入该表，chat_history 中只保存摘要和完整长度
+ *
+ * @author yff
+ * @date 2026-10-18 21:42:06
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("chat_history_blob")
+public class ChatHistoryBlob implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 对话历史 ID
+     */
+    @TableId(value = "chatHistoryId", type = IdType.INPUT)
+    private Long chatHistoryId;
+
+    /**
+     * 压缩后的完整消息（zlib）
+     */
+    @TableField("content")
+    private byte[] content;
+
+    /**
+     * 完整消息原文（不压缩，管理员按消息内容检索时使用）
+     */
+    @TableField("searchText")
+    private String searchText;
+
+    /**
+     * 创建时间
+     */
+    @TableField("createTime")
+    private LocalDateTime createTime;
+
+}
@@ -14,6 +14,10 @@ public enum MessageTypeEnum {
 
     USER("用户消息", "user"),
     AI("AI消息", "ai"),
+    /**
+     * 流式生成过程中定期写入的 AI 消息草稿，生成结束时定稿为 AI 消息
+     */
+    AI_DRAFT("AI消息草稿", "ai_draft"),
     ERROR("错误消息", "error");
     //TODO 把ERROR合并到AI消息里
 
@@ -54,4 +54,9 @@ public class ChatHistoryVo implements Serializable {
     @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
     private LocalDateTime updateTime;
 
+    /**
+     * 完整消息长度：不为空时 message 只是摘要，完整消息通过 /chatHistory/message 按需获取
+     */
+    private Integer messageLength;
+
 }
@@ -2,13 +2,17 @@ package com.yff.aicodemother.service;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.yff.aicodemother.model.dto.chathistory.ChatHistoryAdminCursorQueryRequest;
 import com.yff.aicodemother.model.dto.chathistory.ChatHistoryAdminQueryRequest;
 import com.yff.aicodemother.model.dto.chathistory.ChatHistoryAddRequest;
 import com.yff.aicodemother.model.dto.chathistory.ChatHistoryCursorQueryRequest;
 import com.yff.aicodemother.model.entity.ChatHistory;
 import com.yff.aicodemother.model.vo.ChatHistoryVo;
 import com.yff.aicodemother.model.vo.CursorPageVo;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.memory.ChatMemory;
+
+import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * 对话历史 服务层。
@@ -20,12 +24,23 @@ public interface ChatHistoryService extends IService<ChatHistory> {
 
     /**
      * 保存对话消息
+     * 默认异步批量写库（见 ChatHistoryWriteBehindQueue），返回时消息已写入本地日志，但可能尚未写入数据库
+     * 设置了 draftId 时以完整消息覆盖该草稿（ID 和创建时间沿用草稿）
      *
      * @param request 保存请求
-     * @return 新消息 ID
+     * @return 新消息 ID（覆盖草稿时为草稿 ID）
      */
     Long saveChatMessage(ChatHistoryAddRequest request);
 
+    /**
+     * 写入流式生成中的 AI 消息草稿（检查点），放入写入队列后立即返回，不等待写库
+     * draftId 为空时分配新的草稿 ID，之后的检查点按 ID 覆盖同一条草稿
+     *
+     * @param request 草稿请求，message 为到目前为止的完整内容
+     * @return 草稿消息 ID
+     */
+    Long saveDraftCheckpoint(ChatHistoryAddRequest request);
+
     /**
      * 用户分页查询指定应用的对话历史（游标分页）
      *
@@ -43,6 +58,23 @@ public interface ChatHistoryService extends IService<ChatHistory> {
      */
     Page<ChatHistoryVo> adminListChatHistoryVoByPage(ChatHistoryAdminQueryRequest request);
 
+    /**
+     * 管理员游标查询所有对话历史（keyset 分页，不统计总数；消息内容走全文索引检索）
+     *
+     * @param request 查询条件
+     * @return 游标分页 VO 结果
+     */
+    CursorPageVo<ChatHistoryVo> adminListChatHistoryVoByCursor(ChatHistoryAdminCursorQueryRequest request);
+
+    /**
+     * 获取一条消息的完整内容（压缩存储的大消息在列表中只返回摘要，展开时调用）
+     *
+     * @param id     消息 ID
+     * @param userId 当前用户 ID（用于权限校验）
+     * @return 完整消息（文件引用已展开）
+     */
+    String getFullMessage(Long id, Long userId);
+
     /**
      * 删除指定应用的所有对话历史（级联删除用）
      *
@@ -54,13 +86,23 @@ public interface ChatHistoryService extends IService<ChatHistory> {
 
     /**
      * 加载指定应用的对话历史到聊天记忆中（按时间倒序加载）
+     * 整个窗口通过 ChatMemory#set 一次写入 Redis；Redis 中的记忆版本与对话历史一致时跳过加载
      *
      * @param appId      应用ID
-     * @param chatMemory 聊天记忆对象
+     * @param chatMemory 聊天记忆对象（基于 RedisChatMemoryStore）
      * @param maxCount   最大加载数量
-     * @return 实际加载数量
+     * @return 实际加载数量（跳过加载时为记忆中已有的消息数）
      */
-    int loadChatHistoryToMemory(Long appId, MessageWindowChatMemory chatMemory, int maxCount);
+    int loadChatHistoryToMemory(Long appId, ChatMemory chatMemory, int maxCount);
 
 
+    /**
+     * 查询最近有对话的应用 ID（按最后一条消息时间倒序）
+     *
+     * @param since 起始时间
+     * @param limit 最大数量
+     * @return 应用 ID 列表
+     */
+    List<Long> listRecentActiveAppIds(LocalDateTime since, int limit);
+
 }
@@ -9,10 +9,12 @@ import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.yff.aicodemother.ai.core.AiCodeGeneratorFacade;
+import com.yff.aicodemother.ai.core.GenerationContextPreparer;
+import com.yff.aicodemother.ai.core.GenerationContextPreparer.PreparedGeneration;
 import com.yff.aicodemother.ai.core.builder.VueProjectBuilder;
 import com.yff.aicodemother.ai.core.handler.StreamHandlerExecutor;
 import com.yff.aicodemother.ai.model.enums.CodeGenTypeEnum;
-import com.yff.aicodemother.ai.routing.AiCodeGenTypeRoutingService;
+import com.yff.aicodemother.ai.model.message.StreamMessage;
 import com.yff.aicodemother.constant.AppConstant;
 import com.yff.aicodemother.exception.BusinessException;
 import com.yff.aicodemother.exception.ErrorCode;
@@ -23,11 +25,9 @@ import com.yff.aicodemother.model.dto.app.AppAdminUpdateRequest;
 import com.yff.aicodemother.model.dto.app.AppAddRequest;
 import com.yff.aicodemother.model.dto.app.AppQueryRequest;
 import com.yff.aicodemother.model.dto.app.AppUpdateRequest;
-import com.yff.aicodemother.model.dto.chathistory.ChatHistoryAddRequest;
 import com.yff.aicodemother.model.entity.App;
 import com.yff.aicodemother.model.entity.DeployHistory;
 import com.yff.aicodemother.model.entity.User;
-import com.yff.aicodemother.model.enums.MessageTypeEnum;
 import com.yff.aicodemother.model.vo.AppVo;
 import com.yff.aicodemother.service.*;
 import lombok.extern.slf4j.Slf4j;
@@ -37,15 +37,8 @@ import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 
 import java.io.File;
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.time.LocalDateTime;
-import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Stream;
 
 /**
  * 应用 服务层实现。
@@ -79,7 +72,7 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
     private ScreenshotService screenshotService;
 
     @Autowired
-    private AiCodeGenTypeRoutingService aiCodeGenTypeRoutingService;
+    private GenerationContextPreparer generationContextPreparer;
 
     @Override
     public Long createApp(AppAddRequest appAddRequest, Long userId) {
@@ -231,49 +224,17 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         if (!app.getUserId().equals(user.getId())) {
             throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "无权访问该应用");
         }
-        // 获取应用的代码生成类型（支持 AI 自动路由）
-        String codeGenType = app.getCodeGenType();
-        CodeGenTypeEnum codeGenTypeEnum;
-
-        if (StrUtil.isBlank(codeGenType) || "auto".equals(codeGenType)) {
-            // AI 自动路由：根据用户 prompt 智能判断代码生成类型
-            log.info("应用 {} 使用AI自动路由判断代码生成类型, prompt: {}", appId, userMessage);
-            codeGenTypeEnum = aiCodeGenTypeRoutingService.routeCodeGenType(userMessage);
-            log.info("应用 {} AI路由结果: {}", appId, codeGenTypeEnum);
-            // 回写到 App 记录，后续对话沿用此类型
-            App updateApp = new App();
-            updateApp.setId(appId);
-            updateApp.setCodeGenType(codeGenTypeEnum.getValue());
-            this.updateById(updateApp);
-        } else {
-            codeGenTypeEnum = CodeGenTypeEnum.getEnumByValue(codeGenType);
-            if (codeGenTypeEnum == null) {
-                throw new BusinessException(ErrorCode.SYSTEM_ERROR, "应用的代码生成类型不合法");
-            }
-        }
-
-        // 1. 保存用户消息到对话历史
-        ChatHistoryAddRequest userHistoryRequest = new ChatHistoryAddRequest();
-        userHistoryRequest.setAppId(appId);
-        userHistoryRequest.setUserId(user.getId());
-        userHistoryRequest.setMessage(userMessage);
-        userHistoryRequest.setMessageType(MessageTypeEnum.USER.getValue());
-        chatHistoryService.saveChatMessage(userHistoryRequest);
-
-        // 2. VUE_PROJECT 类型：将源文件内容注入到 prompt 中，帮助 AI 定位需要修改的组件
-        if (codeGenTypeEnum == CodeGenTypeEnum.VUE_PROJECT) {
-            String sourceContext = readVueSourceFiles(appId);
-            if (StrUtil.isNotBlank(sourceContext)) {
-                userMessage = sourceContext + "\n\n" + userMessage;
-                log.info("已为 VUE_PROJECT 应用 {} 注入源文件上下文", appId);
-            }
-        }
-
-        // 3. 生成代码流并保存 AI 响应
-        Flux<String> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream(userMessage, codeGenTypeEnum, appId);
+        // 以下步骤（AI 路由、保存用户消息、调用大模型）在订阅时才执行，生成任务获得准入后才会订阅
+        return Flux.defer(() -> {
+            // 1. 并行执行准备阶段：确定生成类型、保存用户消息、注入 VUE_PROJECT 源文件上下文、预热 AI 服务实例
+            PreparedGeneration prepared = generationContextPreparer.prepare(app, userMessage, user);
+            CodeGenTypeEnum codeGenTypeEnum = prepared.getCodeGenType();
 
-        return streamHandlerExecutor.doExecute(codeStream, chatHistoryService, appId, user, codeGenTypeEnum);
+            // 2. 生成代码流并保存 AI 响应
+            Flux<StreamMessage> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream(prepared.getPrompt(), codeGenTypeEnum, appId);
 
+            return streamHandlerExecutor.doExecute(codeStream, chatHistoryService, appId, user, codeGenTypeEnum);
+        });
     }
 
     @Override
@@ -456,53 +417,4 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         log.info("应用 {} 部署容器已停止下线", appId);
     }
 
-    /**
-     * 读取 Vue 项目 src/ 目录下的所有源文件内容，用于注入到 AI prompt
-     * 读取范围：.vue / .js / .css / .json 文件
-     *
-     * @param appId 应用ID
-     * @return 格式化的源文件内容字符串，若无源文件则返回空字符串
-     */
-    private String readVueSourceFiles(Long appId) {
-        String projectDirName = "vue_project_" + appId;
-        Path srcDir = Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, projectDirName, "src");
-
-        if (!Files.exists(srcDir) || !Files.isDirectory(srcDir)) {
-            log.warn("Vue 项目 src 目录不存在: {}", srcDir);
-            return "";
-        }
-
-        List<String> extensions = Arrays.asList(".vue", ".js", ".css", ".json");
-        StringBuilder sb = new StringBuilder();
-        sb.append("[当前项目源文件，请根据以下源码定位需要修改的文件]\n");
-
-        try (Stream<Path> walk = Files.walk(srcDir)) {
-            Path projectRoot = srcDir.getParent(); // vue_project_{appId}
-            walk.filter(Files::isRegularFile)
-                    .filter(p -> {
-                        String name = p.getFileName().toString().toLowerCase();
-                        return extensions.stream().anyMatch(name::endsWith);
-                    })
-                    .sorted()
-                    .forEach(filePath -> {
-                        try {
-                            // 使用相对于项目根目录的路径，如 src/App.vue
-                            String relativePath = projectRoot.relativize(filePath).toString().replace('\\', '/');
-                            String content = Files.readString(filePath, StandardCharsets.UTF_8);
-                            // 转义 {{ 和 }}，避免 langchain4j 将 Vue 模板语法误认为 prompt 模板变量
-                            content = content.replace("{{", "{ {").replace("}}", "} }");
-                            sb.append("\n--- ").append(relativePath).append(" ---\n");
-                            sb.append(content).append("\n");
-                        } catch (IOException e) {
-                            log.warn("读取源文件失败: {}", filePath, e);
-                        }
-                    });
-        } catch (IOException e) {
-            log.error("遍历 Vue 项目源文件目录失败: {}", srcDir, e);
-            return "";
-        }
-
-        return sb.toString();
-    }
-
 }
@@ -1,17 +1,24 @@
 package com.yff.aicodemother.service.impl;
 
-import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.StrUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.baomidou.mybatisplus.core.toolkit.IdWorker;
 import com.baomidou.mybatisplus.extension.conditions.query.LambdaQueryChainWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.yff.aicodemother.exception.BusinessException;
 import com.yff.aicodemother.exception.ErrorCode;
+import com.yff.aicodemother.manager.ChatHistoryBlobManager;
+import com.yff.aicodemother.manager.ChatHistoryHotWindowCache;
+import com.yff.aicodemother.manager.ChatHistoryWriteBehindQueue;
+import com.yff.aicodemother.manager.FileSnapshotManager;
 import com.yff.aicodemother.mapper.AppMapper;
 import com.yff.aicodemother.mapper.ChatHistoryMapper;
+import com.yff.aicodemother.model.dto.chathistory.ChatHistoryAdminCursorQueryRequest;
 import com.yff.aicodemother.model.dto.chathistory.ChatHistoryAdminQueryRequest;
 import com.yff.aicodemother.model.dto.chathistory.ChatHistoryAddRequest;
 import com.yff.aicodemother.model.dto.chathistory.ChatHistoryCursorQueryRequest;
@@ -23,13 +30,22 @@ import com.yff.aicodemother.model.vo.CursorInfo;
 import com.yff.aicodemother.model.vo.CursorPageVo;
 import com.yff.aicodemother.service.ChatHistoryService;
 import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
 import dev.langchain4j.data.message.UserMessage;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.memory.ChatMemory;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  * 对话历史 服务层实现。
@@ -42,12 +58,63 @@ import java.util.List;
 public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatHistory>
         implements ChatHistoryService {
 
+    /**
+     * Redis 对话记忆版本标记：记录记忆窗口加载/写入时对话历史的最新消息ID
+     */
+    private static final String MEMORY_VERSION_KEY_PREFIX = "ai:memory:version:";
+
     @Autowired
     private ChatHistoryMapper chatHistoryMapper;
 
     @Autowired
     private AppMapper appMapper;
 
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private FileSnapshotManager fileSnapshotManager;
+
+    @Autowired
+    private ChatHistoryWriteBehindQueue chatHistoryWriteBehindQueue;
+
+    @Autowired
+    private ChatHistoryHotWindowCache chatHistoryHotWindowCache;
+
+    @Autowired
+    private ChatHistoryBlobManager chatHistoryBlobManager;
+
+    /**
+     * 是否异步批量写库，关闭时每条消息同步写库
+     */
+    @Value("${chat-history.write-behind.enabled:true}")
+    private boolean writeBehindEnabled;
+
+    /**
+     * 管理员消息检索是否走全文索引（需要 ft_message、ft_searchText 索引，关闭时按 LIKE 查询）
+     */
+    @Value("${chat-history.search.full-text:true}")
+    private boolean fullTextSearch;
+
+    /**
+     * ngram 分词长度，与 MySQL 的 ngram_token_size 一致，短于该长度的关键词无法命中全文索引
+     */
+    @Value("${chat-history.search.ngram-token-size:2}")
+    private int ngramTokenSize;
+
+    /**
+     * ft_message、ft_searchText 索引是否在 innodb_ft_enable_stopword=OFF 下创建
+     * 默认停用词表（含 a、i 等）会让 ngram 丢弃包含停用词的分词，含英文字母的关键词无法可靠命中，此时按 LIKE 查询
+     */
+    @Value("${chat-history.search.stopword-disabled:true}")
+    private boolean stopwordDisabled;
+
+    /**
+     * Redis 对话记忆的过期时间（秒），与 RedisChatMemoryStore 一致，0 表示不过期
+     */
+    @Value("${spring.data.redis.ttl:0}")
+    private long memoryTtlSeconds;
+
     @Override
     public Long saveChatMessage(ChatHistoryAddRequest request) {
         // 参数校验
@@ -67,15 +134,105 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "消息类型不能为空");
         }
 
-        // 创建对话历史记录
-        ChatHistory chatHistory = BeanUtil.copyProperties(request, ChatHistory.class);
-        boolean result = this.save(chatHistory);
-        if (!result) {
-            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "保存对话消息失败");
+        // 创建对话历史记录，ID 和创建时间在入队时确定，异步写库后保持不变
+        // 创建时间截断到秒，与数据库 datetime 精度一致，热窗口中的游标与数据库中的记录才能对上
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        Long draftId = request.getDraftId();
+        ChatHistory chatHistory = ChatHistory.builder()
+                .id(draftId != null ? draftId : IdWorker.getId())
+                .appId(request.getAppId())
+                .userId(request.getUserId())
+                .message(request.getMessage())
+                .messageType(request.getMessageType())
+                .createTime(now)
+                .updateTime(now)
+                .build();
+        if (writeBehindEnabled) {
+            // 追加到本地日志后立即返回，由后台批量写库，调用方（流结束回调）不等待 MySQL
+            chatHistoryWriteBehindQueue.enqueue(chatHistory);
+            refreshHotWindow(chatHistory, draftId);
+            return chatHistory.getId();
+        }
+        // 按 ID upsert（覆盖草稿时保留草稿的创建时间），大消息压缩存储
+        chatHistoryBlobManager.saveBatch(List.of(chatHistory));
+        refreshHotWindow(chatHistory, draftId);
+        if (isErrorMessage(chatHistory)) {
+            markMemoryStale(chatHistory.getAppId());
+        } else {
+            advanceMemoryVersion(chatHistory.getAppId(), chatHistory.getId());
         }
         return chatHistory.getId();
     }
 
+
+    @Override
+    public Long saveDraftCheckpoint(ChatHistoryAddRequest request) {
+        if (request == null || request.getAppId() == null || request.getUserId() == null) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "请求参数不能为空");
+        }
+        if (request.getMessage() == null || request.getMessage().isEmpty()) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "消息内容不能为空");
+        }
+        Long draftId = request.getDraftId();
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        ChatHistory draft = ChatHistory.builder()
+                .id(draftId != null ? draftId : IdWorker.getId())
+                .appId(request.getAppId())
+                .userId(request.getUserId())
+                .message(request.getMessage())
+                .messageType(MessageTypeEnum.AI_DRAFT.getValue())
+                .createTime(now)
+                .updateTime(now)
+                .build();
+        // 由写入队列在后台按 ID upsert（大草稿压缩存储），流处理线程不等待写库
+        chatHistoryWriteBehindQueue.enqueueDraft(draft);
+        refreshHotWindow(draft, draftId);
+        return draft.getId();
+    }
+
+
+    /**
+     * 新消息追加到热窗口；草稿检查点、草稿定稿替换窗口中的草稿（保留草稿的创建时间，与数据库一致），
+     * 窗口中没有草稿时（窗口在草稿写库前重新加载）移除窗口，下次查询时重新加载
+     */
+    private void refreshHotWindow(ChatHistory chatHistory, Long draftId) {
+        // 与数据库一致，大消息在窗口中也只保存摘要
+        ChatHistory summary = chatHistoryBlobManager.summarize(chatHistory);
+        if (draftId == null) {
+            chatHistoryHotWindowCache.append(summary);
+        } else if (!chatHistoryHotWindowCache.replace(summary)) {
+            chatHistoryHotWindowCache.invalidate(chatHistory.getAppId());
+        }
+    }
+
+
+    /**
+     * 异步写库成功后推进对应应用的记忆版本（消息写入数据库之后版本才能指向它），
+     * 批次中有错误消息的应用标记记忆失效；草稿不进入对话记忆，不推进版本
+     */
+    @PostConstruct
+    public void registerWriteBehindListener() {
+        chatHistoryWriteBehindQueue.setFlushListener(histories -> histories.stream()
+                .filter(history -> !MessageTypeEnum.AI_DRAFT.getValue().equals(history.getMessageType()))
+                .collect(Collectors.groupingBy(ChatHistory::getAppId))
+                .forEach((appId, rows) -> {
+                    if (rows.stream().anyMatch(ChatHistoryServiceImpl::isErrorMessage)) {
+                        markMemoryStale(appId);
+                    } else {
+                        rows.stream().map(ChatHistory::getId).max(Long::compare)
+                                .ifPresent(latestId -> advanceMemoryVersion(appId, latestId));
+                    }
+                }));
+    }
+
+
+    /**
+     * 读取数据库前先写入该应用等待写库的消息，保证读到刚保存的消息（只写该应用的消息，等待时间有上限）
+     */
+    private void flushPendingWrites(Long appId) {
+        chatHistoryWriteBehindQueue.flush(appId);
+    }
+
     @Override
     public CursorPageVo<ChatHistoryVo> listChatHistoryVoByPage(ChatHistoryCursorQueryRequest cursorRequest, Long userId) {
         // 参数校验
@@ -89,15 +246,6 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "用户ID不合法");
         }
 
-        // 权限校验：用户只能查询自己创建的应用的对话历史
-        App app = appMapper.selectById(cursorRequest.getAppId());
-        if (app == null) {
-            throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "应用不存在");
-        }
-        if (!app.getUserId().equals(userId)) {
-            throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "无权查看该应用的对话历史");
-        }
-
         // 设置默认分页大小
         Integer pageSize = cursorRequest.getPageSize();
         if (pageSize == null || pageSize <= 0) {
@@ -110,8 +258,20 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
 
         // 查询 N+1 条数据，用于判断是否还有下一页
         int queryLimit = pageSize + 1;
-        List<ChatHistoryVo> records = chatHistoryMapper.selectChatHistoryVoByCursor(
-                cursorRequest, userId, queryLimit);
+        // 先从热窗口中取（窗口中记录了应用创建者，命中时不再查询应用和对话历史）
+        ChatHistoryHotWindowCache.WindowPage windowPage = chatHistoryHotWindowCache.page(cursorRequest.getAppId(),
+                limit -> loadHotWindow(cursorRequest.getAppId(), userId, limit),
+                cursorRequest.getLastTime(), cursorRequest.getLastId(), queryLimit);
+        // 权限校验：用户只能查询自己创建的应用的对话历史
+        if (!windowPage.ownerId().equals(userId)) {
+            throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "无权查看该应用的对话历史");
+        }
+        List<ChatHistoryVo> records = windowPage.records();
+        if (records == null) {
+            // 游标已翻过热窗口，回源数据库
+            flushPendingWrites(cursorRequest.getAppId());
+            records = chatHistoryMapper.selectChatHistoryVoByCursor(cursorRequest, userId, queryLimit);
+        }
 
         // 判断是否还有下一页
         boolean hasMore = records.size() > pageSize;
@@ -120,6 +280,10 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
         if (hasMore) {
             records = records.subList(0, pageSize);
         }
+        // 文件引用展开为完整代码，前端展示与生成时一致（压缩存储的大消息只返回摘要，展开时再获取完整消息）
+        records.stream()
+                .filter(record -> record.getMessageLength() == null)
+                .forEach(record -> record.setMessage(fileSnapshotManager.expand(record.getMessage())));
 
         // 构建下一页的游标信息
         CursorInfo nextCursor = null;
@@ -139,6 +303,22 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
                 .build();
     }
 
+
+    /**
+     * 从数据库加载应用的热窗口：应用创建者和最近的 limit 条消息
+     */
+    private ChatHistoryHotWindowCache.HotWindow loadHotWindow(Long appId, Long userId, int limit) {
+        App app = appMapper.selectById(appId);
+        if (app == null) {
+            throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "应用不存在");
+        }
+        flushPendingWrites(appId);
+        ChatHistoryCursorQueryRequest newestRequest = new ChatHistoryCursorQueryRequest();
+        newestRequest.setAppId(appId);
+        List<ChatHistoryVo> newestRecords = chatHistoryMapper.selectChatHistoryVoByCursor(newestRequest, userId, limit);
+        return new ChatHistoryHotWindowCache.HotWindow(app.getUserId(), newestRecords, limit - 1);
+    }
+
     @Override
     public Page<ChatHistoryVo> adminListChatHistoryVoByPage(ChatHistoryAdminQueryRequest request) {
         // 参数校验
@@ -150,10 +330,110 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
         int pageNum = request.getPageNum();
         int pageSize = request.getPageSize();
         IPage<ChatHistoryVo> chatHistoryVoPage = chatHistoryMapper.selectChatHistoryVoPageForAdmin(
-                new Page<>(pageNum, pageSize), request);
+                new Page<>(pageNum, pageSize), request, toFullTextPhrase(request.getMessage()));
+        chatHistoryVoPage.getRecords().stream()
+                .filter(record -> record.getMessageLength() == null)
+                .forEach(record -> record.setMessage(fileSnapshotManager.expand(record.getMessage())));
         return (Page<ChatHistoryVo>) chatHistoryVoPage;
     }
 
+    @Override
+    public CursorPageVo<ChatHistoryVo> adminListChatHistoryVoByCursor(ChatHistoryAdminCursorQueryRequest request) {
+        // 参数校验
+        if (request == null) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "请求参数不能为空");
+        }
+
+        // 设置默认分页大小，限制最大查询条数
+        Integer pageSize = request.getPageSize();
+        if (pageSize == null || pageSize <= 0) {
+            pageSize = 20;
+        }
+        if (pageSize > 100) {
+            pageSize = 100;
+        }
+
+        // 查询 N+1 条数据判断是否还有下一页，不再执行 COUNT
+        List<ChatHistoryVo> records = chatHistoryMapper.selectChatHistoryVoForAdminByCursor(request,
+                toFullTextPhrase(request.getMessage()), pageSize + 1);
+        boolean hasMore = records.size() > pageSize;
+        if (hasMore) {
+            records = records.subList(0, pageSize);
+        }
+        records.stream()
+                .filter(record -> record.getMessageLength() == null)
+                .forEach(record -> record.setMessage(fileSnapshotManager.expand(record.getMessage())));
+
+        CursorInfo nextCursor = null;
+        if (hasMore) {
+            ChatHistoryVo lastRecord = records.get(records.size() - 1);
+            nextCursor = CursorInfo.builder()
+                    .lastTime(lastRecord.getCreateTime())
+                    .lastId(lastRecord.getId())
+                    .build();
+        }
+        return CursorPageVo.<ChatHistoryVo>builder()
+                .records(records)
+                .hasMore(hasMore)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+
+    /**
+     * 管理员消息检索关键词转为全文检索短语（布尔模式下整体按短语匹配，ngram 分词后与子串匹配效果一致）
+     * 未开启全文检索、关键词短于 ngram 分词长度（无法命中索引），或索引带停用词而关键词含英文字母时返回 null，按 LIKE 查询
+     */
+    String toFullTextPhrase(String keyword) {
+        if (!fullTextSearch || StrUtil.isBlank(keyword)) {
+            return null;
+        }
+        // 双引号是布尔模式的短语定界符，不能出现在短语内部
+        String phrase = StrUtil.trim(keyword.replace('"', ' '));
+        if (phrase.length() < ngramTokenSize) {
+            return null;
+        }
+        if (!stopwordDisabled && phrase.chars().anyMatch(ch -> ch < 128 && Character.isLetter(ch))) {
+            return null;
+        }
+        return "\"" + phrase + "\"";
+    }
+
+    @Override
+    public String getFullMessage(Long id, Long userId) {
+        // 参数校验
+        if (id == null || id <= 0) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "消息ID不合法");
+        }
+        if (userId == null || userId <= 0) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "用户ID不合法");
+        }
+
+        ChatHistory chatHistory = this.getById(id);
+        if (chatHistory == null) {
+            // 热窗口中的消息可能还在等待写库
+            chatHistoryWriteBehindQueue.flushMessage(id);
+            chatHistory = this.getById(id);
+        }
+        if (chatHistory == null) {
+            throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "消息不存在");
+        }
+        // 权限校验：用户只能查看自己创建的应用的对话历史
+        App app = appMapper.selectById(chatHistory.getAppId());
+        if (app == null || !app.getUserId().equals(userId)) {
+            throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "无权查看该应用的对话历史");
+        }
+
+        String message = chatHistory.getMessage();
+        if (chatHistory.getMessageLength() != null) {
+            message = chatHistoryBlobManager.loadMessage(id);
+            if (message == null) {
+                throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "消息内容不存在");
+            }
+        }
+        return fileSnapshotManager.expand(message);
+    }
+
     @Override
     public Boolean deleteByAppId(Long appId) {
         // 参数校验
@@ -161,18 +441,38 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "应用ID不合法");
         }
 
-        // 逻辑删除该应用的所有对话历史
+        // 逻辑删除该应用的所有对话历史（先写入待写库的消息，避免删除后才落库）
+        flushPendingWrites(appId);
         LambdaUpdateWrapper<ChatHistory> updateWrapper = new LambdaUpdateWrapper<>();
         updateWrapper.eq(ChatHistory::getAppId, appId)
                 .eq(ChatHistory::getIsDelete, 0)
                 .set(ChatHistory::getIsDelete, 1);
-        return this.update(updateWrapper);
+        boolean result = this.update(updateWrapper);
+        chatHistoryHotWindowCache.invalidate(appId);
+        // 对话历史已删除，Redis 中的记忆窗口不再有效
+        markMemoryStale(appId);
+        return result;
     }
 
     @Override
-    public int loadChatHistoryToMemory(Long appId, MessageWindowChatMemory chatMemory, int maxCount) {
+    public int loadChatHistoryToMemory(Long appId, ChatMemory chatMemory, int maxCount) {
 
         try {
+            flushPendingWrites(appId);
+            // 对话历史水位线（最新一条的ID），与 Redis 中记录的版本一致说明 Redis 中的记忆窗口已是最新，无需重新加载
+            String version = getChatHistoryVersion(appId);
+            if (version == null) {
+                return 0;
+            }
+            String versionKey = MEMORY_VERSION_KEY_PREFIX + appId;
+            if (version.equals(stringRedisTemplate.opsForValue().get(versionKey))) {
+                int cachedCount = chatMemory.messages().size();
+                if (cachedCount > 0) {
+                    log.info("Redis 中的对话记忆已是最新，跳过加载，appId={}，记忆数量={}", appId, cachedCount);
+                    return cachedCount;
+                }
+            }
+
             LambdaQueryWrapper<ChatHistory> chatHistoryLambdaQueryWrapper = new LambdaQueryWrapper<>();
             // 先根据appId查询对话历史
             chatHistoryLambdaQueryWrapper.eq(ChatHistory::getAppId, appId)
@@ -182,25 +482,28 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
             if (CollUtil.isEmpty(historyList)) {
                 return 0;
             }
+            // 压缩存储的大消息读取完整内容
+            chatHistoryBlobManager.restoreMessages(historyList);
 
             //反转列表，确保按照时间正序加载到记忆中   老的在前，新的在后
 //            historyList = historyList.reversed();
-            //按照时间顺序添加到记忆中
-            int loadedCount = 0;
-            //先清理历史缓存，防止重复加载
-            chatMemory.clear();
+            //按照时间顺序组装记忆窗口
+            List<ChatMessage> messages = new ArrayList<>(historyList.size());
             for (ChatHistory history : historyList) {
                 if (MessageTypeEnum.USER.getValue().equals(history.getMessageType())) {
-                    chatMemory.add(UserMessage.from(history.getMessage()));
-                    loadedCount++;
+                    messages.add(UserMessage.from(history.getMessage()));
                 } else if (MessageTypeEnum.AI.getValue().equals(history.getMessageType())) {
-                    chatMemory.add(AiMessage.from(history.getMessage()));
-                    loadedCount++;
+                    // 旧格式的 AI 消息包含完整文件内容，加载时替换为文件引用
+                    messages.add(AiMessage.from(fileSnapshotManager.compact(history.getMessage())));
                 }
             }
+            // 整个窗口一次写入（覆盖旧记忆），不再逐条 add 导致每条消息都重写一遍 Redis 中的列表
+            chatMemory.set(messages);
+            // 先写窗口再写版本：中途失败时没有版本标记，下次会重新加载
+            setMemoryVersion(versionKey, version);
 
-            log.info("加载对话历史到记忆中，appId={}，加载数量={}", appId, loadedCount);
-            return loadedCount;
+            log.info("加载对话历史到记忆中，appId={}，加载数量={}", appId, messages.size());
+            return messages.size();
         } catch (Exception e) {
             log.error("加载对话历史到记忆中失败，appId={}，错误信息={}", appId, e.getMessage());
             //加载失败不影响系统运行，只是没有历史上下文
@@ -208,4 +511,80 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
         }
     }
 
+
+    /**
+     * 获取应用对话历史的版本（最新一条消息的ID），没有对话历史时返回 null
+     */
+    private String getChatHistoryVersion(Long appId) {
+        QueryWrapper<ChatHistory> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("max(id)")
+                .eq("appId", appId)
+                .eq("isDelete", 0);
+        Object maxId = this.getObj(queryWrapper, id -> id);
+        return maxId == null ? null : maxId.toString();
+    }
+
+
+    /**
+     * 写入记忆版本标记，过期时间与 Redis 对话记忆一致
+     */
+    private void setMemoryVersion(String versionKey, String version) {
+        if (memoryTtlSeconds > 0) {
+            stringRedisTemplate.opsForValue().set(versionKey, version, memoryTtlSeconds, TimeUnit.SECONDS);
+        } else {
+            stringRedisTemplate.opsForValue().set(versionKey, version);
+        }
+    }
+
+
+    /**
+     * 新消息写入数据库后推进记忆版本（同步写库时立即推进，异步写库时在批量写入成功后推进）
+     * 新消息同时由 AI 服务写入 Redis 对话记忆，只有 Redis 中已有完整窗口（存在版本标记）时才推进，
+     * 否则保持缺失，下次加载时从数据库重建
+     */
+    private void advanceMemoryVersion(Long appId, Long chatHistoryId) {
+        try {
+            String versionKey = MEMORY_VERSION_KEY_PREFIX + appId;
+            if (memoryTtlSeconds > 0) {
+                stringRedisTemplate.opsForValue().setIfPresent(versionKey, chatHistoryId.toString(),
+                        memoryTtlSeconds, TimeUnit.SECONDS);
+            } else {
+                stringRedisTemplate.opsForValue().setIfPresent(versionKey, chatHistoryId.toString());
+            }
+        } catch (Exception e) {
+            // 版本没有推进只会导致下次多加载一次
+            log.warn("更新对话记忆版本失败，appId={}，错误信息={}", appId, e.getMessage());
+        }
+    }
+
+
+    /**
+     * 删除记忆版本标记，下次加载时从数据库重建 Redis 中的记忆窗口
+     * 错误消息不会进入 Redis 对话记忆（AI 服务中可能只留下了没有回复的用户消息），不能把版本推进到错误消息
+     */
+    private void markMemoryStale(Long appId) {
+        try {
+            stringRedisTemplate.delete(MEMORY_VERSION_KEY_PREFIX + appId);
+        } catch (Exception e) {
+            log.warn("删除对话记忆版本失败，appId={}，错误信息={}", appId, e.getMessage());
+        }
+    }
+
+
+    private static boolean isErrorMessage(ChatHistory chatHistory) {
+        return MessageTypeEnum.ERROR.getValue().equals(chatHistory.getMessageType());
+    }
+
+
+    @Override
+    public List<Long> listRecentActiveAppIds(LocalDateTime since, int limit) {
+        QueryWrapper<ChatHistory> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("appId")
+                .ge("createTime", since)
+                .groupBy("appId")
+                .orderByDesc("max(createTime)")
+                .last("limit " + limit);
+        return this.listObjs(queryWrapper, appId -> ((Number) appId).longValue());
+    }
+
 }
@@ -20,13 +20,13 @@ class AiCodeGeneratorServiceTest {
 
     @Test
     void GenerateHtmlCode(){
-        HtmlCodeResult htmlCodeResult = aiCodeGeneratorService.generateHtmlCode("请帮我生成一个简单的个人简介网页代码，包含姓名、照片和自我介绍。");
+        HtmlCodeResult htmlCodeResult = aiCodeGeneratorService.generateHtmlCode(0L, "请帮我生成一个简单的个人简介网页代码，包含姓名、照片和自我介绍。");
         Assertions.assertNotNull(htmlCodeResult);
     }
 
     @Test
     void GenerateMultiFileCode(){
-        MultiFileCodeResult multiFileCodeResult = aiCodeGeneratorService.generateMultiFileCode("请帮我生成一个留言板页面");
+        MultiFileCodeResult multiFileCodeResult = aiCodeGeneratorService.generateMultiFileCode(0L, "请帮我生成一个留言板页面");
         Assertions.assertNotNull(multiFileCodeResult);
     }
 
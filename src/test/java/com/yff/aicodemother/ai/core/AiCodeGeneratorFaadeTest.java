@@ -1,6 +1,8 @@
 package com.yff.aicodemother.ai.core;
 
 import com.yff.aicodemother.ai.model.enums.CodeGenTypeEnum;
+import com.yff.aicodemother.ai.model.message.AiResponseMessage;
+import com.yff.aicodemother.ai.model.message.StreamMessage;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -8,6 +10,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import reactor.core.publisher.Flux;
 
 import java.util.List;
+import java.util.stream.Collectors;
 
 
 @SpringBootTest
@@ -20,11 +23,14 @@ class AiCodeGeneratorFaadeTest {
     @Test
     void generateVueProjectCodeStream() {
 
-        Flux<String> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream("简单的任务记录网站", CodeGenTypeEnum.VUE_PROJECT, 1L);
-        List<String> result = codeStream.collectList().block();
+        Flux<StreamMessage> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream("简单的任务记录网站", CodeGenTypeEnum.VUE_PROJECT, 1L);
+        List<StreamMessage> result = codeStream.collectList().block();
 
         Assertions.assertNotNull(result);
-        String join = String.join("", result);
+        String join = result.stream()
+                .filter(message -> message instanceof AiResponseMessage)
+                .map(message -> ((AiResponseMessage) message).getData())
+                .collect(Collectors.joining());
         Assertions.assertNotNull(join);
 
 
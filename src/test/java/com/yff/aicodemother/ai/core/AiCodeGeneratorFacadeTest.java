@@ -1,6 +1,8 @@
 package com.yff.aicodemother.ai.core;
 
 import com.yff.aicodemother.ai.model.enums.CodeGenTypeEnum;
+import com.yff.aicodemother.ai.model.message.AiResponseMessage;
+import com.yff.aicodemother.ai.model.message.StreamMessage;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,6 +11,7 @@ import reactor.core.publisher.Flux;
 
 import java.io.File;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -32,13 +35,15 @@ class AiCodeGeneratorFacadeTest {
     @Test
     void generateAndSaveCodeStream() {
 
-        Flux<String> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream("任务记录网站", CodeGenTypeEnum.MULTI_FILE,1L);
+        Flux<StreamMessage> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream("任务记录网站", CodeGenTypeEnum.MULTI_FILE,1L);
 
         //阻塞等待所有的数据收集完成
-        List<String> result = codeStream.collectList().block();
+        List<StreamMessage> result = codeStream.collectList().block();
 
         Assertions.assertNotNull(result);
-        String completeContent = String.join("", result);
+        String completeContent = result.stream()
+                .map(message -> ((AiResponseMessage) message).getData())
+                .collect(Collectors.joining());
         Assertions.assertNotNull(completeContent);
 
     }
@@ -0,0 +1,118 @@
+package com.yff.aicodemother.ai.core;
+
+import com.yff.aicodemother.ai.AiCodeGeneratorServiceFactory;
+import com.yff.aicodemother.ai.core.GenerationContextPreparer.PreparedGeneration;
+import com.yff.aicodemother.ai.model.enums.CodeGenTypeEnum;
+import com.yff.aicodemother.ai.routing.CachedCodeGenTypeRouter;
+import com.yff.aicodemother.mapper.AppMapper;
+import com.yff.aicodemother.model.dto.chathistory.ChatHistoryAddRequest;
+import com.yff.aicodemother.model.entity.App;
+import com.yff.aicodemother.model.entity.User;
+import com.yff.aicodemother.service.ChatHistoryService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+class GenerationContextPreparerTest {
+
+    /**
+     * route 和 save_history 都开始执行后才放行，串行执行时先开始的阶段会等待超时
+     */
+    private final CountDownLatch bothStarted = new CountDownLatch(2);
+
+    private final List<ChatHistoryAddRequest> savedMessages = new ArrayList<>();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final AtomicLong historySavedAt = new AtomicLong();
+
+    private final AtomicLong serviceLoadedAt = new AtomicLong();
+
+    private GenerationContextPreparer preparer;
+
+    private CachedCodeGenTypeRouter router;
+
+    @BeforeEach
+    void setUp() {
+        preparer = new GenerationContextPreparer(meterRegistry);
+        router = Mockito.mock(CachedCodeGenTypeRouter.class);
+        ChatHistoryService chatHistoryService = Mockito.mock(ChatHistoryService.class);
+        AiCodeGeneratorServiceFactory factory = Mockito.mock(AiCodeGeneratorServiceFactory.class);
+        Mockito.when(router.route(Mockito.anyString())).thenAnswer(invocation -> {
+            awaitBothStarted();
+            return CodeGenTypeEnum.HTML;
+        });
+        Mockito.when(chatHistoryService.saveChatMessage(Mockito.any())).thenAnswer(invocation -> {
+            ChatHistoryAddRequest request = invocation.getArgument(0);
+            synchronized (savedMessages) {
+                savedMessages.add(request);
+            }
+            if ("user".equals(request.getMessageType())) {
+                awaitBothStarted();
+                historySavedAt.set(System.nanoTime());
+            }
+            return 1L;
+        });
+        Mockito.when(factory.getAiCodeGeneratorService(Mockito.anyLong(), Mockito.any())).thenAnswer(invocation -> {
+            serviceLoadedAt.set(System.nanoTime());
+            return null;
+        });
+        ReflectionTestUtils.setField(preparer, "cachedCodeGenTypeRouter", router);
+        ReflectionTestUtils.setField(preparer, "appMapper", Mockito.mock(AppMapper.class));
+        ReflectionTestUtils.setField(preparer, "chatHistoryService", chatHistoryService);
+        ReflectionTestUtils.setField(preparer, "aiCodeGeneratorServiceFactory", factory);
+    }
+
+
+    @Test
+    void routingAndHistoryPersistenceOverlap() {
+        App app = new App();
+        app.setId(1L);
+        app.setCodeGenType("auto");
+        User user = new User();
+        user.setId(10L);
+
+        PreparedGeneration prepared = preparer.prepare(app, "做一个个人博客", user);
+
+        Assertions.assertEquals(CodeGenTypeEnum.HTML, prepared.getCodeGenType());
+        Assertions.assertEquals("做一个个人博客", prepared.getPrompt());
+        // 加载对话记忆必须在用户消息保存之后
+        Assertions.assertTrue(serviceLoadedAt.get() >= historySavedAt.get());
+        Assertions.assertEquals(1, meterRegistry.get("ai.generation.prepare").tag("stage", "route").timer().count());
+    }
+
+
+    @Test
+    void routingFailureIsRethrownAndRecordedAfterUserMessage() {
+        Mockito.doAnswer(invocation -> {
+            awaitBothStarted();
+            throw new IllegalStateException("routing down");
+        }).when(router).route(Mockito.anyString());
+        App app = new App();
+        app.setId(1L);
+        User user = new User();
+        user.setId(10L);
+        Assertions.assertThrows(IllegalStateException.class, () -> preparer.prepare(app, "做一个个人博客", user));
+
+        // 用户消息已经并行保存，补写错误消息，不留下没有回复的用户消息
+        Assertions.assertEquals(List.of("user", "error"),
+                savedMessages.stream().map(ChatHistoryAddRequest::getMessageType).toList());
+        Assertions.assertEquals("生成准备失败：routing down", savedMessages.get(1).getMessage());
+    }
+
+
+    private void awaitBothStarted() throws InterruptedException {
+        bothStarted.countDown();
+        Assertions.assertTrue(bothStarted.await(5, TimeUnit.SECONDS), "route 和 save_history 没有并行执行");
+    }
+
+}
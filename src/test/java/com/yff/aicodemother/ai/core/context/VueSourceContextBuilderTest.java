@@ -0,0 +1,61 @@
+package com.yff.aicodemother.ai.core.context;
+
+import cn.hutool.core.io.FileUtil;
+import com.yff.aicodemother.constant.AppConstant;
+import dev.langchain4j.model.openai.OpenAiTokenCountEstimator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+class VueSourceContextBuilderTest {
+
+    private static final long APP_ID = 9_000_000_001L;
+
+    private final Path projectRoot = Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, "vue_project_" + APP_ID);
+
+    private VueSourceContextBuilder builder;
+
+    @BeforeEach
+    void setUp() {
+        builder = new VueSourceContextBuilder();
+        ReflectionTestUtils.setField(builder, "tokenCountEstimator", new OpenAiTokenCountEstimator("gpt-4o"));
+        ReflectionTestUtils.setField(builder, "maxTokens", 200);
+        ReflectionTestUtils.setField(builder, "verifyIntervalSeconds", 300L);
+        FileUtil.writeUtf8String("<template><div>{{ title }}</div></template>", projectRoot.resolve("src/App.vue").toFile());
+        FileUtil.writeUtf8String("const big = 1;\n".repeat(100), projectRoot.resolve("src/utils/big.js").toFile());
+    }
+
+    @AfterEach
+    void tearDown() {
+        FileUtil.del(projectRoot);
+    }
+
+
+    @Test
+    void largeFilesAreOutlinedAndTemplateSyntaxIsEscaped() {
+        String context = builder.build(APP_ID, "修改标题");
+
+        Assertions.assertTrue(context.contains("<div>{ { title } }</div>"));
+        Assertions.assertTrue(context.contains("--- src/utils/big.js（共 100 行，内容已省略）---"));
+    }
+
+
+    @Test
+    void indexIsUpdatedByWritesWithoutRescanningDisk() {
+        builder.build(APP_ID, "修改标题");
+        Path appVue = projectRoot.resolve("src/App.vue");
+        // 磁盘上的外部修改在校验间隔内不会重新读取
+        FileUtil.writeUtf8String("<template>external</template>", appVue.toFile());
+        Assertions.assertFalse(builder.build(APP_ID, "修改标题").contains("external"));
+
+        FileUtil.writeUtf8String("<template>written</template>", appVue.toFile());
+        builder.onFileWritten(APP_ID, appVue, "<template>written</template>");
+        Assertions.assertTrue(builder.build(APP_ID, "修改标题").contains("<template>written</template>"));
+    }
+
+}
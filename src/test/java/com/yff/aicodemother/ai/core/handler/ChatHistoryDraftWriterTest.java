@@ -0,0 +1,137 @@
+package com.yff.aicodemother.ai.core.handler;
+
+import com.yff.aicodemother.ai.model.message.AiResponseMessage;
+import com.yff.aicodemother.ai.model.message.StreamMessage;
+import com.yff.aicodemother.model.dto.chathistory.ChatHistoryAddRequest;
+import com.yff.aicodemother.model.entity.User;
+import com.yff.aicodemother.model.enums.MessageTypeEnum;
+import com.yff.aicodemother.service.ChatHistoryService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+class ChatHistoryDraftWriterTest {
+
+    private static final long DRAFT_ID = 42L;
+
+    private final List<ChatHistoryAddRequest> checkpoints = new ArrayList<>();
+
+    private final List<ChatHistoryAddRequest> saved = new ArrayList<>();
+
+    private ChatHistoryService chatHistoryService;
+
+    private SimpleTextStreamHandler handler;
+
+    private final User user = new User();
+
+    @BeforeEach
+    void setUp() {
+        chatHistoryService = (ChatHistoryService) Proxy.newProxyInstance(ChatHistoryService.class.getClassLoader(),
+                new Class<?>[]{ChatHistoryService.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "saveDraftCheckpoint" -> {
+                        checkpoints.add((ChatHistoryAddRequest) args[0]);
+                        yield DRAFT_ID;
+                    }
+                    case "saveChatMessage" -> {
+                        saved.add((ChatHistoryAddRequest) args[0]);
+                        yield 1L;
+                    }
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+        ChatHistoryDraftWriter writer = new ChatHistoryDraftWriter(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(writer, "enabled", true);
+        // 间隔足够长，只按字符数触发检查点
+        ReflectionTestUtils.setField(writer, "intervalMillis", 60_000L);
+        ReflectionTestUtils.setField(writer, "maxChars", 10);
+        handler = new SimpleTextStreamHandler();
+        ReflectionTestUtils.setField(handler, "chatHistoryDraftWriter", writer);
+        user.setId(7L);
+    }
+
+
+    @Test
+    void checkpointsCarryFullContentAndFinalMessageReplacesDraft() {
+        handler.handle(chunks("0123456", "789ab", "cde", "fghijklmn", "op"), chatHistoryService, 1L, user)
+                .blockLast();
+
+        // 每次检查点写入到目前为止的完整内容，首次没有草稿ID，之后覆盖同一条草稿
+        Assertions.assertEquals(List.of("0123456789ab", "0123456789abcdefghijklmn"),
+                checkpoints.stream().map(ChatHistoryAddRequest::getMessage).toList());
+        Assertions.assertNull(checkpoints.get(0).getDraftId());
+        Assertions.assertEquals(DRAFT_ID, checkpoints.get(1).getDraftId());
+
+        Assertions.assertEquals(1, saved.size());
+        Assertions.assertEquals("0123456789abcdefghijklmnop", saved.getFirst().getMessage());
+        Assertions.assertEquals(MessageTypeEnum.AI.getValue(), saved.getFirst().getMessageType());
+        Assertions.assertEquals(DRAFT_ID, saved.getFirst().getDraftId());
+    }
+
+
+    @Test
+    void longRepliesCheckpointLessOften() {
+        String[] chunks = new String[10];
+        Arrays.fill(chunks, "0123456789");
+        handler.handle(chunks(chunks), chatHistoryService, 1L, user).blockLast();
+
+        // 每次检查点前未写入的内容至少与已写入的一样多，写入总量不超过最终长度的两倍
+        Assertions.assertEquals(List.of(10, 20, 40, 80),
+                checkpoints.stream().map(request -> request.getMessage().length()).toList());
+    }
+
+
+    @Test
+    void errorAfterCheckpointKeepsGeneratedContent() {
+        Flux<StreamMessage> failing = chunks("0123456789ab", "cd")
+                .concatWith(Flux.error(new IllegalStateException("timeout")));
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> handler.handle(failing, chatHistoryService, 1L, user).blockLast());
+
+        Assertions.assertEquals(2, saved.size());
+        Assertions.assertEquals("0123456789abcd", saved.get(0).getMessage());
+        Assertions.assertEquals(DRAFT_ID, saved.get(0).getDraftId());
+        Assertions.assertEquals("AI 回复失败：timeout", saved.get(1).getMessage());
+        Assertions.assertNull(saved.get(1).getDraftId());
+    }
+
+
+    @Test
+    void failedCheckpointDoesNotStopLaterCheckpoints() {
+        ChatHistoryService flaky = (ChatHistoryService) Proxy.newProxyInstance(ChatHistoryService.class.getClassLoader(),
+                new Class<?>[]{ChatHistoryService.class}, (proxy, method, args) -> {
+                    if ("saveDraftCheckpoint".equals(method.getName()) && checkpoints.isEmpty()) {
+                        checkpoints.add(null);
+                        throw new IllegalStateException("queue unavailable");
+                    }
+                    return method.invoke(chatHistoryService, args);
+                });
+        handler.handle(chunks("0123456789ab", "cdefghijklmn", "op"), flaky, 1L, user).blockLast();
+
+        Assertions.assertEquals("0123456789abcdefghijklmn", checkpoints.get(1).getMessage());
+        Assertions.assertNull(checkpoints.get(1).getDraftId());
+        Assertions.assertEquals(DRAFT_ID, saved.getFirst().getDraftId());
+    }
+
+
+    @Test
+    void shortResponseIsSavedOnceWithoutDraft() {
+        handler.handle(chunks("hi"), chatHistoryService, 1L, user).blockLast();
+
+        Assertions.assertTrue(checkpoints.isEmpty());
+        Assertions.assertEquals(1, saved.size());
+        Assertions.assertNull(saved.getFirst().getDraftId());
+    }
+
+
+    private static Flux<StreamMessage> chunks(String... chunks) {
+        return Flux.fromArray(chunks).<StreamMessage>map(AiResponseMessage::new);
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.yff.aicodemother.ai.core.parser;
+
+import com.yff.aicodemother.ai.model.HtmlCodeResult;
+import com.yff.aicodemother.ai.model.MultiFileCodeResult;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class StreamingCodeParserTest {
+
+    private static final String MULTI_FILE_OUTPUT = """
+            好的，下面是一个简单的任务记录网站，使用 `localStorage` 保存数据：
+
+            ```html
+            <!DOCTYPE html>
+            <html>
+            <body><div id="app"></div><script src="script.js"></script></body>
+            </html>
+            ```
+
+            ```CSS
+            body { margin: 0; }
+            ```
+
+            ```javascript
+            const tpl = `<li>${task}</li>`;
+            document.getElementById('app').innerHTML = tpl;
+            ```
+            以上就是全部代码。
+            """;
+
+
+    @Test
+    void multiFileMatchesRegexParserForAnyChunkSize() {
+        MultiFileCodeResult expected = new MultiFileCodeParser().parseCode(MULTI_FILE_OUTPUT);
+        for (int chunkSize = 1; chunkSize <= 16; chunkSize++) {
+            MultiFileStreamingCodeParser parser = new MultiFileStreamingCodeParser();
+            feed(parser, MULTI_FILE_OUTPUT, chunkSize);
+            MultiFileCodeResult actual = parser.complete();
+            Assertions.assertEquals(expected.getHtmlCode(), actual.getHtmlCode(), "chunkSize=" + chunkSize);
+            Assertions.assertEquals(expected.getCssCode(), actual.getCssCode(), "chunkSize=" + chunkSize);
+            Assertions.assertEquals(expected.getJsCode(), actual.getJsCode(), "chunkSize=" + chunkSize);
+        }
+    }
+
+
+    @Test
+    void htmlFallsBackToWholeContentWithoutFence() {
+        String output = "<html><body>hello</body></html>\n";
+        HtmlStreamingCodeParser parser = new HtmlStreamingCodeParser();
+        feed(parser, output, 3);
+        HtmlCodeResult result = parser.complete();
+        Assertions.assertEquals(new HtmlCodeParser().parseCode(output).getHtmlCode(), result.getHtmlCode());
+    }
+
+
+    @Test
+    void unterminatedBlockIsKeptOnComplete() {
+        HtmlStreamingCodeParser parser = new HtmlStreamingCodeParser();
+        parser.append("```html\n<div>");
+        parser.append("partial</div>`");
+        Assertions.assertEquals("<div>partial</div>`", parser.complete().getHtmlCode());
+    }
+
+
+    private static void feed(StreamingCodeParser<?> parser, String output, int chunkSize) {
+        for (int i = 0; i < output.length(); i += chunkSize) {
+            parser.append(output.substring(i, Math.min(output.length(), i + chunkSize)));
+        }
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.yff.aicodemother.ai.core.saver;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.stream.Stream;
+
+class StreamingCodeFileSaverTest {
+
+    @TempDir
+    Path tempDir;
+
+
+    @Test
+    void writesEachBlockAndRenamesOnClose() throws IOException {
+        StreamingCodeFileSaver saver = new StreamingCodeFileSaver(tempDir.toString(),
+                Map.of("html", "index.html", "css", "style.css", "js", "script.js"), null);
+        saver.append("说明文字\n```ht");
+        saver.append("ml\n\n  <div>中文😀</div>  \n");
+        // 围栏未闭合前只有临时文件
+        Assertions.assertFalse(Files.exists(tempDir.resolve("index.html")));
+        saver.append("``");
+        saver.append("`\n```css\nbody{}\n```\n");
+
+        File dir = saver.complete();
+        Assertions.assertEquals(tempDir.toFile(), dir);
+        Assertions.assertEquals("<div>中文😀</div>", Files.readString(tempDir.resolve("index.html")));
+        Assertions.assertEquals("body{}", Files.readString(tempDir.resolve("style.css")));
+        Assertions.assertFalse(Files.exists(tempDir.resolve("script.js")));
+        try (Stream<Path> files = Files.list(tempDir)) {
+            Assertions.assertEquals(2, files.count());
+        }
+    }
+
+
+    @Test
+    void abortRemovesTempFile() throws IOException {
+        StreamingCodeFileSaver saver = new StreamingCodeFileSaver(tempDir.toString(), Map.of("html", "index.html"),
+                "index.html");
+        saver.append("```html\n<p>half");
+        saver.abort();
+        try (Stream<Path> files = Files.list(tempDir)) {
+            Assertions.assertEquals(0, files.count());
+        }
+    }
+
+}
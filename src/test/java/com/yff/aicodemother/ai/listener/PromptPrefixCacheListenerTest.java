@@ -0,0 +1,51 @@
+package com.yff.aicodemother.ai.listener;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.openai.OpenAiTokenCountEstimator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+class PromptPrefixCacheListenerTest {
+
+    @Test
+    void unchangedPrefixIsCountedAsCacheable() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        PromptPrefixCacheListener listener = new PromptPrefixCacheListener(meterRegistry);
+        ReflectionTestUtils.setField(listener, "tokenCountEstimator", new OpenAiTokenCountEstimator("gpt-4o"));
+        SystemMessage system = SystemMessage.from("你是一位资深的 Vue 前端开发工程师");
+        UserMessage first = UserMessage.from("做一个博客");
+
+        listener.record(List.of(system, first));
+        double missAfterFirstTurn = meterRegistry.get("ai.llm.prompt.prefix.tokens").tag("cache", "miss").counter().count();
+        listener.record(List.of(system, first, AiMessage.from("好的"), UserMessage.from("把标题改成红色")));
+
+        double hit = meterRegistry.get("ai.llm.prompt.prefix.tokens").tag("cache", "hit").counter().count();
+        Assertions.assertEquals(missAfterFirstTurn, hit);
+        // 前缀中间有变化后，之后的消息都不能命中
+        listener.record(List.of(SystemMessage.from("另一个系统提示词"), first));
+        Assertions.assertEquals(hit, meterRegistry.get("ai.llm.prompt.prefix.tokens").tag("cache", "hit").counter().count());
+    }
+
+
+    @Test
+    void toolLoopStepsAreNotRecorded() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        PromptPrefixCacheListener listener = new PromptPrefixCacheListener(meterRegistry);
+        ReflectionTestUtils.setField(listener, "tokenCountEstimator", new OpenAiTokenCountEstimator("gpt-4o"));
+        ToolExecutionRequest request = ToolExecutionRequest.builder().id("1").name("writeFile").arguments("{}").build();
+
+        listener.record(List.of(SystemMessage.from("系统提示词"), UserMessage.from("做一个博客"), AiMessage.from(request),
+                ToolExecutionResultMessage.from(request, "ok")));
+
+        Assertions.assertEquals(0, meterRegistry.get("ai.llm.prompt.prefix.tokens").tag("cache", "miss").counter().count());
+    }
+
+}
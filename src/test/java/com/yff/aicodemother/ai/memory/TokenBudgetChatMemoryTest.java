@@ -0,0 +1,131 @@
+package com.yff.aicodemother.ai.memory;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+class TokenBudgetChatMemoryTest {
+
+    /**
+     * 按字符数计 token，便于构造用例
+     */
+    private static final TokenCountEstimator LENGTH_ESTIMATOR = new TokenCountEstimator() {
+        @Override
+        public int estimateTokenCountInText(String text) {
+            return text.length();
+        }
+
+        @Override
+        public int estimateTokenCountInMessage(ChatMessage message) {
+            return switch (message) {
+                case UserMessage userMessage -> userMessage.singleText().length();
+                case AiMessage aiMessage -> aiMessage.text() == null ? 1 : aiMessage.text().length();
+                case SystemMessage systemMessage -> systemMessage.text().length();
+                case ToolExecutionResultMessage resultMessage -> resultMessage.text().length();
+                default -> 0;
+            };
+        }
+
+        @Override
+        public int estimateTokenCountInMessages(Iterable<ChatMessage> messages) {
+            int total = 0;
+            for (ChatMessage message : messages) {
+                total += estimateTokenCountInMessage(message);
+            }
+            return total;
+        }
+    };
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private TokenBudgetChatMemory memory;
+
+    @BeforeEach
+    void setUp() {
+        memory = new TokenBudgetChatMemory(1L, new InMemoryChatMemoryStore(), 10, LENGTH_ESTIMATOR,
+                DistributionSummary.builder("window").register(meterRegistry),
+                Counter.builder("evicted").register(meterRegistry), UnaryOperator.identity());
+    }
+
+
+    @Test
+    void evictsOldestTurnsToFitBudgetAndKeepsSystemMessage() {
+        memory.add(SystemMessage.from("sys"));
+        memory.add(UserMessage.from("aaaa"));
+        memory.add(AiMessage.from("bbbb"));
+        memory.add(UserMessage.from("cc"));
+
+        // 整轮淘汰，不留下没有用户消息的 AI 回复
+        Assertions.assertEquals(List.of(SystemMessage.from("sys"), UserMessage.from("cc")), memory.messages());
+        Assertions.assertEquals(2, meterRegistry.get("evicted").counter().count());
+        Assertions.assertEquals(5, meterRegistry.get("window").summary().max());
+    }
+
+
+    @Test
+    void latestMessageIsKeptEvenIfItExceedsBudget() {
+        memory.add(UserMessage.from("aa"));
+        memory.add(UserMessage.from("x".repeat(50)));
+
+        Assertions.assertEquals(List.of(UserMessage.from("x".repeat(50))), memory.messages());
+    }
+
+
+    @Test
+    void toolResultsAreEvictedWithTheirRequest() {
+        ToolExecutionRequest request = ToolExecutionRequest.builder().id("1").name("writeFile").arguments("{}").build();
+        memory.set(List.of(AiMessage.from(request), ToolExecutionResultMessage.from(request, "ok"),
+                AiMessage.from("done"), UserMessage.from("next")));
+
+        // 淘汰到预算的 75% 以下，窗口开头在之后几轮保持不变
+        Assertions.assertEquals(List.of(UserMessage.from("next")), memory.messages());
+    }
+
+
+    @Test
+    void currentTurnIsKeptWhenBudgetOverflowsMidToolLoop() {
+        ToolExecutionRequest first = ToolExecutionRequest.builder().id("1").name("readFile").arguments("{}").build();
+        ToolExecutionRequest second = ToolExecutionRequest.builder().id("2").name("writeFile").arguments("{}").build();
+        memory.add(SystemMessage.from("s"));
+        memory.add(UserMessage.from("q1"));
+        memory.add(AiMessage.from("a1"));
+        memory.add(UserMessage.from("build"));
+        memory.add(AiMessage.from(first));
+        memory.add(ToolExecutionResultMessage.from(first, "ok"));
+        memory.add(AiMessage.from(second));
+        // 本轮单独已超出预算：之前的轮次全部淘汰，本轮的用户消息和工具调用都保留
+        memory.add(ToolExecutionResultMessage.from(second, "done!"));
+
+        Assertions.assertEquals(List.of(SystemMessage.from("s"), UserMessage.from("build"), AiMessage.from(first),
+                ToolExecutionResultMessage.from(first, "ok"), AiMessage.from(second),
+                ToolExecutionResultMessage.from(second, "done!")), memory.messages());
+        Assertions.assertEquals(2, meterRegistry.get("evicted").counter().count());
+    }
+
+
+    @Test
+    void toolResultIsNeverOrphaned() {
+        ToolExecutionRequest request = ToolExecutionRequest.builder().id("1").name("writeFile").arguments("{}").build();
+        memory.set(List.of(UserMessage.from("q1"), AiMessage.from("a1"), UserMessage.from("current"),
+                AiMessage.from(request), ToolExecutionResultMessage.from(request, "result")));
+
+        // 最后一条是工具执行结果时，发起调用的 AI 消息也属于当前这一轮，不会被淘汰
+        Assertions.assertEquals(List.of(UserMessage.from("current"), AiMessage.from(request),
+                ToolExecutionResultMessage.from(request, "result")), memory.messages());
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.yff.aicodemother.ai.mock;
+
+import cn.hutool.core.io.resource.ResourceUtil;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.CompleteToolCall;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.output.FinishReason;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+class MockStreamingChatModelTest {
+
+    private final MockStreamingChatModel model = new MockStreamingChatModel(new MockTranscripts(),
+            new MockLatency(0, 0, 0), 4, List.of());
+
+    @Test
+    void replaysHtmlTranscriptTokenByToken() throws Exception {
+        ChatRequest request = ChatRequest.builder()
+                .messages(SystemMessage.from(ResourceUtil.readUtf8Str("prompt/codegen-html-system-prompt.txt")),
+                        UserMessage.from("做一个博客"))
+                .build();
+        StringBuilder streamed = new StringBuilder();
+        ChatResponse response = chat(request, streamed, new ArrayList<>());
+
+        Assertions.assertEquals(FinishReason.STOP, response.finishReason());
+        Assertions.assertEquals(response.aiMessage().text(), streamed.toString());
+        Assertions.assertTrue(streamed.toString().contains("```html"));
+    }
+
+    @Test
+    void vueRequestAdvancesToolCallStepsAfterEachExecution() throws Exception {
+        SystemMessage system = SystemMessage.from(ResourceUtil.readUtf8Str("prompt/codegen-vue-project-system-prompt.txt"));
+        UserMessage user = UserMessage.from("做一个作品集");
+        List<ToolSpecification> tools = List.of(ToolSpecification.builder().name("writeFile").build());
+
+        List<CompleteToolCall> toolCalls = new ArrayList<>();
+        ChatResponse first = chat(ChatRequest.builder().messages(system, user).toolSpecifications(tools).build(),
+                new StringBuilder(), toolCalls);
+        Assertions.assertEquals(FinishReason.TOOL_EXECUTION, first.finishReason());
+        Assertions.assertEquals(first.aiMessage().toolExecutionRequests().size(), toolCalls.size());
+        Assertions.assertTrue(toolCalls.getFirst().toolExecutionRequest().arguments().contains("relativePath"));
+
+        AiMessage firstMessage = first.aiMessage();
+        List<ChatMessage> messages = new ArrayList<>(List.of(system, user, firstMessage));
+        firstMessage.toolExecutionRequests().forEach(call -> messages.add(ToolExecutionResultMessage.from(call, "ok")));
+        ChatResponse second = chat(ChatRequest.builder().messages(messages).toolSpecifications(tools).build(),
+                new StringBuilder(), new ArrayList<>());
+        Assertions.assertNotEquals(firstMessage.text(), second.aiMessage().text());
+    }
+
+    private ChatResponse chat(ChatRequest request, StringBuilder streamed, List<CompleteToolCall> toolCalls)
+            throws Exception {
+        CompletableFuture<ChatResponse> future = new CompletableFuture<>();
+        model.doChat(request, new StreamingChatResponseHandler() {
+            @Override
+            public void onPartialResponse(String partialResponse) {
+                streamed.append(partialResponse);
+            }
+
+            @Override
+            public void onCompleteToolCall(CompleteToolCall completeToolCall) {
+                toolCalls.add(completeToolCall);
+            }
+
+            @Override
+            public void onCompleteResponse(ChatResponse completeResponse) {
+                future.complete(completeResponse);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                future.completeExceptionally(error);
+            }
+        });
+        return future.get(10, TimeUnit.SECONDS);
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.yff.aicodemother.ai.routing;
+
+import com.yff.aicodemother.ai.model.enums.CodeGenTypeEnum;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class CachedCodeGenTypeRouterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final AtomicInteger modelCalls = new AtomicInteger();
+
+    private ValueOperations<String, String> valueOperations;
+
+    private CachedCodeGenTypeRouter router;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        router = new CachedCodeGenTypeRouter(meterRegistry);
+        StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
+        valueOperations = Mockito.mock(ValueOperations.class);
+        Mockito.when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        ReflectionTestUtils.setField(router, "stringRedisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(router, "redisTtlDays", 7L);
+        ReflectionTestUtils.setField(router, "aiCodeGenTypeRoutingService", (AiCodeGenTypeRoutingService) prompt -> {
+            modelCalls.incrementAndGet();
+            return CodeGenTypeEnum.MULTI_FILE;
+        });
+    }
+
+
+    @Test
+    void nearDuplicatePromptsHitLocalCache() {
+        Assertions.assertEquals(CodeGenTypeEnum.MULTI_FILE, router.route("做一个个人博客"));
+        Assertions.assertEquals(CodeGenTypeEnum.MULTI_FILE, router.route(" 做一个 个人博客。"));
+        Assertions.assertEquals(1, modelCalls.get());
+        Mockito.verify(valueOperations).set(Mockito.startsWith("ai:routing:"), Mockito.eq("MULTI_FILE"),
+                Mockito.eq(7L), Mockito.eq(TimeUnit.DAYS));
+        Assertions.assertEquals(1.0, meterRegistry.get("ai.routing.lookups").tag("tier", "local").counter().count());
+    }
+
+
+    @Test
+    void redisHitSkipsModel() {
+        Mockito.when(valueOperations.get(Mockito.anyString())).thenReturn("HTML");
+        Assertions.assertEquals(CodeGenTypeEnum.HTML, router.route("做一个倒计时页面"));
+        Assertions.assertEquals(0, modelCalls.get());
+    }
+
+
+    @Test
+    void redisFailureFallsBackToModel() {
+        Mockito.when(valueOperations.get(Mockito.anyString())).thenThrow(new IllegalStateException("down"));
+        Assertions.assertEquals(CodeGenTypeEnum.MULTI_FILE, router.route("做一个倒计时页面"));
+        Assertions.assertEquals(1, modelCalls.get());
+    }
+
+
+    @Test
+    void explicitTypeIsClassifiedByKeyword() {
+        Assertions.assertEquals(CodeGenTypeEnum.VUE_PROJECT, router.route("用 Vue 做一个后台管理系统"));
+        Assertions.assertEquals(CodeGenTypeEnum.HTML, router.route("生成单个 HTML 文件的计算器"));
+        Assertions.assertNull(CachedCodeGenTypeRouter.classifyByKeyword(
+                CachedCodeGenTypeRouter.normalize("用vue或者多文件都行")));
+        Assertions.assertEquals(0, modelCalls.get());
+    }
+
+
+    @Test
+    void negatedKeywordFallsBackToModel() {
+        Assertions.assertEquals(CodeGenTypeEnum.MULTI_FILE, router.route("做一个博客，不要用vue"));
+        Assertions.assertNull(CachedCodeGenTypeRouter.classifyByKeyword(
+                CachedCodeGenTypeRouter.normalize("I don't want Vue, just a landing page")));
+        Assertions.assertNull(CachedCodeGenTypeRouter.classifyByKeyword(
+                CachedCodeGenTypeRouter.normalize("无需多文件，简单页面")));
+        Assertions.assertEquals(1, modelCalls.get());
+    }
+
+}
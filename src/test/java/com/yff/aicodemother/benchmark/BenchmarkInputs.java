@@ -0,0 +1,116 @@
+package com.yff.aicodemother.benchmark;
+
+import cn.hutool.json.JSONUtil;
+import com.yff.aicodemother.ai.model.message.AiResponseMessage;
+import com.yff.aicodemother.ai.model.message.StreamMessage;
+import com.yff.aicodemother.ai.model.message.ToolExecutedMessage;
+import com.yff.aicodemother.ai.model.message.ToolRequestMessage;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.model.chat.response.PartialToolCall;
+import dev.langchain4j.service.tool.ToolExecution;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 基准测试输入：按目标大小生成接近真实模型输出的文本，并按 token 粒度（1~8 个字符，平均约 4 个）切分为流式片段
+ *
+ * @author yff
+ * @date 2026-10-18 20:12:37
+ */
+final class BenchmarkInputs {
+
+    private static final String HTML_LINES = """
+                <section class="task-list">
+                    <div class="task-item" data-id="${id}">
+                        <input type="checkbox" class="task-check"> <span class="task-title">完成项目周报</span>
+                        <button class="task-delete" onclick="removeTask(this)">删除</button>
+                    </div>
+                </section>
+            """;
+
+    private static final String CSS_LINES = """
+            .task-item { display: flex; align-items: center; gap: 8px; padding: 10px 0; border-bottom: 1px solid #f0f0f0; }
+            .task-item.done .task-title { text-decoration: line-through; color: #aaa; }
+            """;
+
+    private static final String JS_LINES = """
+            function renderTask(task) {
+                const item = document.createElement('div');
+                item.className = task.done ? 'task-item done' : 'task-item';
+                item.innerHTML = `<span class="task-title">${task.title}</span>`;
+                list.appendChild(item);
+            }
+            """;
+
+    private static final String INTRO = "好的，我将为你创建一个简洁美观的任务记录网站，包含添加、完成和删除任务的功能。\n\n";
+
+    private static final String OUTRO = "\n\n页面使用原生 HTML、CSS 和 JavaScript 实现，任务数据保存在 localStorage 中。\n";
+
+    private BenchmarkInputs() {
+    }
+
+    /**
+     * HTML 模式的完整输出（说明 + 一个 html 代码块 + 结尾说明）
+     */
+    static String htmlOutput(int bytes) {
+        return INTRO + "```html\n<!DOCTYPE html>\n<html lang=\"zh-CN\">\n<body>\n" + repeat(HTML_LINES, bytes)
+                + "</body>\n</html>\n```" + OUTRO;
+    }
+
+    /**
+     * 多文件模式的完整输出（html / css / js 三个代码块，大小约 4:3:3）
+     */
+    static String multiFileOutput(int bytes) {
+        return INTRO
+                + "```html\n" + repeat(HTML_LINES, bytes * 4 / 10) + "```\n\n"
+                + "```css\n" + repeat(CSS_LINES, bytes * 3 / 10) + "```\n\n"
+                + "```js\n" + repeat(JS_LINES, bytes * 3 / 10) + "```" + OUTRO;
+    }
+
+    /**
+     * Vue 工程模式的消息流：每个文件约 8KB，工具参数按 token 粒度流式输出后再执行
+     */
+    static List<StreamMessage> vueMessages(int bytes) {
+        List<StreamMessage> messages = new ArrayList<>();
+        chunks(INTRO).forEach(chunk -> messages.add(new AiResponseMessage(chunk)));
+        int files = Math.max(1, bytes / 8192);
+        for (int i = 0; i < files; i++) {
+            String relativePath = "src/components/TaskList" + i + ".vue";
+            String content = "<template>\n" + repeat(HTML_LINES, Math.min(bytes, 8192)) + "</template>\n";
+            String arguments = JSONUtil.toJsonStr(Map.of("relativePath", relativePath, "content", content));
+            String id = "call_" + i;
+            for (String chunk : chunks(arguments)) {
+                messages.add(new ToolRequestMessage(PartialToolCall.builder()
+                        .index(i).id(id).name("writeFile").partialArguments(chunk).build()));
+            }
+            ToolExecutionRequest request = ToolExecutionRequest.builder()
+                    .id(id).name("writeFile").arguments(arguments).build();
+            messages.add(new ToolExecutedMessage(ToolExecution.builder().request(request).result("ok").build()));
+        }
+        chunks(OUTRO).forEach(chunk -> messages.add(new AiResponseMessage(chunk)));
+        return messages;
+    }
+
+    /**
+     * 按 token 粒度切分（固定随机种子，每次生成的片段相同）
+     */
+    static List<String> chunks(String text) {
+        Random random = new Random(42);
+        List<String> chunks = new ArrayList<>(text.length() / 4 + 1);
+        int start = 0;
+        while (start < text.length()) {
+            int end = Math.min(text.length(), start + 1 + random.nextInt(8));
+            chunks.add(text.substring(start, end));
+            start = end;
+        }
+        return chunks;
+    }
+
+    private static String repeat(String lines, int bytes) {
+        return lines.repeat(Math.max(1, bytes / lines.length()));
+    }
+
+}
@@ -0,0 +1,416 @@
+package com.yff.aicodemother.benchmark;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.RuntimeUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+
+import java.io.File;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * /app/chat/gen/code SSE 端到端压测
+ * 启动 N 个并发 SSE 客户端（每个客户端一个独立用户和应用，避免触发单用户 / 单应用的生成并发限制），每个客户端依次发起若干轮生成，统计：
+ * - 事件吞吐（events/sec）、首个事件时间（time-to-first-event）、相邻事件间隔的 p50 / p99
+ * - 服务端堆内存和线程数（压测期间定时采样 actuator 指标）
+ * 结果按提交记录写入 target/loadtest/，指定基线文件时逐项对比并标出超过阈值的退化，用于发现 StreamHandlerExecutor 和门面层的性能回退。
+ * <p>
+ * 被测服务使用 loadtest 配置启动（模拟模型，不调用模型服务商，需要本地 MySQL 和 Redis Stack）：
+ * mvn spring-boot:run -Dspring-boot.run.profiles=local,loadtest
+ * 运行方式：直接执行 main 方法，参数通过系统属性传入，例如
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.main=com.yff.aicodemother.benchmark.ChatToGenCodeLoadHarness
+ *     -Dbenchmark.jvmArgs="-Dloadtest.clients=100 -Dloadtest.baseline=target/loadtest/xxx.json"
+ *
+ * @author yff
+ * @date 2026-10-18 19:58:14
+ */
+public class ChatToGenCodeLoadHarness {
+
+    private static final String BASE_URL = System.getProperty("loadtest.base-url", "http://localhost:8080/api");
+
+    private static final int CLIENTS = Integer.getInteger("loadtest.clients", 50);
+
+    private static final int ROUNDS = Integer.getInteger("loadtest.rounds", 3);
+
+    private static final String CODE_GEN_TYPE = System.getProperty("loadtest.code-gen-type", "html");
+
+    private static final String PROMPT = System.getProperty("loadtest.prompt", "做一个个人博客首页");
+
+    private static final String OUTPUT_DIR = System.getProperty("loadtest.output-dir", "target/loadtest");
+
+    private static final String BASELINE = System.getProperty("loadtest.baseline");
+
+    /**
+     * 相对基线退化超过这个比例时标记为回退
+     */
+    private static final double REGRESSION_THRESHOLD =
+            Double.parseDouble(System.getProperty("loadtest.regression-threshold", "0.1"));
+
+    private static final String PASSWORD = "loadtest123";
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofMinutes(10);
+
+    /**
+     * 参与基线对比的指标，true 表示越大越好
+     */
+    private static final Map<String, Boolean> COMPARED_METRICS = Map.of(
+            "eventsPerSecond", true,
+            "timeToFirstEventMs.p50", false,
+            "timeToFirstEventMs.p99", false,
+            "interEventGapMs.p50", false,
+            "interEventGapMs.p99", false,
+            "heapUsedMb.max", false,
+            "liveThreads.max", false);
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+
+    public static void main(String[] args) throws Exception {
+        new ChatToGenCodeLoadHarness().run();
+    }
+
+
+    private void run() throws Exception {
+        System.out.printf("准备 %d 个客户端（%s，每个 %d 轮）...%n", CLIENTS, CODE_GEN_TYPE, ROUNDS);
+        List<Client> clients = new ArrayList<>(CLIENTS);
+        for (int i = 0; i < CLIENTS; i++) {
+            String token = login("loadtest_" + i);
+            clients.add(new Client(token, createApp(token, i)));
+        }
+
+        ServerSampler sampler = new ServerSampler(clients.getFirst().token());
+        Thread samplerThread = Thread.ofVirtual().name("loadtest-sampler").start(sampler);
+        long start = System.nanoTime();
+        List<RequestStats> results = new ArrayList<>(CLIENTS * ROUNDS);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<List<RequestStats>>> futures = new ArrayList<>(CLIENTS);
+            for (Client client : clients) {
+                futures.add(executor.submit(() -> runClient(client)));
+            }
+            for (Future<List<RequestStats>> future : futures) {
+                results.addAll(future.get());
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        sampler.stop();
+        samplerThread.join();
+
+        JSONObject report = report(results, seconds, sampler);
+        System.out.println(report.toStringPretty());
+        File output = FileUtil.file(OUTPUT_DIR, report.getStr("commit") + "-"
+                + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss")) + ".json");
+        FileUtil.writeUtf8String(report.toStringPretty(), output);
+        System.out.println("结果已写入：" + output.getAbsolutePath());
+        if (StrUtil.isNotBlank(BASELINE)) {
+            compare(JSONUtil.parseObj(FileUtil.readUtf8String(BASELINE)), report);
+        }
+    }
+
+
+    private List<RequestStats> runClient(Client client) {
+        List<RequestStats> stats = new ArrayList<>(ROUNDS);
+        for (int round = 0; round < ROUNDS; round++) {
+            String message = round == 0 ? PROMPT : PROMPT + "，第 " + (round + 1) + " 次修改";
+            stats.add(stream(client, message));
+        }
+        return stats;
+    }
+
+
+    /**
+     * 发起一次生成并读取完整的 SSE 流
+     */
+    private RequestStats stream(Client client, String message) {
+        URI uri = URI.create(BASE_URL + "/app/chat/gen/code?appId=" + client.appId()
+                + "&userMessage=" + URLEncoder.encode(message, StandardCharsets.UTF_8));
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("access-token", client.token())
+                .header("Accept", "text/event-stream")
+                .timeout(REQUEST_TIMEOUT)
+                .GET()
+                .build();
+        long sentAt = System.nanoTime();
+        try {
+            HttpResponse<Stream<String>> response = httpClient.send(request, HttpResponse.BodyHandlers.ofLines());
+            if (response.statusCode() != 200) {
+                response.body().close();
+                return RequestStats.failed();
+            }
+            long firstEventAt = 0;
+            long lastEventAt = 0;
+            long[] gaps = new long[256];
+            int events = 0;
+            boolean done = false;
+            String eventName = null;
+            boolean hasData = false;
+            try (Stream<String> lines = response.body()) {
+                Iterator<String> iterator = lines.iterator();
+                while (iterator.hasNext() && !done) {
+                    String line = iterator.next();
+                    if (line.startsWith("event:")) {
+                        eventName = line.substring("event:".length()).strip();
+                    } else if (line.startsWith("data:")) {
+                        hasData = true;
+                    } else if (line.isEmpty()) {
+                        // 空行结束一个事件：没有事件名的是内容事件，done 是结束标志（data 为空时可能不带 data 行）
+                        if ("done".equals(eventName)) {
+                            done = true;
+                        } else if (eventName == null && hasData) {
+                            long now = System.nanoTime();
+                            if (events == 0) {
+                                firstEventAt = now;
+                            } else {
+                                if (events - 1 == gaps.length) {
+                                    gaps = Arrays.copyOf(gaps, gaps.length * 2);
+                                }
+                                gaps[events - 1] = now - lastEventAt;
+                            }
+                            lastEventAt = now;
+                            events++;
+                        }
+                        eventName = null;
+                        hasData = false;
+                    }
+                }
+            }
+            if (!done || events == 0) {
+                return RequestStats.failed();
+            }
+            return new RequestStats(true, firstEventAt - sentAt, Arrays.copyOf(gaps, events - 1), events);
+        } catch (Exception e) {
+            System.err.println("请求失败：" + e.getMessage());
+            return RequestStats.failed();
+        }
+    }
+
+
+    private JSONObject report(List<RequestStats> results, double seconds, ServerSampler sampler) {
+        List<RequestStats> succeeded = results.stream().filter(RequestStats::success).toList();
+        long events = succeeded.stream().mapToLong(RequestStats::events).sum();
+        long[] timeToFirstEvent = succeeded.stream().mapToLong(RequestStats::timeToFirstEventNanos).sorted().toArray();
+        long[] gaps = succeeded.stream().flatMapToLong(stats -> Arrays.stream(stats.gapNanos())).sorted().toArray();
+
+        JSONObject report = new JSONObject(true);
+        report.set("commit", commit());
+        report.set("time", LocalDateTime.now().toString());
+        report.set("config", new JSONObject(true)
+                .set("clients", CLIENTS)
+                .set("rounds", ROUNDS)
+                .set("codeGenType", CODE_GEN_TYPE));
+        report.set("requests", results.size());
+        report.set("failed", results.size() - succeeded.size());
+        report.set("events", events);
+        report.set("durationSeconds", round(seconds));
+        report.set("eventsPerSecond", round(events / seconds));
+        report.set("timeToFirstEventMs", percentiles(timeToFirstEvent));
+        report.set("interEventGapMs", percentiles(gaps));
+        report.set("heapUsedMb", sampler.heapUsedMb.summary());
+        report.set("liveThreads", sampler.liveThreads.summary());
+        return report;
+    }
+
+
+    /**
+     * 与基线逐项对比，退化超过阈值的指标标记为 REGRESSION
+     */
+    private static void compare(JSONObject baseline, JSONObject current) {
+        System.out.printf("与基线 %s 对比：%n", baseline.getStr("commit"));
+        boolean regressed = false;
+        for (Map.Entry<String, Boolean> metric : COMPARED_METRICS.entrySet()) {
+            Double before = baseline.getByPath(metric.getKey(), Double.class);
+            Double after = current.getByPath(metric.getKey(), Double.class);
+            if (before == null || after == null || before == 0) {
+                continue;
+            }
+            double change = (after - before) / before;
+            boolean worse = metric.getValue() ? change < -REGRESSION_THRESHOLD : change > REGRESSION_THRESHOLD;
+            regressed |= worse;
+            System.out.printf("  %-24s %12.2f -> %12.2f  %+7.1f%% %s%n", metric.getKey(), before, after, change * 100,
+                    worse ? "REGRESSION" : "");
+        }
+        if (regressed) {
+            System.exit(1);
+        }
+    }
+
+
+    private String login(String account) throws Exception {
+        // 账号已存在时注册失败，直接登录
+        post("/user/register", null, Map.of("userAccount", account, "userPassword", PASSWORD,
+                "checkPassword", PASSWORD));
+        JSONObject response = post("/user/login", null, Map.of("userAccount", account, "userPassword", PASSWORD));
+        return checkSuccess(response, "登录失败").getJSONObject("data").getStr("token");
+    }
+
+
+    private long createApp(String token, int index) throws Exception {
+        JSONObject response = post("/app/add", token, Map.of("appName", "压测应用" + index, "initPrompt", PROMPT,
+                "codeGenType", CODE_GEN_TYPE));
+        return checkSuccess(response, "创建应用失败").getLong("data");
+    }
+
+
+    private JSONObject post(String path, String token, Map<String, Object> body) throws Exception {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(BASE_URL + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(JSONUtil.toJsonStr(body)));
+        if (token != null) {
+            builder.header("access-token", token);
+        }
+        return JSONUtil.parseObj(httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofString()).body());
+    }
+
+
+    private static JSONObject checkSuccess(JSONObject response, String message) {
+        if (response.getInt("code", -1) != 0) {
+            throw new IllegalStateException(message + "：" + response.getStr("message"));
+        }
+        return response;
+    }
+
+
+    private static JSONObject percentiles(long[] sortedNanos) {
+        JSONObject result = new JSONObject(true);
+        result.set("p50", round(percentile(sortedNanos, 0.50) / 1e6));
+        result.set("p99", round(percentile(sortedNanos, 0.99) / 1e6));
+        result.set("max", round((sortedNanos.length == 0 ? 0 : sortedNanos[sortedNanos.length - 1]) / 1e6));
+        return result;
+    }
+
+
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)];
+    }
+
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+
+    private static String commit() {
+        String commit = System.getProperty("loadtest.commit");
+        if (StrUtil.isBlank(commit)) {
+            try {
+                commit = RuntimeUtil.execForStr("git", "rev-parse", "--short", "HEAD").strip();
+            } catch (Exception e) {
+                commit = "unknown";
+            }
+        }
+        return StrUtil.blankToDefault(commit, "unknown");
+    }
+
+
+    /**
+     * 定时采样服务端 actuator 指标
+     */
+    private class ServerSampler implements Runnable {
+
+        private final String token;
+
+        private final AtomicBoolean running = new AtomicBoolean(true);
+
+        private final Samples heapUsedMb = new Samples();
+
+        private final Samples liveThreads = new Samples();
+
+        private ServerSampler(String token) {
+            this.token = token;
+        }
+
+        @Override
+        public void run() {
+            while (running.get()) {
+                try {
+                    heapUsedMb.add(metric("jvm.memory.used?tag=area:heap") / 1024 / 1024);
+                    liveThreads.add(metric("jvm.threads.live"));
+                    Thread.sleep(500);
+                } catch (InterruptedException e) {
+                    return;
+                } catch (Exception e) {
+                    // actuator 未开放时只统计客户端指标
+                    System.err.println("采样服务端指标失败：" + e.getMessage());
+                    return;
+                }
+            }
+        }
+
+        private void stop() {
+            running.set(false);
+        }
+
+        private double metric(String name) throws Exception {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(BASE_URL + "/actuator/metrics/" + name))
+                    .header("access-token", token)
+                    .GET()
+                    .build();
+            JSONArray measurements = JSONUtil.parseObj(httpClient.send(request, HttpResponse.BodyHandlers.ofString())
+                    .body()).getJSONArray("measurements");
+            return measurements.getJSONObject(0).getDouble("value");
+        }
+    }
+
+
+    private static class Samples {
+
+        private final List<Double> values = new ArrayList<>();
+
+        private synchronized void add(double value) {
+            values.add(value);
+        }
+
+        private synchronized JSONObject summary() {
+            JSONObject result = new JSONObject(true);
+            result.set("avg", round(values.stream().mapToDouble(Double::doubleValue).average().orElse(0)));
+            result.set("max", round(values.stream().mapToDouble(Double::doubleValue).max().orElse(0)));
+            return result;
+        }
+    }
+
+
+    private record Client(String token, long appId) {
+    }
+
+
+    /**
+     * 单次生成的统计
+     *
+     * @param success              是否完整收到结束标志
+     * @param timeToFirstEventNanos 发出请求到收到首个内容事件的时间
+     * @param gapNanos             相邻内容事件的间隔
+     * @param events               内容事件数
+     */
+    private record RequestStats(boolean success, long timeToFirstEventNanos, long[] gapNanos, int events) {
+
+        private static RequestStats failed() {
+            return new RequestStats(false, 0, new long[0], 0);
+        }
+    }
+
+}
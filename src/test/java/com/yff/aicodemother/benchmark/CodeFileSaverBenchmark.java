@@ -0,0 +1,99 @@
+package com.yff.aicodemother.benchmark;
+
+import cn.hutool.core.io.FileUtil;
+import com.yff.aicodemother.ai.core.parser.HtmlCodeParser;
+import com.yff.aicodemother.ai.core.parser.MultiFileCodeParser;
+import com.yff.aicodemother.ai.core.saver.HtmlCodeFileSaverTemplate;
+import com.yff.aicodemother.ai.core.saver.MultiFileCodeFileSaverTemplate;
+import com.yff.aicodemother.ai.core.saver.StreamingCodeFileSaver;
+import com.yff.aicodemother.ai.model.HtmlCodeResult;
+import com.yff.aicodemother.ai.model.MultiFileCodeResult;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 代码保存基准：CodeFileSaverTemplate.saveCode（解析结果一次性写入） vs StreamingCodeFileSaver（逐片段追加写入）
+ * 写入真实文件系统（tmp/code_output 下固定的 appId 目录），结果包含磁盘 IO，不同机器之间不可直接比较
+ * 运行方式（JMH 元数据只在 benchmark profile 下生成）：mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="CodeFileSaverBenchmark -prof gc"
+ *
+ * @author yff
+ * @date 2026-10-18 20:18:02
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CodeFileSaverBenchmark {
+
+    private static final long APP_ID = 9_000_000_000L;
+
+    /**
+     * 模型输出大小（字节）
+     */
+    @Param({"10240", "102400", "1048576"})
+    private int outputBytes;
+
+    private HtmlCodeResult htmlCodeResult;
+
+    private MultiFileCodeResult multiFileCodeResult;
+
+    private List<String> htmlChunks;
+
+    private final HtmlCodeFileSaverTemplate htmlSaver = new HtmlCodeFileSaverTemplate();
+
+    private final MultiFileCodeFileSaverTemplate multiFileSaver = new MultiFileCodeFileSaverTemplate();
+
+    private File outputDir;
+
+    @Setup
+    public void setUp() {
+        String htmlOutput = BenchmarkInputs.htmlOutput(outputBytes);
+        htmlCodeResult = new HtmlCodeParser().parseCode(htmlOutput);
+        multiFileCodeResult = new MultiFileCodeParser().parseCode(BenchmarkInputs.multiFileOutput(outputBytes));
+        htmlChunks = BenchmarkInputs.chunks(htmlOutput);
+        outputDir = htmlSaver.saveCode(htmlCodeResult, APP_ID);
+    }
+
+    @TearDown
+    public void tearDown() {
+        FileUtil.del(outputDir);
+        FileUtil.del(multiFileSaver.saveCode(multiFileCodeResult, APP_ID));
+    }
+
+    @Benchmark
+    public File htmlSaveCode() {
+        return htmlSaver.saveCode(htmlCodeResult, APP_ID);
+    }
+
+    @Benchmark
+    public File multiFileSaveCode() {
+        return multiFileSaver.saveCode(multiFileCodeResult, APP_ID);
+    }
+
+    @Benchmark
+    public File htmlStreamingSave() {
+        StreamingCodeFileSaver saver = htmlSaver.createStreamingSaver(APP_ID);
+        for (String chunk : htmlChunks) {
+            saver.append(chunk);
+        }
+        return saver.complete();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(CodeFileSaverBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+
+}
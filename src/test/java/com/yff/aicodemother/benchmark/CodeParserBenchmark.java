@@ -0,0 +1,96 @@
+package com.yff.aicodemother.benchmark;
+
+import com.yff.aicodemother.ai.core.parser.HtmlCodeParser;
+import com.yff.aicodemother.ai.core.parser.HtmlStreamingCodeParser;
+import com.yff.aicodemother.ai.core.parser.MultiFileCodeParser;
+import com.yff.aicodemother.ai.core.parser.MultiFileStreamingCodeParser;
+import com.yff.aicodemother.ai.model.HtmlCodeResult;
+import com.yff.aicodemother.ai.model.MultiFileCodeResult;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 代码解析基准：流结束后整段正则解析（HtmlCodeParser / MultiFileCodeParser） vs 逐片段的流式解析
+ * 输入为 10KB ~ 1MB 的模型输出，流式解析按 token 粒度切分（1MB 约 25 万个片段）
+ * 运行方式（JMH 元数据只在 benchmark profile 下生成）：mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="CodeParserBenchmark -prof gc"
+ *
+ * @author yff
+ * @date 2026-10-18 20:15:48
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CodeParserBenchmark {
+
+    /**
+     * 模型输出大小（字节）
+     */
+    @Param({"10240", "102400", "1048576"})
+    private int outputBytes;
+
+    private String htmlOutput;
+
+    private String multiFileOutput;
+
+    private List<String> htmlChunks;
+
+    private List<String> multiFileChunks;
+
+    private final HtmlCodeParser htmlCodeParser = new HtmlCodeParser();
+
+    private final MultiFileCodeParser multiFileCodeParser = new MultiFileCodeParser();
+
+    @Setup
+    public void setUp() {
+        htmlOutput = BenchmarkInputs.htmlOutput(outputBytes);
+        multiFileOutput = BenchmarkInputs.multiFileOutput(outputBytes);
+        htmlChunks = BenchmarkInputs.chunks(htmlOutput);
+        multiFileChunks = BenchmarkInputs.chunks(multiFileOutput);
+    }
+
+    @Benchmark
+    public HtmlCodeResult htmlRegex() {
+        return htmlCodeParser.parseCode(htmlOutput);
+    }
+
+    @Benchmark
+    public HtmlCodeResult htmlStreaming() {
+        HtmlStreamingCodeParser parser = new HtmlStreamingCodeParser();
+        for (String chunk : htmlChunks) {
+            parser.append(chunk);
+        }
+        return parser.complete();
+    }
+
+    @Benchmark
+    public MultiFileCodeResult multiFileRegex() {
+        return multiFileCodeParser.parseCode(multiFileOutput);
+    }
+
+    @Benchmark
+    public MultiFileCodeResult multiFileStreaming() {
+        MultiFileStreamingCodeParser parser = new MultiFileStreamingCodeParser();
+        for (String chunk : multiFileChunks) {
+            parser.append(chunk);
+        }
+        return parser.complete();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(CodeParserBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.yff.aicodemother.benchmark;
+
+import cn.hutool.json.JSONUtil;
+import com.yff.aicodemother.common.sse.SseEnvelopeEncoder;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.codec.ServerSentEvent;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SSE 信封编码基准：逐 chunk Map + JSONUtil（旧实现） vs SseEnvelopeEncoder
+ * 运行方式（JMH 元数据只在 benchmark profile 下生成）：mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="SseEnvelopeBenchmark -prof gc"
+ *
+ * @author yff
+ * @date 2026-10-18 14:05:51
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SseEnvelopeBenchmark {
+
+    /**
+     * 典型的模型输出片段：纯文本 token / 带引号和换行的代码 token / 较长的中文段落
+     */
+    @Param({"text", "code", "paragraph"})
+    private String chunkType;
+
+    private String chunk;
+
+    private SseEnvelopeEncoder encoder;
+
+    @Setup
+    public void setUp() {
+        chunk = switch (chunkType) {
+            case "text" -> "function ";
+            case "code" -> "\n    <div class=\"task-item\" data-id=\"${id}\">\\n";
+            default -> "好的，我将为你创建一个简洁美观的任务记录网站，包含添加、完成和删除任务的功能。\n\n".repeat(4);
+        };
+        encoder = new SseEnvelopeEncoder();
+    }
+
+    @Benchmark
+    public ServerSentEvent<String> mapWithJsonUtil() {
+        Map<String, String> wrapper = Map.of("d", chunk);
+        String jsonData = JSONUtil.toJsonStr(wrapper);
+        return ServerSentEvent.<String>builder().data(jsonData).build();
+    }
+
+    @Benchmark
+    public ServerSentEvent<String> envelopeEncoder() {
+        return ServerSentEvent.<String>builder().data(encoder.encode(chunk)).build();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(SseEnvelopeBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+
+}
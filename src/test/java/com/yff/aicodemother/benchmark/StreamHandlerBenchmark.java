@@ -0,0 +1,103 @@
+package com.yff.aicodemother.benchmark;
+
+import com.yff.aicodemother.ai.core.builder.VueProjectBuilder;
+import com.yff.aicodemother.ai.core.handler.ChatHistoryDraftWriter;
+import com.yff.aicodemother.ai.core.handler.JsonMessageStreamHandler;
+import com.yff.aicodemother.ai.core.handler.SimpleTextStreamHandler;
+import com.yff.aicodemother.ai.model.message.AiResponseMessage;
+import com.yff.aicodemother.ai.model.message.StreamMessage;
+import com.yff.aicodemother.manager.FileSnapshotManager;
+import com.yff.aicodemother.model.entity.User;
+import com.yff.aicodemother.service.ChatHistoryService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流处理器基准：SimpleTextStreamHandler（HTML / 多文件）和 JsonMessageStreamHandler（Vue 工程，含工具调用）处理整条消息流的开销
+ * 对话历史保存替换为空实现，Vue 项目构建跳过；文件快照照常写入（内容寻址，首次写入后只计算哈希）
+ * 运行方式（JMH 元数据只在 benchmark profile 下生成）：mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="StreamHandlerBenchmark -prof gc"
+ *
+ * @author yff
+ * @date 2026-10-18 20:21:30
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StreamHandlerBenchmark {
+
+    /**
+     * 模型输出大小（字节）
+     */
+    @Param({"10240", "102400", "1048576"})
+    private int outputBytes;
+
+    private List<StreamMessage> textMessages;
+
+    private List<StreamMessage> vueMessages;
+
+    private final SimpleTextStreamHandler simpleTextStreamHandler = new SimpleTextStreamHandler();
+
+    private final JsonMessageStreamHandler jsonMessageStreamHandler = new JsonMessageStreamHandler();
+
+    private final ChatHistoryService chatHistoryService = (ChatHistoryService) Proxy.newProxyInstance(
+            ChatHistoryService.class.getClassLoader(), new Class<?>[]{ChatHistoryService.class},
+            (proxy, method, args) -> null);
+
+    private final User user = new User();
+
+    @Setup
+    public void setUp() {
+        textMessages = BenchmarkInputs.chunks(BenchmarkInputs.htmlOutput(outputBytes)).stream()
+                .<StreamMessage>map(AiResponseMessage::new)
+                .toList();
+        vueMessages = BenchmarkInputs.vueMessages(outputBytes);
+        user.setId(1L);
+        // 草稿检查点按默认配置开启，计入写检查点的开销（存根服务不写库）
+        ChatHistoryDraftWriter chatHistoryDraftWriter = new ChatHistoryDraftWriter(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(chatHistoryDraftWriter, "enabled", true);
+        ReflectionTestUtils.setField(chatHistoryDraftWriter, "intervalMillis", 3000L);
+        ReflectionTestUtils.setField(chatHistoryDraftWriter, "maxChars", 4096);
+        ReflectionTestUtils.setField(simpleTextStreamHandler, "chatHistoryDraftWriter", chatHistoryDraftWriter);
+        ReflectionTestUtils.setField(jsonMessageStreamHandler, "chatHistoryDraftWriter", chatHistoryDraftWriter);
+        ReflectionTestUtils.setField(jsonMessageStreamHandler, "fileSnapshotManager", new FileSnapshotManager());
+        ReflectionTestUtils.setField(jsonMessageStreamHandler, "vueProjectBuilder", new VueProjectBuilder() {
+            @Override
+            public void buildProjectAsync(String projectPath, Long appId) {
+            }
+        });
+    }
+
+    @Benchmark
+    public String simpleText() {
+        return simpleTextStreamHandler.handle(Flux.fromIterable(textMessages), chatHistoryService, 1L, user)
+                .blockLast();
+    }
+
+    @Benchmark
+    public String jsonMessage() {
+        return jsonMessageStreamHandler.handle(Flux.fromIterable(vueMessages), chatHistoryService, 1L, user)
+                .blockLast();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(StreamHandlerBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+
+}
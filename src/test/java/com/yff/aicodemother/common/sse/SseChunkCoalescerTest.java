@@ -0,0 +1,44 @@
+package com.yff.aicodemother.common.sse;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+
+class SseChunkCoalescerTest {
+
+    private SseChunkCoalescer createCoalescer(boolean enabled, long flushIntervalMs, int maxBytes) {
+        SseChunkCoalescer coalescer = new SseChunkCoalescer(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(coalescer, "enabled", enabled);
+        ReflectionTestUtils.setField(coalescer, "flushIntervalMs", flushIntervalMs);
+        ReflectionTestUtils.setField(coalescer, "maxBytes", maxBytes);
+        return coalescer;
+    }
+
+    @Test
+    void flushesWhenMaxBytesReachedAndOnComplete() {
+        SseChunkCoalescer coalescer = createCoalescer(true, 60_000, 5);
+        List<String> events = coalescer.coalesce(Flux.just("ab", "cd", "ef", "g")).collectList().block();
+        Assertions.assertEquals(List.of("abcdef", "g"), events);
+    }
+
+    @Test
+    void flushesOnInterval() {
+        SseChunkCoalescer coalescer = createCoalescer(true, 20, 1 << 20);
+        Flux<String> slowSource = Flux.just("a", "b").concatWith(Flux.just("c").delaySubscription(Duration.ofMillis(200)));
+        List<String> events = coalescer.coalesce(slowSource).collectList().block();
+        Assertions.assertEquals(List.of("ab", "c"), events);
+    }
+
+    @Test
+    void passesThroughWhenDisabled() {
+        SseChunkCoalescer coalescer = createCoalescer(false, 20, 5);
+        Assertions.assertEquals(List.of("ab", "cd"), coalescer.coalesce(Flux.just("ab", "cd")).collectList().block());
+        Assertions.assertEquals(8, SseChunkCoalescer.utf8Length("a中😀"));
+    }
+
+}
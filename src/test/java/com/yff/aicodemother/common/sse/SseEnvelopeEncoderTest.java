@@ -0,0 +1,31 @@
+package com.yff.aicodemother.common.sse;
+
+import cn.hutool.json.JSONUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+class SseEnvelopeEncoderTest {
+
+    @Test
+    void matchesJsonUtilOutput() {
+        SseEnvelopeEncoder encoder = new SseEnvelopeEncoder();
+        String[] chunks = {
+                "",
+                "plain token",
+                "<div class=\"a\">\\n</div>\n\t\r\b\f",
+                "\u0001\u001f\u0080\u00a0\u2028\u2029\u20ff\u2100\u007f",
+                "中文 😀 </script>"
+        };
+        for (String chunk : chunks) {
+            Assertions.assertEquals(JSONUtil.toJsonStr(Map.of("d", chunk)), encoder.encode(chunk));
+        }
+        // 逐个字符比对代理区之前的全部 BMP 字符
+        for (char c = 0; c < Character.MIN_SURROGATE; c++) {
+            String chunk = "a" + c;
+            Assertions.assertEquals(JSONUtil.toJsonStr(Map.of("d", chunk)), encoder.encode(chunk));
+        }
+    }
+
+}
@@ -0,0 +1,132 @@
+package com.yff.aicodemother.manager;
+
+import cn.hutool.core.util.StrUtil;
+import com.yff.aicodemother.mapper.ChatHistoryBlobMapper;
+import com.yff.aicodemother.mapper.ChatHistoryMapper;
+import com.yff.aicodemother.model.entity.ChatHistory;
+import com.yff.aicodemother.model.entity.ChatHistoryBlob;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+class ChatHistoryBlobManagerTest {
+
+    private final List<ChatHistory> rows = new ArrayList<>();
+
+    private final Map<Long, ChatHistoryBlob> blobs = new LinkedHashMap<>();
+
+    private ChatHistoryBlobManager manager;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ChatHistoryMapper chatHistoryMapper = (ChatHistoryMapper) Proxy.newProxyInstance(
+                ChatHistoryMapper.class.getClassLoader(), new Class<?>[]{ChatHistoryMapper.class},
+                (proxy, method, args) -> {
+                    Assertions.assertEquals("upsertBatch", method.getName());
+                    rows.addAll((List<ChatHistory>) args[0]);
+                    return rows.size();
+                });
+        ChatHistoryBlobMapper blobMapper = (ChatHistoryBlobMapper) Proxy.newProxyInstance(
+                ChatHistoryBlobMapper.class.getClassLoader(), new Class<?>[]{ChatHistoryBlobMapper.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "upsertBatch" -> {
+                        ((List<ChatHistoryBlob>) args[0]).forEach(blob -> blobs.put(blob.getChatHistoryId(), blob));
+                        yield blobs.size();
+                    }
+                    case "selectById" -> blobs.get((Long) args[0]);
+                    case "selectByIds" -> ((Collection<Long>) args[0]).stream().map(blobs::get).toList();
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+        manager = new ChatHistoryBlobManager(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(manager, "chatHistoryMapper", chatHistoryMapper);
+        ReflectionTestUtils.setField(manager, "chatHistoryBlobMapper", blobMapper);
+        ReflectionTestUtils.setField(manager, "enabled", true);
+        ReflectionTestUtils.setField(manager, "thresholdChars", 100);
+        ReflectionTestUtils.setField(manager, "summaryChars", 20);
+    }
+
+
+    @Test
+    void largeMessagesAreCompressedAndMainRowKeepsSummary() {
+        String large = StrUtil.repeat("<div>生成的代码</div>\n", 50);
+        ChatHistory small = history(1L, "你好");
+        ChatHistory big = history(2L, large);
+        manager.saveBatch(List.of(small, big));
+
+        Assertions.assertEquals(2, rows.size());
+        Assertions.assertSame(small, rows.get(0));
+        ChatHistory stored = rows.get(1);
+        Assertions.assertEquals(large.substring(0, 20), stored.getMessage());
+        Assertions.assertEquals(large.length(), stored.getMessageLength());
+        // 调用方的对象不被修改（写库失败时原样重试）
+        Assertions.assertEquals(large, big.getMessage());
+
+        Assertions.assertEquals(List.of(2L), List.copyOf(blobs.keySet()));
+        Assertions.assertTrue(blobs.get(2L).getContent().length < large.length());
+        Assertions.assertEquals(large, manager.loadMessage(2L));
+    }
+
+
+    @Test
+    void restoreMessagesReplacesSummaries() {
+        String large = StrUtil.repeat("x", 300);
+        manager.saveBatch(List.of(history(1L, "你好"), history(2L, large)));
+
+        List<ChatHistory> loaded = new ArrayList<>(rows);
+        manager.restoreMessages(loaded);
+        Assertions.assertEquals("你好", loaded.get(0).getMessage());
+        Assertions.assertEquals(large, loaded.get(1).getMessage());
+        Assertions.assertNull(loaded.get(1).getMessageLength());
+    }
+
+
+    @Test
+    void keywordAfterSummaryCutoffIsSearchable() {
+        String large = StrUtil.repeat("<div>生成的代码</div>\n", 20) + "useCartStore";
+        manager.saveBatch(List.of(history(1L, "你好"), history(2L, large)));
+
+        // 与管理员检索条件一致：主表消息，或大消息在 chat_history_blob 中的原文
+        List<Long> found = rows.stream()
+                .filter(row -> row.getMessage().contains("useCartStore")
+                        || (row.getMessageLength() != null
+                        && blobs.get(row.getId()).getSearchText().contains("useCartStore")))
+                .map(ChatHistory::getId)
+                .toList();
+        Assertions.assertFalse(rows.get(1).getMessage().contains("useCartStore"));
+        Assertions.assertEquals(List.of(2L), found);
+    }
+
+
+    @Test
+    void summaryDoesNotSplitSurrogatePairs() {
+        String large = StrUtil.repeat("a", 19) + StrUtil.repeat("😀", 100);
+        ChatHistory summary = manager.summarize(history(1L, large));
+        Assertions.assertEquals(StrUtil.repeat("a", 19), summary.getMessage());
+    }
+
+
+    private static ChatHistory history(Long id, String message) {
+        LocalDateTime now = LocalDateTime.now();
+        return ChatHistory.builder()
+                .id(id)
+                .appId(100L)
+                .userId(1L)
+                .messageType("ai")
+                .message(message)
+                .createTime(now)
+                .updateTime(now)
+                .build();
+    }
+
+}
@@ -0,0 +1,155 @@
+package com.yff.aicodemother.manager;
+
+import com.yff.aicodemother.manager.ChatHistoryHotWindowCache.HotWindow;
+import com.yff.aicodemother.manager.ChatHistoryHotWindowCache.WindowPage;
+import com.yff.aicodemother.model.entity.ChatHistory;
+import com.yff.aicodemother.model.vo.ChatHistoryVo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+class ChatHistoryHotWindowCacheTest {
+
+    private static final Long APP_ID = 1L;
+
+    private static final LocalDateTime BASE_TIME = LocalDateTime.of(2026, 10, 18, 12, 0, 0);
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ChatHistoryHotWindowCache cache;
+
+    private int loads;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new ChatHistoryHotWindowCache(meterRegistry);
+        ReflectionTestUtils.setField(cache, "windowSize", 5);
+        loads = 0;
+    }
+
+
+    @Test
+    void pagesInsideWindowAreServedWithoutLoading() {
+        // 数据库中 8 条消息，窗口只保留最近 5 条
+        Function<Integer, HotWindow> loader = loader(8);
+        WindowPage first = cache.page(APP_ID, loader, null, null, 3);
+        Assertions.assertEquals(List.of(8L, 7L, 6L), ids(first.records()));
+        Assertions.assertEquals(100L, first.ownerId());
+
+        ChatHistoryVo last = first.records().get(1);
+        WindowPage second = cache.page(APP_ID, loader, last.getCreateTime(), last.getId(), 3);
+        Assertions.assertEquals(List.of(6L, 5L, 4L), ids(second.records()));
+
+        // 游标之后窗口中不够一页，且窗口不包含全部消息：回源数据库
+        WindowPage third = cache.page(APP_ID, loader, time(5), 5L, 3);
+        Assertions.assertNull(third.records());
+
+        Assertions.assertEquals(1, loads);
+        Assertions.assertEquals(1, counter("hit"));
+        Assertions.assertEquals(2, counter("miss"));
+    }
+
+
+    @Test
+    void completeWindowServesShortLastPage() {
+        Function<Integer, HotWindow> loader = loader(3);
+        cache.page(APP_ID, loader, null, null, 2);
+        WindowPage page = cache.page(APP_ID, loader, time(2), 2L, 2);
+        Assertions.assertEquals(List.of(1L), ids(page.records()));
+    }
+
+
+    @Test
+    void appendedMessagesAreOrderedAndTrimWindow() {
+        Function<Integer, HotWindow> loader = loader(5);
+        cache.page(APP_ID, loader, null, null, 1);
+        // 重复追加（加载时已写入数据库）被忽略，并发保存时乱序追加按时间和ID排序
+        cache.append(chatHistory(5));
+        cache.append(chatHistory(7));
+        cache.append(chatHistory(6));
+
+        WindowPage page = cache.page(APP_ID, loader, null, null, 5);
+        Assertions.assertEquals(List.of(7L, 6L, 5L, 4L, 3L), ids(page.records()));
+        // 窗口满后淘汰最早的消息，不再包含全部消息
+        Assertions.assertNull(cache.page(APP_ID, loader, time(3), 3L, 1).records());
+
+        cache.invalidate(APP_ID);
+        cache.page(APP_ID, loader, null, null, 1);
+        Assertions.assertEquals(2, loads);
+    }
+
+
+    @Test
+    void draftCheckpointsReplaceRecordAndKeepCreateTime() {
+        Function<Integer, HotWindow> loader = loader(3);
+        cache.page(APP_ID, loader, null, null, 1);
+        ChatHistory draft = chatHistory(3);
+        draft.setMessage("message-3 continued");
+        draft.setCreateTime(time(10));
+        Assertions.assertTrue(cache.replace(draft));
+        // 窗口中没有的草稿不插入，由调用方移除窗口
+        Assertions.assertFalse(cache.replace(chatHistory(9)));
+
+        List<ChatHistoryVo> records = cache.page(APP_ID, loader, null, null, 5).records();
+        Assertions.assertEquals(List.of(3L, 2L, 1L), ids(records));
+        Assertions.assertEquals("message-3 continued", records.getFirst().getMessage());
+        Assertions.assertEquals(time(3), records.getFirst().getCreateTime());
+        Assertions.assertEquals(1, loads);
+    }
+
+
+    /**
+     * 模拟数据库中 1..total 共 total 条消息，第 i 条的 ID 为 i
+     */
+    private Function<Integer, HotWindow> loader(int total) {
+        return limit -> {
+            loads++;
+            List<ChatHistoryVo> newest = new ArrayList<>();
+            for (long id = total; id >= 1 && newest.size() < limit; id--) {
+                newest.add(vo(id));
+            }
+            return new HotWindow(100L, newest, limit - 1);
+        };
+    }
+
+    private double counter(String result) {
+        return meterRegistry.get("chat.history.page.cache").tag("result", result).counter().count();
+    }
+
+    private static List<Long> ids(List<ChatHistoryVo> records) {
+        return records.stream().map(ChatHistoryVo::getId).toList();
+    }
+
+    private static LocalDateTime time(long id) {
+        // 每两条消息同一秒，覆盖 createTime 相同时按 ID 排序的情况
+        return BASE_TIME.plusSeconds(id / 2);
+    }
+
+    private static ChatHistoryVo vo(long id) {
+        ChatHistoryVo vo = new ChatHistoryVo();
+        vo.setId(id);
+        vo.setAppId(APP_ID);
+        vo.setMessage("message-" + id);
+        vo.setCreateTime(time(id));
+        return vo;
+    }
+
+    private static ChatHistory chatHistory(long id) {
+        return ChatHistory.builder()
+                .id(id)
+                .appId(APP_ID)
+                .message("message-" + id)
+                .createTime(time(id))
+                .updateTime(time(id))
+                .build();
+    }
+
+}
@@ -0,0 +1,186 @@
+package com.yff.aicodemother.manager;
+
+import com.yff.aicodemother.mapper.ChatHistoryMapper;
+import com.yff.aicodemother.model.entity.ChatHistory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+class ChatHistoryWriteBehindQueueTest {
+
+    @TempDir
+    Path journalDir;
+
+    private final List<ChatHistory> inserted = new ArrayList<>();
+
+    private final AtomicBoolean databaseDown = new AtomicBoolean();
+
+    /**
+     * 无论怎么重试都写入失败的消息ID
+     */
+    private Set<Long> poisonIds = Set.of();
+
+    @Test
+    void flushInsertsInBatchesAndDeletesJournal() throws Exception {
+        ChatHistoryWriteBehindQueue queue = newQueue(2);
+        for (long id = 1; id <= 5; id++) {
+            queue.enqueue(message(id));
+        }
+        Assertions.assertTrue(queue.hasPending(100L));
+
+        queue.flush();
+
+        Assertions.assertEquals(List.of(1L, 2L, 3L, 4L, 5L), inserted.stream().map(ChatHistory::getId).toList());
+        Assertions.assertFalse(queue.hasPending(100L));
+        try (var files = Files.list(journalDir)) {
+            Assertions.assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void failedFlushIsRetriedAndJournalIsReplayedAfterCrash() throws Exception {
+        ChatHistoryWriteBehindQueue queue = newQueue(500);
+        queue.enqueue(message(1));
+        databaseDown.set(true);
+        queue.flush();
+        queue.enqueue(message(2));
+        Assertions.assertTrue(inserted.isEmpty());
+
+        // 不调用 destroy，模拟进程崩溃后重启
+        databaseDown.set(false);
+        ChatHistoryWriteBehindQueue restarted = newQueue(500);
+        restarted.enqueue(message(3));
+        restarted.flush();
+
+        Assertions.assertEquals(List.of(1L, 2L, 3L), inserted.stream().map(ChatHistory::getId).toList());
+        Assertions.assertEquals("消息1", inserted.getFirst().getMessage());
+    }
+
+    @Test
+    void poisonRowIsDeadLetteredWithoutBlockingOtherRows() throws Exception {
+        ChatHistoryWriteBehindQueue queue = newQueue(500);
+        poisonIds = Set.of(2L);
+        List<Long> notified = new ArrayList<>();
+        queue.setFlushListener(histories -> histories.forEach(history -> notified.add(history.getId())));
+        for (long id = 1; id <= 3; id++) {
+            queue.enqueue(message(id));
+        }
+
+        queue.flush();
+
+        Assertions.assertEquals(List.of(1L, 3L), inserted.stream().map(ChatHistory::getId).toList());
+        Assertions.assertEquals(List.of(1L, 3L), notified);
+        Assertions.assertFalse(queue.hasPending(100L));
+        // 只剩死信段，重启时不回放
+        try (var files = Files.list(journalDir)) {
+            List<String> names = files.map(path -> path.getFileName().toString()).toList();
+            Assertions.assertEquals(1, names.size());
+            Assertions.assertTrue(names.getFirst().startsWith("dead-letter-"));
+            Assertions.assertTrue(Files.readString(journalDir.resolve(names.getFirst())).contains("消息2"));
+        }
+        newQueue(500).flush();
+        Assertions.assertEquals(2, inserted.size());
+    }
+
+    @Test
+    void flushForAppWritesOnlyThatAppsRows() throws Exception {
+        ChatHistoryWriteBehindQueue queue = newQueue(500);
+        queue.enqueue(message(1, 100L));
+        queue.enqueue(message(2, 200L));
+        queue.enqueue(message(3, 100L));
+
+        queue.flush(100L);
+
+        Assertions.assertEquals(List.of(1L, 3L), inserted.stream().map(ChatHistory::getId).toList());
+        Assertions.assertFalse(queue.hasPending(100L));
+        Assertions.assertTrue(queue.hasPending(200L));
+
+        queue.flush();
+        Assertions.assertEquals(List.of(1L, 3L, 2L), inserted.stream().map(ChatHistory::getId).toList());
+        try (var files = Files.list(journalDir)) {
+            Assertions.assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void pendingDraftCheckpointsAreCoalescedIntoFinalMessage() throws Exception {
+        ChatHistoryWriteBehindQueue queue = newQueue(500);
+        ChatHistory first = message(1);
+        first.setMessageType("ai_draft");
+        first.setCreateTime(first.getCreateTime().minusSeconds(5));
+        queue.enqueueDraft(first);
+        ChatHistory second = message(1);
+        second.setMessageType("ai_draft");
+        queue.enqueueDraft(second);
+        ChatHistory ai = message(1);
+        ai.setMessageType("ai");
+        queue.enqueue(ai);
+
+        queue.flush();
+
+        // 只写入定稿，创建时间沿用首次检查点
+        Assertions.assertEquals(1, inserted.size());
+        Assertions.assertEquals("ai", inserted.getFirst().getMessageType());
+        Assertions.assertEquals(first.getCreateTime(), inserted.getFirst().getCreateTime());
+    }
+
+    private ChatHistoryWriteBehindQueue newQueue(int batchSize) throws Exception {
+        ChatHistoryMapper mapper = (ChatHistoryMapper) Proxy.newProxyInstance(ChatHistoryMapper.class.getClassLoader(),
+                new Class<?>[]{ChatHistoryMapper.class}, (proxy, method, args) -> {
+                    if (!"upsertBatch".equals(method.getName())) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    if (databaseDown.get()) {
+                        throw new IllegalStateException("database down");
+                    }
+                    @SuppressWarnings("unchecked")
+                    List<ChatHistory> rows = (List<ChatHistory>) args[0];
+                    Assertions.assertTrue(rows.size() <= batchSize);
+                    if (rows.stream().anyMatch(row -> poisonIds.contains(row.getId()))) {
+                        throw new IllegalStateException("Data too long for column 'message'");
+                    }
+                    inserted.addAll(rows);
+                    return rows.size();
+                });
+        ChatHistoryBlobManager blobManager = new ChatHistoryBlobManager(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(blobManager, "chatHistoryMapper", mapper);
+        ReflectionTestUtils.setField(blobManager, "enabled", false);
+        ChatHistoryWriteBehindQueue queue = new ChatHistoryWriteBehindQueue(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(queue, "chatHistoryBlobManager", blobManager);
+        ReflectionTestUtils.setField(queue, "batchSize", batchSize);
+        ReflectionTestUtils.setField(queue, "fsync", true);
+        ReflectionTestUtils.setField(queue, "flushWaitMillis", 1000L);
+        queue.journalDir = journalDir;
+        queue.replay();
+        return queue;
+    }
+
+    private static ChatHistory message(long id) {
+        return message(id, 100L);
+    }
+
+    private static ChatHistory message(long id, Long appId) {
+        LocalDateTime now = LocalDateTime.now();
+        return ChatHistory.builder()
+                .id(id)
+                .appId(appId)
+                .userId(1L)
+                .messageType("user")
+                .message("消息" + id)
+                .createTime(now)
+                .updateTime(now)
+                .build();
+    }
+
+}
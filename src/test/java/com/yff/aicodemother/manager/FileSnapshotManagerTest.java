@@ -0,0 +1,90 @@
+package com.yff.aicodemother.manager;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+class FileSnapshotManagerTest {
+
+    @TempDir
+    Path rootDir;
+
+    private final FileSnapshotManager manager = new FileSnapshotManager();
+
+    @BeforeEach
+    void setUp() {
+        manager.rootDir = rootDir;
+    }
+
+    @Test
+    void compactReplacesCodeBlocksWithReferencesAndExpandRestoresThem() {
+        String message = """
+                好的，我来修改首页。
+
+                [工具调用] 写入文件：src/App.vue
+                ```vue
+                <template><div>{{ title }}</div></template>
+                ```
+
+
+                完成。""";
+
+        String compacted = manager.compact(message);
+
+        Assertions.assertFalse(compacted.contains("<template>"));
+        Assertions.assertTrue(compacted.contains("[工具调用] 写入文件：src/App.vue（快照："));
+        Assertions.assertEquals(message, manager.expand(compacted));
+    }
+
+
+    @Test
+    void sameContentIsStoredOnce() {
+        String first = manager.save("body { color: red; }");
+        String second = manager.save("body { color: red; }");
+
+        Assertions.assertEquals(first, second);
+        Assertions.assertEquals("body { color: red; }", manager.load(first));
+    }
+
+
+    @Test
+    void nestedFencesInFileContentStayInsideTheBlock() {
+        String message = """
+                [工具调用] 写入文件：README.md
+                ```md
+                # 使用方法
+                ```bash
+                npm run dev
+                ```
+                ```
+                plain
+                ```
+                ```
+
+
+                完成。""";
+
+        String compacted = manager.compact(message);
+
+        Assertions.assertFalse(compacted.contains("npm run dev"));
+        Assertions.assertTrue(compacted.endsWith("完成。"));
+        Assertions.assertEquals(message, manager.expand(compacted));
+    }
+
+
+    @Test
+    void failedSaveKeepsFullCodeBlock() throws IOException {
+        // 快照根目录是一个普通文件，无法创建子目录
+        manager.rootDir = Files.createFile(rootDir.resolve("not-a-directory"));
+
+        String reference = manager.toReference("src/App.vue", "<template/>");
+
+        Assertions.assertEquals("[工具调用] 写入文件：src/App.vue\n```vue\n<template/>\n```\n", reference);
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.yff.aicodemother.manager;
+
+import com.yff.aicodemother.exception.BusinessException;
+import com.yff.aicodemother.manager.GenerationAdmissionManager.AdmissionTicket;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class GenerationAdmissionManagerTest {
+
+    private GenerationAdmissionManager manager;
+
+    private final List<String> admitted = new ArrayList<>();
+
+    private final List<AdmissionTicket> tickets = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        manager = new GenerationAdmissionManager(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(manager, "maxConcurrent", 2);
+        ReflectionTestUtils.setField(manager, "maxPerUser", 1);
+        ReflectionTestUtils.setField(manager, "maxQueueSize", 3);
+    }
+
+
+    @Test
+    void userAtLimitDoesNotBlockOtherUsers() {
+        acquire("a1", 1L);
+        acquire("a2", 1L);
+        acquire("b1", 2L);
+        Assertions.assertEquals(List.of("a1", "b1"), admitted);
+
+        acquire("c1", 3L);
+        manager.release(tickets.get(2));
+        // c1 排在 a2 后面，但 a2 所属用户仍有任务在运行
+        Assertions.assertEquals(List.of("a1", "b1", "c1"), admitted);
+        manager.release(tickets.get(0));
+        Assertions.assertEquals(List.of("a1", "b1", "c1", "a2"), admitted);
+    }
+
+
+    @Test
+    void queuePositionsAreReportedAndFullQueueIsRejected() {
+        List<Integer> positions = new ArrayList<>();
+        acquire("a1", 1L);
+        acquire("b1", 2L);
+        manager.acquire(3L, positions::add, ticket -> admitted.add("c1"));
+        AdmissionTicket d1 = manager.acquire(4L, position -> {
+        }, ticket -> admitted.add("d1"));
+        manager.acquire(5L, position -> {
+        }, ticket -> admitted.add("e1"));
+        Assertions.assertThrows(BusinessException.class, () -> manager.acquire(6L, position -> {
+        }, ticket -> admitted.add("f1")));
+
+        // 放弃排队的任务不再被放行
+        manager.release(d1);
+        manager.release(tickets.get(0));
+        Assertions.assertEquals(List.of(1), positions);
+        Assertions.assertEquals(List.of("a1", "b1", "c1"), admitted);
+        manager.release(tickets.get(1));
+        Assertions.assertEquals(List.of("a1", "b1", "c1", "e1"), admitted);
+    }
+
+
+    private void acquire(String name, Long userId) {
+        tickets.add(manager.acquire(userId, position -> {
+        }, ticket -> admitted.add(name)));
+    }
+
+}
@@ -0,0 +1,191 @@
+package com.yff.aicodemother.manager;
+
+import com.yff.aicodemother.exception.BusinessException;
+import com.yff.aicodemother.manager.GenerationStreamManager.GenerationEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+class GenerationStreamManagerTest {
+
+    private GenerationStreamManager manager;
+
+    @BeforeEach
+    void setUp() {
+        manager = new GenerationStreamManager();
+        ReflectionTestUtils.setField(manager, "bufferSize", 16);
+        ReflectionTestUtils.setField(manager, "retentionSeconds", 120L);
+        ReflectionTestUtils.setField(manager, "maxDuration", Duration.ofMinutes(1));
+        GenerationAdmissionManager admissionManager = new GenerationAdmissionManager(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(admissionManager, "maxConcurrent", 16);
+        ReflectionTestUtils.setField(admissionManager, "maxPerUser", 1);
+        ReflectionTestUtils.setField(admissionManager, "maxQueueSize", 16);
+        ReflectionTestUtils.setField(manager, "generationAdmissionManager", admissionManager);
+    }
+
+
+    @Test
+    void resumeContinuesAfterLastEventIdWithoutResubscribingSource() {
+        Sinks.Many<String> source = Sinks.many().unicast().onBackpressureBuffer();
+        Flux<GenerationEvent> events = manager.startOrJoin(1L, 10L, "msg", source::asFlux);
+        source.tryEmitNext("a");
+        source.tryEmitNext("b");
+        List<GenerationEvent> first = events.take(2).collectList().block();
+        Assertions.assertNotNull(first);
+        // 第一个连接断开后生成继续进行
+        source.tryEmitNext("c");
+        source.tryEmitNext("d");
+        source.tryEmitComplete();
+
+        Assertions.assertEquals(List.of("a", "b"), first.stream().map(GenerationEvent::getData).toList());
+        Flux<GenerationEvent> resumed = manager.resume(1L, 10L, first.get(1).getId());
+        Assertions.assertNotNull(resumed);
+        Assertions.assertEquals(List.of("c", "d"), resumed.map(GenerationEvent::getData).collectList().block());
+    }
+
+
+    @Test
+    void unknownGenerationCannotBeResumed() {
+        manager.startOrJoin(1L, 10L, "msg", () -> Flux.just("a"));
+        Assertions.assertNull(manager.resume(1L, 10L, "123:0"));
+        Assertions.assertNull(manager.resume(2L, 10L, "123:0"));
+        Assertions.assertNull(manager.resume(1L, 10L, "not-an-id"));
+    }
+
+
+    @Test
+    void sameRequestJoinsRunningJobAndOthersAreRejected() {
+        Sinks.Many<String> source = Sinks.many().unicast().onBackpressureBuffer();
+        AtomicInteger started = new AtomicInteger();
+        Supplier<Flux<String>> supplier = () -> {
+            started.incrementAndGet();
+            return source.asFlux();
+        };
+        Flux<GenerationEvent> first = manager.startOrJoin(1L, 10L, "msg", supplier);
+        Flux<GenerationEvent> second = manager.startOrJoin(1L, 10L, "msg", supplier);
+        Assertions.assertThrows(BusinessException.class, () -> manager.startOrJoin(1L, 10L, "other", supplier));
+        Assertions.assertThrows(BusinessException.class, () -> manager.startOrJoin(1L, 11L, "msg", supplier));
+        source.tryEmitNext("a");
+        source.tryEmitComplete();
+
+        Assertions.assertEquals(1, started.get());
+        Assertions.assertEquals(List.of("a"), first.map(GenerationEvent::getData).collectList().block());
+        Assertions.assertEquals(List.of("a"), second.map(GenerationEvent::getData).collectList().block());
+        // 任务结束后可以开始新的生成
+        Assertions.assertDoesNotThrow(() -> manager.startOrJoin(1L, 10L, "other", () -> Flux.just("b")));
+    }
+
+
+    @Test
+    void queuedJobReportsPositionAndStartsWhenSlotIsReleased() {
+        Sinks.Many<String> running = Sinks.many().unicast().onBackpressureBuffer();
+        manager.startOrJoin(1L, 10L, "msg", running::asFlux);
+        Flux<GenerationEvent> queued = manager.startOrJoin(2L, 10L, "msg", () -> Flux.just("x"));
+        running.tryEmitComplete();
+
+        List<GenerationEvent> events = queued.collectList().block();
+        Assertions.assertNotNull(events);
+        Assertions.assertEquals(2, events.size());
+        Assertions.assertEquals(GenerationEvent.EVENT_QUEUE, events.get(0).getEvent());
+        Assertions.assertEquals("{\"position\":1}", events.get(0).getData());
+        Assertions.assertEquals("x", events.get(1).getData());
+        Assertions.assertEquals(0, events.get(1).getSeq());
+    }
+
+    @Test
+    void failedSupplierDoesNotOccupyApp() {
+        Assertions.assertThrows(IllegalStateException.class, () -> manager.startOrJoin(1L, 10L, "msg", () -> {
+            throw new IllegalStateException("boom");
+        }));
+        Assertions.assertEquals(List.of("a"), manager.startOrJoin(1L, 10L, "msg", () -> Flux.just("a"))
+                .map(GenerationEvent::getData).collectList().block());
+    }
+
+
+    @Test
+    void resumeAfterBufferRolledOverSendsReset() {
+        Sinks.Many<String> source = Sinks.many().unicast().onBackpressureBuffer();
+        Flux<GenerationEvent> events = manager.startOrJoin(1L, 10L, "msg", source::asFlux);
+        source.tryEmitNext("a");
+        GenerationEvent first = events.blockFirst();
+        Assertions.assertNotNull(first);
+        // 断开后输出的片段超过缓冲区大小，断点之后的片段已部分滚出
+        for (int i = 0; i < 20; i++) {
+            source.tryEmitNext("x" + i);
+        }
+        source.tryEmitComplete();
+
+        List<GenerationEvent> resumed = manager.resume(1L, 10L, first.getId()).collectList().block();
+        Assertions.assertNotNull(resumed);
+        Assertions.assertEquals(1, resumed.size());
+        Assertions.assertEquals(GenerationEvent.EVENT_RESET, resumed.getFirst().getEvent());
+        Assertions.assertEquals("{\"oldestSeq\":5}", resumed.getFirst().getData());
+    }
+
+
+    @Test
+    void queueEventsDoNotTakeReplayBufferSlots() {
+        Sinks.Many<String> running = Sinks.many().unicast().onBackpressureBuffer();
+        manager.startOrJoin(1L, 10L, "msg", running::asFlux);
+        Sinks.Many<String> queuedSource = Sinks.many().unicast().onBackpressureBuffer();
+        Flux<GenerationEvent> queued = manager.startOrJoin(2L, 10L, "msg", queuedSource::asFlux);
+        running.tryEmitComplete();
+        for (int i = 0; i < 16; i++) {
+            queuedSource.tryEmitNext("x" + i);
+        }
+        queuedSource.tryEmitComplete();
+
+        // 缓冲区正好容纳 16 个片段，排队状态不占位置，从头回放不需要 reset
+        List<GenerationEvent> events = queued.collectList().block();
+        Assertions.assertNotNull(events);
+        Assertions.assertEquals(17, events.size());
+        Assertions.assertEquals(GenerationEvent.EVENT_QUEUE, events.getFirst().getEvent());
+        Assertions.assertEquals(0, events.get(1).getSeq());
+        Assertions.assertEquals(15, events.getLast().getSeq());
+    }
+
+
+    @Test
+    void joinAfterBufferRolledOverSendsReset() {
+        Sinks.Many<String> source = Sinks.many().unicast().onBackpressureBuffer();
+        Flux<GenerationEvent> events = manager.startOrJoin(1L, 10L, "msg", source::asFlux);
+        for (int i = 0; i < 20; i++) {
+            source.tryEmitNext("x" + i);
+        }
+        // 上游在弹性线程上异步写入缓冲区，等最后一个片段写入（或已滚出缓冲区时收到 reset）
+        events.filter(event -> event.getSeq() == 19).blockFirst(Duration.ofSeconds(5));
+
+        // 第二个标签页接入时开头的片段已滚出缓冲区，不推送缺了开头的输出
+        List<GenerationEvent> joined = manager.startOrJoin(1L, 10L, "msg", source::asFlux).collectList().block();
+        Assertions.assertNotNull(joined);
+        Assertions.assertEquals(1, joined.size());
+        Assertions.assertEquals(GenerationEvent.EVENT_RESET, joined.getFirst().getEvent());
+        source.tryEmitComplete();
+    }
+
+
+    @Test
+    void generationExceedingMaxDurationFailsAndReleasesApp() {
+        ReflectionTestUtils.setField(manager, "maxDuration", Duration.ofMillis(100));
+        Sinks.Many<String> hanging = Sinks.many().unicast().onBackpressureBuffer();
+        Flux<GenerationEvent> events = manager.startOrJoin(1L, 10L, "msg", hanging::asFlux);
+        hanging.tryEmitNext("a");
+
+        BusinessException error = Assertions.assertThrows(BusinessException.class,
+                () -> events.collectList().block(Duration.ofSeconds(5)));
+        Assertions.assertTrue(error.getMessage().startsWith("生成超时"));
+        // 准入名额已释放（每个用户只有 1 个名额），应用可以开始新的生成
+        Assertions.assertEquals(List.of("b"), manager.startOrJoin(1L, 10L, "other", () -> Flux.just("b"))
+                .map(GenerationEvent::getData).collectList().block(Duration.ofSeconds(5)));
+    }
+
+}
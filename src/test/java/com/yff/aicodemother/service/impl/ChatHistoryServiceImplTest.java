@@ -0,0 +1,40 @@
+package com.yff.aicodemother.service.impl;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class ChatHistoryServiceImplTest {
+
+    private ChatHistoryServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        service = new ChatHistoryServiceImpl();
+        ReflectionTestUtils.setField(service, "fullTextSearch", true);
+        ReflectionTestUtils.setField(service, "ngramTokenSize", 2);
+        ReflectionTestUtils.setField(service, "stopwordDisabled", true);
+    }
+
+
+    @Test
+    void englishKeywordUsesFullTextWhenIndexHasNoStopwords() {
+        Assertions.assertEquals("\"useState\"", service.toFullTextPhrase(" useState "));
+        Assertions.assertEquals("\"登录页面\"", service.toFullTextPhrase("登录页面"));
+        // 短于 ngram 分词长度、双引号不能出现在短语内部
+        Assertions.assertNull(service.toFullTextPhrase("a"));
+        Assertions.assertEquals("\"main   js\"", service.toFullTextPhrase("main \" js"));
+    }
+
+
+    @Test
+    void englishKeywordFallsBackToLikeWhenIndexHasStopwords() {
+        ReflectionTestUtils.setField(service, "stopwordDisabled", false);
+        // "main" 的分词 "ma"、"ai"、"in" 都包含默认停用词 a 或 i，带停用词的索引无法命中
+        Assertions.assertNull(service.toFullTextPhrase("main"));
+        Assertions.assertNull(service.toFullTextPhrase("Vue组件"));
+        Assertions.assertEquals("\"登录页面\"", service.toFullTextPhrase("登录页面"));
+    }
+
+}